@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.benchmark;
+
+import com.github.cerricks.iconium.data.AddressDao;
+import com.github.cerricks.iconium.data.AddressJdbcDao;
+import com.github.cerricks.iconium.data.CacheStatistics;
+import com.github.cerricks.iconium.data.HashedCacheAddressDao;
+import java.util.concurrent.TimeUnit;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.ehcache.EhCacheCacheManager;
+import org.springframework.cache.ehcache.EhCacheManagerFactoryBean;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Compares the cost of a cache hit on a GNAF address PID lookup when
+ * {@code cache.mode} is {@code annotation}, i.e. a call through the
+ * {@code @Cacheable} proxy to the ehcache cache configured by
+ * {@code ehcache.xml}, and when it is {@code hashed}, i.e. a call to
+ * {@link HashedCacheAddressDao}.
+ *
+ * <p>
+ * Both caches are sized to hold the whole key set, the ehcache cache made
+ * eternal, and warmed before measuring, so every lookup is a hit. Misses are
+ * answered by a stub DAO rather than the database. Run with:
+ * <pre>
+ * mvn -P benchmark compile exec:exec
+ * </pre>
+ *
+ * @author Clifford Errickson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupCacheBenchmark {
+
+    /**
+     * Number of distinct addresses looked up in turn.
+     */
+    @Param({"1000", "100000"})
+    public int keys;
+
+    private String[][] addresses;
+
+    private AnnotationConfigApplicationContext context;
+
+    private AddressDao annotationDao;
+    private AddressDao hashedDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        addresses = new String[keys][];
+
+        for (int i = 0; i < keys; i++) {
+            addresses[i] = new String[]{
+                (i + 1) + " SMITH STREET",
+                "NSW",
+                Integer.toString(2000 + i % 1000),
+                "SUBURB " + (i % 97)
+            };
+        }
+
+        context = new AnnotationConfigApplicationContext(AnnotationCachingConfiguration.class);
+
+        CacheConfiguration cacheConfiguration = context.getBean(net.sf.ehcache.CacheManager.class)
+                .getCache(AddressJdbcDao.ADDRESS_DETAIL_PID_CACHE)
+                .getCacheConfiguration();
+
+        cacheConfiguration.setMaxEntriesLocalHeap(keys);
+        cacheConfiguration.setEternal(true);
+
+        annotationDao = context.getBean(AddressDao.class);
+        hashedDao = new HashedCacheAddressDao(new StubAddressJdbcDao(), new CacheStatistics(), keys);
+
+        for (String[] address : addresses) {
+            annotationDao.findAddressDetailPID(address[0], address[1], address[2], address[3]);
+            hashedDao.findAddressDetailPID(address[0], address[1], address[2], address[3]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String annotation(final Cursor cursor) {
+        String[] address = cursor.next(addresses);
+
+        return annotationDao.findAddressDetailPID(address[0], address[1], address[2], address[3]);
+    }
+
+    @Benchmark
+    public String hashed(final Cursor cursor) {
+        String[] address = cursor.next(addresses);
+
+        return hashedDao.findAddressDetailPID(address[0], address[1], address[2], address[3]);
+    }
+
+    /**
+     * Steps through the addresses, one per lookup.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        String[] next(final String[][] addresses) {
+            if (index == addresses.length) {
+                index = 0;
+            }
+
+            return addresses[index++];
+        }
+
+    }
+
+    /**
+     * Answers lookups without a database.
+     */
+    static class StubAddressJdbcDao extends AddressJdbcDao {
+
+        StubAddressJdbcDao() {
+            super(new JdbcTemplate());
+        }
+
+        @Override
+        public String findAddressDetailPID(final String address, final String state, final String postCode, final String locality) {
+            return "GANSW" + (address.hashCode() & Integer.MAX_VALUE);
+        }
+
+        @Override
+        public String findStreetLocalityPID(final String street, final String state, final String postCode, final String locality) {
+            return "NSW" + (street.hashCode() & Integer.MAX_VALUE);
+        }
+
+    }
+
+    /**
+     * Caches the lookups of {@link StubAddressJdbcDao} with {@code @Cacheable},
+     * as {@link AddressJdbcDao} does.
+     */
+    static class CachingAddressDao implements AddressDao {
+
+        private final AddressDao addressDao = new StubAddressJdbcDao();
+
+        @Override
+        @Cacheable(value = AddressJdbcDao.ADDRESS_DETAIL_PID_CACHE)
+        public String findAddressDetailPID(final String address, final String state, final String postCode, final String locality) {
+            return addressDao.findAddressDetailPID(address, state, postCode, locality);
+        }
+
+        @Override
+        @Cacheable(value = AddressJdbcDao.STREET_LOCALITY_PID_CACHE)
+        public String findStreetLocalityPID(final String street, final String state, final String postCode, final String locality) {
+            return addressDao.findStreetLocalityPID(street, state, postCode, locality);
+        }
+
+    }
+
+    /**
+     * The annotation-driven caches, configured by {@code ehcache.xml} as in
+     * the application.
+     */
+    @Configuration
+    @EnableCaching
+    static class AnnotationCachingConfiguration {
+
+        @Bean
+        public EhCacheManagerFactoryBean ehCacheManager() {
+            EhCacheManagerFactoryBean factory = new EhCacheManagerFactoryBean();
+
+            factory.setConfigLocation(new ClassPathResource("ehcache.xml"));
+
+            return factory;
+        }
+
+        @Bean
+        public CacheManager cacheManager(final net.sf.ehcache.CacheManager ehCacheManager) {
+            return new EhCacheCacheManager(ehCacheManager);
+        }
+
+        @Bean
+        public AddressDao addressDao() {
+            return new CachingAddressDao();
+        }
+
+    }
+
+}
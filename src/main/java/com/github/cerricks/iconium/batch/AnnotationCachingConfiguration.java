@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables the annotation-driven caches configured by {@code ehcache.xml},
+ * unless {@code cache.mode} is {@code hashed}, in which case the DAOs are not
+ * proxied and the {@code HashedCache*Dao} implementations cache lookups
+ * instead.
+ *
+ * @author Clifford Errickson
+ */
+@Configuration
+@EnableCaching
+@ConditionalOnProperty(name = "cache.mode", havingValue = "annotation", matchIfMissing = true)
+public class AnnotationCachingConfiguration {
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Creates a partition of the load step for each bucket file written by
+ * {@link BucketingTasklet}, named after the bucket. The path of the bucket
+ * file is saved in the partition {@code ExecutionContext} under
+ * {@link #PARTITION_FILE_KEY} and read by {@link JsonNodeReader} in place of
+ * the input file. The {@code unknown} bucket, whose items may belong to any
+ * region, is flagged under {@link #PARTITION_LAST_KEY} to be loaded after all
+ * other buckets.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@StepScope
+public class BucketPartitioner implements Partitioner {
+
+    /**
+     * The key under which the path of the bucket file is saved in the
+     * partition {@code ExecutionContext}.
+     */
+    public static final String PARTITION_FILE_KEY = "partition.file";
+
+    /**
+     * The key under which the name of the bucket is saved in the partition
+     * {@code ExecutionContext}.
+     */
+    public static final String PARTITION_NAME_KEY = "partition.name";
+
+    /**
+     * The key under which a partition to be loaded only after all other
+     * partitions have finished is flagged in the partition
+     * {@code ExecutionContext}.
+     */
+    public static final String PARTITION_LAST_KEY = "partition.last";
+
+    private static final String BUCKET_SUFFIX = ".json";
+
+    @Value("#{jobExecutionContext['" + BucketingTasklet.PARTITION_DIR_KEY + "']}")
+    private File directory;
+
+    public BucketPartitioner() {
+    }
+
+    /**
+     * Set the directory holding the bucket files.
+     *
+     * @param directory the directory holding the bucket files.
+     */
+    public void setDirectory(final File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(final int gridSize) {
+        Assert.notNull(directory, "Partition directory must be set; is the bucket step enabled?");
+
+        File[] buckets = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && file.getName().endsWith(BUCKET_SUFFIX);
+            }
+        });
+
+        if (buckets == null) {
+            throw new IllegalStateException("Failed to list partition directory [" + directory + "]");
+        }
+
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+
+        for (File bucket : buckets) {
+            String name = bucket.getName().substring(0, bucket.getName().length() - BUCKET_SUFFIX.length());
+            ExecutionContext context = new ExecutionContext();
+
+            context.putString(PARTITION_FILE_KEY, bucket.getAbsolutePath());
+            context.putString(PARTITION_NAME_KEY, name);
+
+            if (BucketingTasklet.UNKNOWN_BUCKET.equals(name)) {
+                context.putString(PARTITION_LAST_KEY, "true");
+            }
+
+            partitions.put(name, context);
+        }
+
+        return partitions;
+    }
+
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Splits the items of the input file into bucket files by region, so that
+ * each bucket can be loaded by its own partition of the load step.
+ *
+ * <p>
+ * When {@link #setKey(String)} is {@code state}, items are bucketed by state.
+ * When it is {@code postcode}, items are bucketed by range of post codes of
+ * {@link #setPostcodeRange(int)} codes, e.g. {@code 2000-2099}. As
+ * Australian post codes are allocated by state and locality, post code ranges
+ * give smaller buckets that still do not share localities. The state is taken
+ * from the GNAF address PID ({@code addr_id}) or else the input address, and
+ * the post code from the input address. Items whose region is unknown,
+ * including items without a post code when bucketing by post code, go to the
+ * {@code unknown} bucket, which may overlap any other bucket and so is loaded
+ * after them (see {@link BucketPartitioner#PARTITION_LAST_KEY}). Items keep
+ * their input order within each bucket.
+ *
+ * <p>
+ * Items are read with a {@link JsonArrayElementReader}, so an item that
+ * cannot be parsed is logged and copied as is to the {@code unknown} bucket,
+ * to be skipped by the load step, rather than failing the step.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@StepScope
+public class BucketingTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketingTasklet.class);
+
+    /**
+     * The key under which the path of the bucket directory is saved in the
+     * job {@code ExecutionContext}.
+     */
+    public static final String PARTITION_DIR_KEY = "partition.dir";
+
+    /**
+     * The name of the bucket of items whose region is unknown.
+     */
+    static final String UNKNOWN_BUCKET = "unknown";
+
+    private static final Pattern ADDRESS_PID_STATE = Pattern.compile("^GA(NSW|VIC|QLD|SA|WA|TAS|NT|ACT|OT)");
+    private static final Pattern ADDRESS_STATE = Pattern.compile("\\b(NSW|VIC|QLD|SA|WA|TAS|NT|ACT)\\b");
+    private static final Pattern ADDRESS_POSTCODE = Pattern.compile("\\b([0-9]{4})\\b\\s*$");
+
+    @Value("#{jobExecutionContext['" + ExternalSortTasklet.SORTED_INPUT_FILE_KEY + "'] ?: jobParameters['input.file']}")
+    private String inputFile;
+
+    @Value("#{jobExecutionContext['jobId']}")
+    private Long jobId;
+
+    private JsonFactory jsonFactory;
+
+    private File directory = new File("work/partition");
+    private String key = "postcode";
+    private int postcodeRange = 100;
+
+    public BucketingTasklet() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(inputFile, "[Assertion failed] - inputFile must not be null");
+        Assert.notNull(jobId, "[Assertion failed] - jobId must not be null");
+        Assert.notNull(jsonFactory, "[Assertion failed] - JsonFactory must not be null");
+        Assert.isTrue("state".equals(key) || "postcode".equals(key), "Unsupported batch.partition.key [" + key + "]");
+        Assert.isTrue(postcodeRange > 0, "batch.partition.postcode.range must be positive");
+    }
+
+    /**
+     * Set the {@link JsonFactory} used to parse the input file.
+     *
+     * @param jsonFactory used to parse the input file
+     */
+    @Autowired
+    public void setJsonFactory(final JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Set the directory under which bucket files are written.
+     *
+     * @param directory the directory under which bucket files are written.
+     */
+    @Value("${batch.partition.dir:work/partition}")
+    public void setDirectory(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Set how items are bucketed: {@code state} or {@code postcode}.
+     *
+     * @param key how items are bucketed.
+     */
+    @Value("${batch.partition.key:postcode}")
+    public void setKey(final String key) {
+        this.key = key;
+    }
+
+    /**
+     * Set the number of post codes in each bucket when bucketing by post
+     * code.
+     *
+     * @param postcodeRange the number of post codes in each bucket.
+     */
+    @Value("${batch.partition.postcode.range:100}")
+    public void setPostcodeRange(final int postcodeRange) {
+        this.postcodeRange = postcodeRange;
+    }
+
+    @Override
+    public RepeatStatus execute(final StepContribution contribution, final ChunkContext chunkContext)
+            throws Exception {
+        File bucketDirectory = new File(directory, "job-" + jobId);
+
+        if (!bucketDirectory.isDirectory() && !bucketDirectory.mkdirs()) {
+            throw new IOException("Failed to create partition directory [" + bucketDirectory + "]");
+        }
+
+        long start = System.currentTimeMillis();
+        long count = 0;
+        long unparsed = 0;
+
+        Map<String, Bucket> buckets = new TreeMap<>();
+
+        try (JsonArrayElementReader elements = new JsonArrayElementReader(new FileInputStream(inputFile), 0)) {
+            if (!elements.readStart()) {
+                throw new JsonParseException(null, "Expected array of objects");
+            }
+
+            byte[] element;
+
+            while ((element = elements.next()) != null) {
+                String item;
+                String name;
+
+                try {
+                    JsonNode node = JsonArrayElementReader.readTree(jsonFactory, element);
+
+                    item = node.toString();
+                    name = bucket(node);
+                } catch (JsonProcessingException ex) {
+                    logger.warn("Copying item at byte offset [" + elements.getElementOffset() + "] to bucket [" + UNKNOWN_BUCKET + "] as it could not be parsed: " + ex.getOriginalMessage());
+
+                    item = new String(element, StandardCharsets.UTF_8); // left for the load step to skip
+                    name = UNKNOWN_BUCKET;
+                    unparsed++;
+                }
+
+                Bucket bucket = buckets.get(name);
+
+                if (bucket == null) {
+                    bucket = new Bucket(new File(bucketDirectory, name + ".json"));
+
+                    buckets.put(name, bucket);
+                }
+
+                bucket.write(item);
+                count++;
+            }
+        } finally {
+            for (Bucket bucket : buckets.values()) {
+                bucket.close();
+            }
+        }
+
+        chunkContext.getStepContext().getStepExecution().getJobExecution().getExecutionContext().putString(PARTITION_DIR_KEY, bucketDirectory.getAbsolutePath());
+
+        if (logger.isInfoEnabled()) {
+            StringBuilder sizes = new StringBuilder();
+
+            for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+                if (sizes.length() > 0) {
+                    sizes.append(", ");
+                }
+
+                sizes.append(entry.getKey()).append('=').append(entry.getValue().count);
+            }
+
+            logger.info("Split [" + count + "] items of [" + inputFile + "], [" + unparsed + "] of which could not be parsed, into [" + buckets.size() + "] buckets in [" + (System.currentTimeMillis() - start) + "] ms: " + sizes);
+        }
+
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * Determine the bucket of an item.
+     *
+     * @param node the item
+     * @return the name of the bucket
+     */
+    private String bucket(final JsonNode node) {
+        String inputAddress = node.isObject() && node.hasNonNull("input_address")
+                ? node.get("input_address").asText().trim().toUpperCase(Locale.ROOT)
+                : "";
+
+        if ("postcode".equals(key)) {
+            Matcher postcode = ADDRESS_POSTCODE.matcher(inputAddress);
+
+            if (postcode.find()) {
+                int from = Integer.parseInt(postcode.group(1)) / postcodeRange * postcodeRange;
+
+                return String.format("%04d-%04d", from, Math.min(9999, from + postcodeRange - 1));
+            }
+
+            return UNKNOWN_BUCKET; // a state bucket would overlap the post code ranges
+        }
+
+        String addressPID = node.isObject() && node.hasNonNull("addr_id")
+                ? node.get("addr_id").asText().trim().toUpperCase(Locale.ROOT)
+                : "";
+
+        Matcher state = ADDRESS_PID_STATE.matcher(addressPID);
+
+        if (state.find()) {
+            return state.group(1);
+        }
+
+        state = ADDRESS_STATE.matcher(inputAddress);
+
+        String found = null;
+
+        while (state.find()) {
+            found = state.group(1); // the state follows the street address
+        }
+
+        return found != null ? found : UNKNOWN_BUCKET;
+    }
+
+    /**
+     * A bucket file, written as a JSON array of items.
+     */
+    private static class Bucket {
+
+        private final Writer writer;
+        private long count = 0;
+
+        Bucket(final File file) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 65536);
+
+            writer.write("[\n");
+        }
+
+        void write(final String item) throws IOException {
+            if (count > 0) {
+                writer.write(",\n");
+            }
+
+            writer.write(item);
+            count++;
+        }
+
+        void close() throws IOException {
+            writer.write("\n]\n");
+            writer.close();
+        }
+
+    }
+
+}
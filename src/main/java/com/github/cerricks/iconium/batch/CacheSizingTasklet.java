@@ -0,0 +1,326 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cerricks.iconium.data.AddressJdbcDao;
+import com.github.cerricks.iconium.data.PropertyJdbcDao;
+import com.github.cerricks.iconium.data.SchoolJdbcDao;
+import com.github.cerricks.iconium.util.Hashing;
+import com.github.cerricks.iconium.util.HyperLogLog;
+import com.github.cerricks.iconium.util.InputFiles;
+import com.github.cerricks.iconium.util.ResizableCaches;
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import net.sf.ehcache.Ehcache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Estimates the number of distinct keys looked up in each cache by a pass over
+ * the input file, or each of the input files (see {@link InputFiles}), and
+ * sizes the caches to hold them within a heap budget.
+ *
+ * <p>
+ * The distinct comparable property addresses, (address, date) and (PID, date)
+ * pairs, schools and school street addresses are counted using
+ * {@link HyperLogLog} sketches. Each cache is then sized to its estimate plus
+ * 10%, but no smaller than {@link #setMinEntries(int)}. If the caches would
+ * use more than {@link #setHeapBudget(int)} at the approximate per-entry size
+ * of each cache, all sizes are scaled down to fit.
+ *
+ * <p>
+ * The sizes are applied to the ehcache caches when {@code cache.mode} is
+ * {@code annotation}, or to the {@link ResizableCaches} otherwise, and are
+ * saved in the step {@code ExecutionContext} for reporting by
+ * {@link JobStatusNotificationListener}.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@StepScope
+public class CacheSizingTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheSizingTasklet.class);
+
+    private static final int PRECISION = 14;
+
+    /**
+     * Approximate heap used per entry of each cache, in bytes, including the
+     * key, value and cache overhead.
+     */
+    private static final Map<String, Integer> ENTRY_SIZES = new LinkedHashMap<>();
+
+    static {
+        ENTRY_SIZES.put(AddressJdbcDao.ADDRESS_DETAIL_PID_CACHE, 512);
+        ENTRY_SIZES.put(AddressJdbcDao.STREET_LOCALITY_PID_CACHE, 448);
+        ENTRY_SIZES.put(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_CACHE, 512);
+        ENTRY_SIZES.put(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_PID_CACHE, 256);
+        ENTRY_SIZES.put(SchoolJdbcDao.SCHOOL_ID_CACHE, 384);
+    }
+
+    private static final String[] COMPARABLE_SECTIONS = {"for_sale_properties", "for_rent_properties", "sold_properties"};
+
+    @Value("#{jobParameters['input.file']}")
+    private String inputFile;
+
+    private JsonFactory jsonFactory;
+
+    private CacheManager cacheManager;
+
+    private List<ResizableCaches> resizableCaches = Collections.emptyList();
+
+    private int heapBudget = 256;
+    private int minEntries = 500;
+
+    public CacheSizingTasklet() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(inputFile, "[Assertion failed] - inputFile must not be null");
+        Assert.notNull(jsonFactory, "[Assertion failed] - JsonFactory must not be null");
+    }
+
+    /**
+     * Set the {@link JsonFactory} used to parse the input file.
+     *
+     * @param jsonFactory used to parse the input file
+     */
+    @Autowired
+    public void setJsonFactory(final JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Configure the {@link CacheManager} holding the ehcache caches to size.
+     * There is none unless {@code cache.mode} is {@code annotation}.
+     *
+     * @param cacheManager the {@link CacheManager} holding the ehcache caches
+     * to size.
+     */
+    @Autowired(required = false)
+    public void setCacheManager(final CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Configure the {@link ResizableCaches} to size.
+     *
+     * @param resizableCaches the {@link ResizableCaches} to size.
+     */
+    @Autowired(required = false)
+    public void setResizableCaches(final List<ResizableCaches> resizableCaches) {
+        if (resizableCaches != null) {
+            this.resizableCaches = resizableCaches;
+        }
+    }
+
+    /**
+     * Set the approximate amount of heap, in megabytes, that the caches may
+     * use in total.
+     *
+     * @param heapBudget approximate amount of heap, in megabytes, that the
+     * caches may use in total.
+     */
+    @Value("${cache.sizing.heap.budget:256}")
+    public void setHeapBudget(final int heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    /**
+     * Set the minimum number of entries of each cache.
+     *
+     * @param minEntries the minimum number of entries of each cache.
+     */
+    @Value("${cache.sizing.min.entries:500}")
+    public void setMinEntries(final int minEntries) {
+        this.minEntries = minEntries;
+    }
+
+    @Override
+    public RepeatStatus execute(final StepContribution contribution, final ChunkContext chunkContext)
+            throws Exception {
+        long start = System.currentTimeMillis();
+
+        Map<String, Long> estimates = estimate();
+        Map<String, Integer> sizes = size(estimates);
+
+        ExecutionContext executionContext = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+
+        for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+            apply(entry.getKey(), entry.getValue());
+
+            executionContext.putLong(WriteStatisticsListener.STATISTICS_KEY_PREFIX + "cache." + entry.getKey() + ".estimated", estimates.get(entry.getKey()));
+            executionContext.putLong(WriteStatisticsListener.STATISTICS_KEY_PREFIX + "cache." + entry.getKey() + ".size", entry.getValue());
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Sized caches " + sizes + " from estimates " + estimates + " in [" + (System.currentTimeMillis() - start) + "] ms");
+        }
+
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * Estimate the number of distinct keys looked up in each cache.
+     *
+     * @return the estimated number of distinct keys, by cache name
+     * @throws Exception on error reading the input files
+     */
+    private Map<String, Long> estimate() throws Exception {
+        HyperLogLog addresses = new HyperLogLog(PRECISION);
+        HyperLogLog addressDates = new HyperLogLog(PRECISION);
+        HyperLogLog addressPIDDates = new HyperLogLog(PRECISION);
+        HyperLogLog schools = new HyperLogLog(PRECISION);
+        HyperLogLog schoolStreets = new HyperLogLog(PRECISION);
+
+        for (File file : InputFiles.resolve(inputFile)) {
+            try (JsonParser parser = jsonFactory.createParser(file)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(parser, "Expected array of objects");
+                }
+
+                while (true) {
+                    JsonToken token;
+
+                    try {
+                        token = parser.nextToken();
+                    } catch (JsonEOFException ex) {
+                        logger.warn(ex.getMessage());
+
+                        token = null;
+                    }
+
+                    if (token == null || token == JsonToken.END_ARRAY) {
+                        break;
+                    }
+
+                    JsonNode node = parser.readValueAsTree();
+                    String crawlDate = text(node, "crawl_date");
+
+                    if (node.hasNonNull("addr_id")) {
+                        addressPIDDates.add(Hashing.hash(Hashing.hash(Hashing.SEED, text(node, "addr_id")), crawlDate));
+                    }
+
+                    JsonNode comparables = node.path("comparable_properties");
+
+                    for (String section : COMPARABLE_SECTIONS) {
+                        for (JsonNode comparable : comparables.path(section)) {
+                            long address = addressHash(comparable, "address");
+                            long addressDate = Hashing.hash(address, crawlDate);
+
+                            addresses.add(address);
+                            addressDates.add(addressDate);
+                            addressPIDDates.add(addressDate); // most comparables are matched to a PID
+                        }
+                    }
+
+                    for (JsonNode school : node.path("schools")) {
+                        schools.add(Hashing.hash(Hashing.hash(Hashing.hash(Hashing.SEED, text(school, "name")), text(school, "school_type")), text(school, "sector")));
+                        schoolStreets.add(addressHash(school, "street"));
+                    }
+                }
+            }
+        }
+
+        Map<String, Long> estimates = new LinkedHashMap<>();
+
+        estimates.put(AddressJdbcDao.ADDRESS_DETAIL_PID_CACHE, addresses.estimate());
+        estimates.put(AddressJdbcDao.STREET_LOCALITY_PID_CACHE, schoolStreets.estimate());
+        estimates.put(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_CACHE, addressDates.estimate());
+        estimates.put(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_PID_CACHE, addressPIDDates.estimate());
+        estimates.put(SchoolJdbcDao.SCHOOL_ID_CACHE, schools.estimate());
+
+        return estimates;
+    }
+
+    /**
+     * Size each cache to its estimate plus 10%, scaling all sizes down if the
+     * caches would exceed the heap budget.
+     *
+     * @param estimates the estimated number of distinct keys, by cache name
+     * @return the number of entries, by cache name
+     */
+    private Map<String, Integer> size(final Map<String, Long> estimates) {
+        long budget = heapBudget * 1024L * 1024L;
+        double required = 0;
+
+        for (Map.Entry<String, Long> entry : estimates.entrySet()) {
+            required += Math.max(minEntries, entry.getValue() * 1.1) * ENTRY_SIZES.get(entry.getKey());
+        }
+
+        double scale = Math.min(1.0, budget / required);
+
+        if (scale < 1.0) {
+            logger.warn("Estimated cache sizes need [" + Math.round(required / 1024 / 1024) + "] MB, scaling to cache.sizing.heap.budget [" + heapBudget + "] MB");
+        }
+
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Long> entry : estimates.entrySet()) {
+            long size = Math.round(Math.max(minEntries, entry.getValue() * 1.1) * scale);
+
+            sizes.put(entry.getKey(), (int) Math.max(minEntries, Math.min(Integer.MAX_VALUE / 2, size)));
+        }
+
+        return sizes;
+    }
+
+    private void apply(final String cacheName, final int maxEntries) {
+        if (cacheManager != null) {
+            Cache cache = cacheManager.getCache(cacheName);
+
+            if (cache != null && cache.getNativeCache() instanceof Ehcache) {
+                ((Ehcache) cache.getNativeCache()).getCacheConfiguration().setMaxEntriesLocalHeap(maxEntries);
+            }
+        }
+
+        for (ResizableCaches caches : resizableCaches) {
+            caches.resize(cacheName, maxEntries);
+        }
+    }
+
+    private static long addressHash(final JsonNode node, final String addressField) {
+        return Hashing.hash(Hashing.hash(Hashing.hash(Hashing.hash(Hashing.SEED, text(node, addressField)), text(node, "state")), text(node, "postcode")), text(node, "suburb"));
+    }
+
+    private static String text(final JsonNode node, final String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+
+}
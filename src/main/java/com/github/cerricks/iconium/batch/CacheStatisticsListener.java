@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.data.CacheStatistics;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Resets {@link CacheStatistics} before a step and copies the collected
+ * statistics into the step {@code ExecutionContext} once the step is
+ * complete, under keys prefixed with
+ * {@link WriteStatisticsListener#STATISTICS_KEY_PREFIX} and {@code cache.} so
+ * that they are reported by {@link JobStatusNotificationListener}.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class CacheStatisticsListener implements StepExecutionListener {
+
+    private CacheStatistics cacheStatistics;
+
+    public CacheStatisticsListener() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(cacheStatistics, "[Assertion failed] - CacheStatistics must not be null");
+    }
+
+    /**
+     * Configure the {@link CacheStatistics} to report on.
+     *
+     * @param cacheStatistics the {@link CacheStatistics} to report on.
+     */
+    @Autowired
+    public void setCacheStatistics(final CacheStatistics cacheStatistics) {
+        this.cacheStatistics = cacheStatistics;
+    }
+
+    @Override
+    public void beforeStep(final StepExecution stepExecution) {
+        cacheStatistics.reset();
+    }
+
+    @Override
+    public ExitStatus afterStep(final StepExecution stepExecution) {
+        for (Map.Entry<String, Long> entry : cacheStatistics.getStatistics().entrySet()) {
+            stepExecution.getExecutionContext().putLong(WriteStatisticsListener.STATISTICS_KEY_PREFIX + "cache." + entry.getKey(), entry.getValue());
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.data.AddressDao;
+import com.github.cerricks.iconium.data.PropertyDao;
+import com.github.cerricks.iconium.data.PropertyListing;
+import com.github.cerricks.iconium.data.Property;
+import com.github.cerricks.iconium.data.School;
+import com.github.cerricks.iconium.data.SchoolDao;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Resolves the GNAF PIDs, property IDs and school IDs referenced by a chunk
+ * of {@link PropertyListing} items on a pool of threads before the chunk is
+ * written, so that the lookups made while writing are answered by the lookup
+ * caches.
+ *
+ * <p>
+ * The lookups run outside the chunk transaction, so they only find rows
+ * already committed. As lookups of property and school IDs without a match
+ * are not cached, properties and schools inserted earlier in the same chunk
+ * are still found by the writer. Lookup errors are ignored here and left to
+ * surface when the chunk is written.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class ChunkLookupPrefetcher implements ItemWriteListener<PropertyListing> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkLookupPrefetcher.class);
+
+    private AddressDao addressDao;
+    private PropertyDao propertyDao;
+    private SchoolDao schoolDao;
+
+    private int threads = 0;
+
+    private ExecutorService executor;
+
+    public ChunkLookupPrefetcher() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(addressDao, "[Assertion failed] - AddressDao must not be null");
+        Assert.notNull(propertyDao, "[Assertion failed] - PropertyDao must not be null");
+        Assert.notNull(schoolDao, "[Assertion failed] - SchoolDao must not be null");
+
+        if (threads > 0) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "resolve-" + count.incrementAndGet());
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Configure the {@link AddressDao} used to resolve GNAF PIDs.
+     *
+     * @param addressDao the {@link AddressDao} used to resolve GNAF PIDs.
+     */
+    @Autowired
+    public void setAddressDao(final AddressDao addressDao) {
+        this.addressDao = addressDao;
+    }
+
+    /**
+     * Configure the {@link PropertyDao} used to resolve property IDs.
+     *
+     * @param propertyDao the {@link PropertyDao} used to resolve property IDs.
+     */
+    @Autowired
+    public void setPropertyDao(final PropertyDao propertyDao) {
+        this.propertyDao = propertyDao;
+    }
+
+    /**
+     * Configure the {@link SchoolDao} used to resolve school IDs.
+     *
+     * @param schoolDao the {@link SchoolDao} used to resolve school IDs.
+     */
+    @Autowired
+    public void setSchoolDao(final SchoolDao schoolDao) {
+        this.schoolDao = schoolDao;
+    }
+
+    /**
+     * Set the number of threads resolving lookups. Each thread uses a
+     * database connection. Zero disables resolving ahead of the writer.
+     *
+     * @param threads the number of threads resolving lookups.
+     */
+    @Value("${batch.resolve.threads:0}")
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Determine if lookups are resolved ahead of the writer.
+     *
+     * @return {@code true} if lookups are resolved ahead of the writer,
+     * {@code false} otherwise.
+     */
+    public boolean isEnabled() {
+        return threads > 0;
+    }
+
+    /**
+     * Resolve the lookups of the given items, returning once all are
+     * resolved.
+     *
+     * @param items the items to be written
+     */
+    @Override
+    public void beforeWrite(final List<? extends PropertyListing> items) {
+        if (executor == null || items.isEmpty()) {
+            return;
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(threads);
+        int sliceSize = (items.size() + threads - 1) / threads;
+
+        for (int from = 0; from < items.size(); from += sliceSize) {
+            final List<? extends PropertyListing> slice = items.subList(from, Math.min(from + sliceSize, items.size()));
+
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (PropertyListing listing : slice) {
+                        resolve(listing);
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+
+                return;
+            } catch (ExecutionException ex) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to resolve lookups ahead of write", ex.getCause());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void afterWrite(final List<? extends PropertyListing> items) {
+        // do nothing
+    }
+
+    @Override
+    public void onWriteError(final Exception exception, final List<? extends PropertyListing> items) {
+        // do nothing
+    }
+
+    /**
+     * Make the lookups for the given listing, as made by the writer, without
+     * modifying it.
+     *
+     * @param listing the listing to resolve lookups for
+     */
+    private void resolve(final PropertyListing listing) {
+        Property property = listing.getPropertyDetails();
+        LocalDate date = listing.getCrawlDate();
+
+        resolveProperty(property, date);
+
+        for (Property comparableProperty : property.getComparablePropertiesForSale()) {
+            resolveProperty(comparableProperty, date);
+        }
+
+        for (Property comparableProperty : property.getComparablePropertiesForRent()) {
+            resolveProperty(comparableProperty, date);
+        }
+
+        for (Property comparableProperty : property.getComparablePropertiesSold()) {
+            resolveProperty(comparableProperty, date);
+        }
+
+        for (School school : property.getNearbySchools()) {
+            if (schoolDao.findSchoolId(school.getName(), school.getType(), school.getSector()) == null) {
+                addressDao.findStreetLocalityPID(school.getStreet(), school.getState(), school.getPostCode(), school.getLocality());
+            }
+        }
+    }
+
+    private void resolveProperty(final Property property, final LocalDate date) {
+        String addressPID = property.getAddressPID();
+
+        if (addressPID == null) {
+            addressPID = addressDao.findAddressDetailPID(property.getAddress(), property.getState(), property.getPostCode(), property.getLocality());
+        }
+
+        if (date == null) {
+            return;
+        }
+
+        if (addressPID != null) {
+            propertyDao.findPropertyIdByAddressPID(addressPID, date);
+        } else {
+            propertyDao.findPropertyIdByAddress(property.getAddress(), property.getState(), property.getPostCode(), property.getLocality(), date);
+        }
+    }
+
+}
@@ -15,9 +15,10 @@
  */
 package com.github.cerricks.iconium.batch;
 
+import com.github.cerricks.iconium.util.Clearable;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.ItemWriteListener;
@@ -27,13 +28,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Component;
-import org.springframework.util.Assert;
 
 /**
  * Listens for failed write attempts (resulting in a rollback) and clears the
  * internal {@link Cache} configured by
  * {@link #setCacheNames(String[]) setCacheNames(String[])} from the provided
- * {@link CacheManager}.
+ * {@link CacheManager}, if any, along with any {@link Clearable} in-memory
+ * state.
  *
  * @author Clifford Errickson
  * @param <T> item type
@@ -49,12 +50,9 @@ public class ClearCacheOnRollbackListener<T> implements ItemWriteListener<T> {
     @Value("${rollback.cache.names}")
     private String[] cacheNames = {};
 
-    public ClearCacheOnRollbackListener() {
-    }
+    private List<Clearable> clearables = Collections.emptyList();
 
-    @PostConstruct
-    public void init() {
-        Assert.notNull(cacheManager, "[Assertion failed] - CacheManager must not be null");
+    public ClearCacheOnRollbackListener() {
     }
 
     /**
@@ -64,7 +62,7 @@ public class ClearCacheOnRollbackListener<T> implements ItemWriteListener<T> {
      * @param cacheManager the {@link CacheManager} that contains the caches to
      * clear on write error.
      */
-    @Autowired
+    @Autowired(required = false)
     public void setCacheManager(final CacheManager cacheManager) {
         this.cacheManager = cacheManager;
     }
@@ -80,6 +78,18 @@ public class ClearCacheOnRollbackListener<T> implements ItemWriteListener<T> {
         }
     }
 
+    /**
+     * Configure the in-memory state to be cleared on write errors.
+     *
+     * @param clearables the in-memory state to be cleared on write errors.
+     */
+    @Autowired(required = false)
+    public void setClearables(final List<Clearable> clearables) {
+        if (clearables != null) {
+            this.clearables = clearables;
+        }
+    }
+
     @Override
     public void beforeWrite(final List<? extends T> items) {
         // do nothing
@@ -99,18 +109,28 @@ public class ClearCacheOnRollbackListener<T> implements ItemWriteListener<T> {
      */
     @Override
     public void onWriteError(final Exception exception, final List<? extends T> items) {
-        for (String cacheName : cacheNames) {
-            Cache cache = cacheManager.getCache(cacheName);
-
-            if (cache == null) {
-                logger.warn("Cannot clear cache with name [" + cacheName + "]. Cache not found.");
-            } else {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Clearing cache [" + cacheName + "] following error: " + exception.getMessage());
+        if (cacheManager != null) { // none unless cache.mode is annotation
+            for (String cacheName : cacheNames) {
+                Cache cache = cacheManager.getCache(cacheName);
+
+                if (cache == null) {
+                    logger.warn("Cannot clear cache with name [" + cacheName + "]. Cache not found.");
+                } else {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Clearing cache [" + cacheName + "] following error: " + exception.getMessage());
+                    }
+
+                    cache.clear();
                 }
+            }
+        }
 
-                cache.clear();
+        for (Clearable clearable : clearables) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Clearing [" + clearable.getClass().getSimpleName() + "] following error: " + exception.getMessage());
             }
+
+            clearable.clear();
         }
     }
 
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Sorts the items of the input file by address key using an external merge
+ * sort, writing the sorted items to a new file that is then read by the load
+ * step in place of the input file.
+ *
+ * <p>
+ * Items are read into memory until {@link #setBufferSize(int)} is reached,
+ * sorted and written to a run file. The run files are then merged, at most
+ * {@value #MERGE_FACTOR} at a time, into the sorted file. Items with equal
+ * keys keep their input order.
+ *
+ * <p>
+ * Items are keyed by GNAF address PID followed by input address. As the PID
+ * is prefixed with the state, listings are grouped by state and then by
+ * address, giving long runs of hits on the lookup caches and inserting new
+ * properties in order.
+ *
+ * <p>
+ * Items are read with a {@link JsonArrayElementReader}, so an item that
+ * cannot be parsed is logged and copied as is to the start of the sorted
+ * file, to be skipped by the load step, rather than failing the sort.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@StepScope
+public class ExternalSortTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalSortTasklet.class);
+
+    /**
+     * The key under which the path of the sorted file is saved in the job
+     * {@code ExecutionContext}.
+     */
+    public static final String SORTED_INPUT_FILE_KEY = "sorted.input.file";
+
+    private static final int MERGE_FACTOR = 64;
+
+    private static final char KEY_SEPARATOR = '\t';
+
+    @Value("#{jobParameters['input.file']}")
+    private String inputFile;
+
+    @Value("#{jobExecutionContext['jobId']}")
+    private Long jobId;
+
+    private JsonFactory jsonFactory;
+
+    private File directory = new File("work/sort");
+    private int bufferSize = 256;
+
+    public ExternalSortTasklet() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(inputFile, "[Assertion failed] - inputFile must not be null");
+        Assert.notNull(jobId, "[Assertion failed] - jobId must not be null");
+        Assert.notNull(jsonFactory, "[Assertion failed] - JsonFactory must not be null");
+    }
+
+    /**
+     * Set the {@link JsonFactory} used to parse the input file.
+     *
+     * @param jsonFactory used to parse the input file
+     */
+    @Autowired
+    public void setJsonFactory(final JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Set the directory in which run files and the sorted file are written.
+     *
+     * @param directory the directory in which run files and the sorted file
+     * are written.
+     */
+    @Value("${batch.sort.dir:work/sort}")
+    public void setDirectory(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Set the approximate amount of memory, in megabytes, used to hold items
+     * before they are sorted and written to a run file.
+     *
+     * @param bufferSize approximate amount of memory, in megabytes, used to
+     * hold items.
+     */
+    @Value("${batch.sort.buffer.size:256}")
+    public void setBufferSize(final int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public RepeatStatus execute(final StepContribution contribution, final ChunkContext chunkContext)
+            throws Exception {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create sort directory [" + directory + "]");
+        }
+
+        long start = System.currentTimeMillis();
+
+        List<File> runs = writeRuns();
+
+        int pass = 0;
+
+        while (runs.size() > MERGE_FACTOR) {
+            List<File> merged = new ArrayList<>();
+
+            for (int i = 0; i < runs.size(); i += MERGE_FACTOR) {
+                File run = new File(directory, "run-" + jobId + "-" + pass + "-" + merged.size() + ".tmp");
+
+                mergeRuns(runs.subList(i, Math.min(i + MERGE_FACTOR, runs.size())), run, false);
+
+                merged.add(run);
+            }
+
+            runs = merged;
+            pass++;
+        }
+
+        File sorted = new File(directory, "sorted-" + jobId + ".json");
+
+        mergeRuns(runs, sorted, true);
+
+        chunkContext.getStepContext().getStepExecution().getJobExecution().getExecutionContext().putString(SORTED_INPUT_FILE_KEY, sorted.getAbsolutePath());
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Sorted [" + inputFile + "] to [" + sorted + "] in [" + (System.currentTimeMillis() - start) + "] ms");
+        }
+
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * Read the input file, writing sorted runs of items that fit in the
+     * buffer to run files. Each line of a run file holds the key of an item
+     * followed by the item.
+     *
+     * @return the run files, in input order
+     * @throws IOException on IO error
+     */
+    private List<File> writeRuns() throws IOException {
+        List<File> runs = new ArrayList<>();
+        List<String[]> buffer = new ArrayList<>();
+        long limit = bufferSize * 1024L * 1024L;
+        long used = 0;
+        long count = 0;
+
+        long unparsed = 0;
+
+        try (JsonArrayElementReader elements = new JsonArrayElementReader(new FileInputStream(inputFile), 0)) {
+            if (!elements.readStart()) {
+                throw new JsonParseException(null, "Expected array of objects");
+            }
+
+            byte[] element;
+
+            while ((element = elements.next()) != null) {
+                String item;
+                String key;
+
+                try {
+                    JsonNode node = JsonArrayElementReader.readTree(jsonFactory, element);
+
+                    item = node.toString();
+                    key = sortKey(node);
+                } catch (JsonProcessingException ex) {
+                    logger.warn("Copying item at byte offset [" + elements.getElementOffset() + "] unsorted as it could not be parsed: " + ex.getOriginalMessage());
+
+                    // left for the load step to skip; line breaks would split the run entry
+                    item = new String(element, StandardCharsets.UTF_8).replace('\r', ' ').replace('\n', ' ');
+                    key = "";
+                    unparsed++;
+                }
+
+                buffer.add(new String[]{key, item});
+                used += 2L * (key.length() + item.length()) + 64;
+                count++;
+
+                if (used >= limit) {
+                    runs.add(writeRun(buffer, runs.size()));
+                    buffer.clear();
+                    used = 0;
+                }
+            }
+        }
+
+        if (!buffer.isEmpty() || runs.isEmpty()) {
+            runs.add(writeRun(buffer, runs.size()));
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Wrote [" + count + "] items, [" + unparsed + "] of which could not be parsed, to [" + runs.size() + "] sorted runs");
+        }
+
+        return runs;
+    }
+
+    private File writeRun(final List<String[]> buffer, final int index) throws IOException {
+        Collections.sort(buffer, new Comparator<String[]>() {
+            @Override
+            public int compare(final String[] a, final String[] b) {
+                return a[0].compareTo(b[0]);
+            }
+        });
+
+        File run = new File(directory, "run-" + jobId + "-" + index + ".tmp");
+
+        try (Writer out = writer(run)) {
+            for (String[] entry : buffer) {
+                out.write(entry[0]);
+                out.write(KEY_SEPARATOR);
+                out.write(entry[1]);
+                out.write('\n');
+            }
+        }
+
+        return run;
+    }
+
+    /**
+     * Merge the given run files into the target file, deleting them
+     * afterwards. Ties are broken by run order so that equal keys keep their
+     * input order.
+     *
+     * @param runs the run files to merge
+     * @param target the file to write
+     * @param array {@code true} to write the target as a JSON array of items,
+     * {@code false} to write it as a run file
+     * @throws IOException on IO error
+     */
+    private void mergeRuns(final List<File> runs, final File target, final boolean array) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()), new Comparator<RunReader>() {
+            @Override
+            public int compare(final RunReader a, final RunReader b) {
+                int result = a.key.compareTo(b.key);
+
+                return result != 0
+                        ? result
+                        : Integer.compare(a.index, b.index);
+            }
+        });
+
+        try (Writer out = writer(target)) {
+            for (File run : runs) {
+                RunReader reader = new RunReader(run, readers.size());
+
+                readers.add(reader);
+
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            if (array) {
+                out.write("[\n");
+            }
+
+            boolean first = true;
+
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+
+                if (array) {
+                    if (!first) {
+                        out.write(",\n");
+                    }
+
+                    out.write(reader.item);
+                } else {
+                    out.write(reader.key);
+                    out.write(KEY_SEPARATOR);
+                    out.write(reader.item);
+                    out.write('\n');
+                }
+
+                first = false;
+
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            if (array) {
+                out.write("\n]\n");
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+
+        for (File run : runs) {
+            if (!run.delete()) {
+                logger.warn("Failed to delete run file [" + run + "]");
+            }
+        }
+    }
+
+    private static Writer writer(final File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 65536);
+    }
+
+    /**
+     * Build the sort key of an item from its address PID and input address.
+     * Items without a PID sort after those with one.
+     *
+     * @param node the item
+     * @return the sort key
+     */
+    private static String sortKey(final JsonNode node) {
+        String addressPID = node.isObject() && node.hasNonNull("addr_id")
+                ? node.get("addr_id").asText().trim().toUpperCase(Locale.ROOT)
+                : "";
+        String inputAddress = node.isObject() && node.hasNonNull("input_address")
+                ? node.get("input_address").asText().trim().toUpperCase(Locale.ROOT)
+                : "";
+
+        String key = (addressPID.isEmpty() ? "\uffff" : addressPID) + '\u0001' + inputAddress;
+
+        return key.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Reads entries of a run file in order.
+     */
+    private static class RunReader {
+
+        private final BufferedReader reader;
+        private final int index;
+
+        private String key;
+        private String item;
+
+        RunReader(final File run, final int index) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(run), StandardCharsets.UTF_8), 65536);
+            this.index = index;
+        }
+
+        boolean next() throws IOException {
+            String line = reader.readLine();
+
+            if (line == null) {
+                return false;
+            }
+
+            int separator = line.indexOf(KEY_SEPARATOR);
+
+            key = line.substring(0, separator);
+            item = line.substring(separator + 1);
+
+            return true;
+        }
+
+        void close() {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                logger.warn("Failed to close run file", ex);
+            }
+        }
+
+    }
+
+}
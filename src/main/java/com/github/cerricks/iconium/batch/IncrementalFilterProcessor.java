@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cerricks.iconium.data.AcquisitionKeyFilter;
+import com.github.cerricks.iconium.util.JsonParseUtil;
+import javax.annotation.PostConstruct;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Filters out {@link JsonNode} items for listings that have already been
+ * loaded (see {@link AcquisitionKeyFilter}), or whose cached page has already
+ * been processed during the job, before they are mapped or any lookups are
+ * made.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@StepScope
+public class IncrementalFilterProcessor implements ItemProcessor<JsonNode, JsonNode> {
+
+    private AcquisitionKeyFilter acquisitionKeyFilter;
+
+    public IncrementalFilterProcessor() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(acquisitionKeyFilter, "[Assertion failed] - AcquisitionKeyFilter must not be null");
+    }
+
+    /**
+     * Configure the {@link AcquisitionKeyFilter} used to identify listings
+     * that have already been loaded.
+     *
+     * @param acquisitionKeyFilter the {@link AcquisitionKeyFilter} used to
+     * identify listings that have already been loaded.
+     */
+    @Autowired
+    public void setAcquisitionKeyFilter(final AcquisitionKeyFilter acquisitionKeyFilter) {
+        this.acquisitionKeyFilter = acquisitionKeyFilter;
+    }
+
+    @Override
+    public JsonNode process(final JsonNode item) throws Exception {
+        if (!item.isObject()) {
+            return item; // rejected by the listing processor
+        }
+
+        if (acquisitionKeyFilter.isAcquired(JsonParseUtil.parseText(item, "url"), JsonParseUtil.parseLocalDate(item, "crawl_date", JsonParseUtil.SHORT_DATE_FORMATTER))) {
+            return null; // filters out listing already loaded
+        }
+
+        if (!acquisitionKeyFilter.addPage(JsonParseUtil.parseText(item, "_cached_page_id"))) {
+            return null; // filters out page already processed
+        }
+
+        return item;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.util.InputFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides whether the {@code input.file} job parameter names a single file,
+ * loaded by the usual steps, or a directory or pattern of files (see
+ * {@link InputFiles}), loaded as a partition per file by
+ * {@link InputFilePartitioner}.
+ *
+ * <p>
+ * As with partitioning by region, multiple input files require
+ * {@code batch.write.mode} {@code statement} or {@code procedure}.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class InputFileDecider implements JobExecutionDecider {
+
+    private static final Logger logger = LoggerFactory.getLogger(InputFileDecider.class);
+
+    /**
+     * The status returned when the input names multiple files.
+     */
+    public static final String MULTIPLE_FILES = "MULTIPLE_FILES";
+
+    private String writeMode = "statement";
+
+    public InputFileDecider() {
+    }
+
+    /**
+     * Set the write mode of the load step.
+     *
+     * @param writeMode the write mode of the load step.
+     */
+    @Value("${batch.write.mode:statement}")
+    public void setWriteMode(final String writeMode) {
+        this.writeMode = writeMode;
+    }
+
+    @Override
+    public FlowExecutionStatus decide(final JobExecution jobExecution, final StepExecution stepExecution) {
+        String input = jobExecution.getJobParameters().getString("input.file");
+
+        if (!InputFiles.isMultiple(input)) {
+            return FlowExecutionStatus.COMPLETED;
+        }
+
+        // the bulk, staging and json writers stage each chunk in shared files or tables
+        if (!"statement".equals(writeMode) && !"procedure".equals(writeMode)) {
+            throw new IllegalStateException("Multiple input files require batch.write.mode [statement] or [procedure], not [" + writeMode + "]");
+        }
+
+        logger.info("Loading [" + input + "] as a partition per file");
+
+        return new FlowExecutionStatus(MULTIPLE_FILES);
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.util.InputFiles;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Creates a partition of the load step for each file named by the
+ * {@code input.file} job parameter when it is a directory or a pattern (see
+ * {@link InputFiles}). Each partition is named after its file, without the
+ * extension, and the path of the file is saved in the partition
+ * {@code ExecutionContext} under {@link BucketPartitioner#PARTITION_FILE_KEY},
+ * as for bucket files.
+ *
+ * <p>
+ * Partition names are kept stable across runs of the same input so that a
+ * restarted job resumes each file from its own saved offset.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@StepScope
+public class InputFilePartitioner implements Partitioner {
+
+    @Value("#{jobParameters['input.file']}")
+    private String input;
+
+    public InputFilePartitioner() {
+    }
+
+    /**
+     * Set the directory or pattern naming the input files.
+     *
+     * @param input the directory or pattern naming the input files.
+     */
+    public void setInput(final String input) {
+        this.input = input;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(final int gridSize) {
+        Assert.notNull(input, "[Assertion failed] - input must not be null");
+
+        List<File> files;
+
+        try {
+            files = InputFiles.resolve(input);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to resolve input files [" + input + "]", ex);
+        }
+
+        if (files.isEmpty()) {
+            throw new IllegalStateException("No input files found for [" + input + "]");
+        }
+
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            String name = baseName(file);
+
+            // files of the same name in different directories of a pattern
+            if (partitions.containsKey(name)) {
+                name = name + "-" + i;
+            }
+
+            ExecutionContext context = new ExecutionContext();
+
+            context.putString(BucketPartitioner.PARTITION_FILE_KEY, file.getAbsolutePath());
+            context.putString(BucketPartitioner.PARTITION_NAME_KEY, name);
+
+            partitions.put(name, context);
+        }
+
+        return partitions;
+    }
+
+    private static String baseName(final File file) {
+        String name = file.getName();
+        int extension = name.lastIndexOf('.');
+
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+
+}
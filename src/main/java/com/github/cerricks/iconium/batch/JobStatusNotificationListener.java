@@ -17,12 +17,18 @@ package com.github.cerricks.iconium.batch;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.util.Map;
+import java.util.TreeMap;
 import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.listener.JobExecutionListenerSupport;
 import org.springframework.stereotype.Component;
 
 /**
- * Listens for job start and end and logs notification messages.
+ * Listens for job start and end and logs notification messages. At job end,
+ * any statistics recorded in a step {@code ExecutionContext} under keys
+ * prefixed with {@link WriteStatisticsListener#STATISTICS_KEY_PREFIX} are
+ * also logged.
  *
  * @author Clifford Errickson
  */
@@ -42,8 +48,27 @@ public class JobStatusNotificationListener extends JobExecutionListenerSupport {
     public void afterJob(final JobExecution jobExecution) {
         if (logger.isInfoEnabled()) {
             logger.info("Job [" + jobExecution.getJobInstance().getJobName() + "] finished with status [" + jobExecution.getStatus() + "]");
+
+            for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+                logStatistics(stepExecution);
+            }
+
             logger.info("Check logs for additional information");
         }
     }
 
+    private void logStatistics(final StepExecution stepExecution) {
+        Map<String, Object> statistics = new TreeMap<>();
+
+        for (Map.Entry<String, Object> entry : stepExecution.getExecutionContext().entrySet()) {
+            if (entry.getKey().startsWith(WriteStatisticsListener.STATISTICS_KEY_PREFIX)) {
+                statistics.put(entry.getKey().substring(WriteStatisticsListener.STATISTICS_KEY_PREFIX.length()), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<String, Object> entry : statistics.entrySet()) {
+            logger.info("Step [" + stepExecution.getStepName() + "] " + entry.getKey() + " [" + entry.getValue() + "]");
+        }
+    }
+
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the elements of a JSON array as raw bytes by tracking nesting and
+ * strings, without tokenizing. As each element is delimited apart from its
+ * content, an element that is not valid JSON does not prevent the elements
+ * that follow it from being read, and each element can be parsed on its own
+ * (see {@link #readTree(JsonFactory, byte[])}).
+ *
+ * @author Clifford Errickson
+ */
+public class JsonArrayElementReader implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonArrayElementReader.class);
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[65536];
+    private int length = 0;
+    private int index = 0;
+    private long position;
+    private int pushback = -1;
+
+    private byte[] element = new byte[4096];
+    private int elementLength;
+    private long elementOffset = -1;
+
+    /**
+     * Creates instance of a {@code JsonArrayElementReader}.
+     *
+     * @param in the input, positioned at the start of the array or between
+     * two of its elements
+     * @param offset the byte offset of the input within the file
+     */
+    public JsonArrayElementReader(final InputStream in, final long offset) {
+        this.in = in;
+        this.position = offset;
+    }
+
+    /**
+     * Parse an element read by this reader.
+     *
+     * @param jsonFactory the {@link JsonFactory} used to parse the element
+     * @param element the raw bytes of the element
+     * @return the parsed element.
+     * @throws IOException if the element is not valid JSON
+     */
+    public static JsonNode readTree(final JsonFactory jsonFactory, final byte[] element) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(element)) {
+            parser.nextToken();
+
+            return parser.readValueAsTree();
+        }
+    }
+
+    /**
+     * Read the opening bracket of the array.
+     *
+     * @return {@code true} if the input starts with an array, {@code false}
+     * otherwise.
+     * @throws IOException on IO error
+     */
+    public boolean readStart() throws IOException {
+        return nextNonWhitespace() == '[';
+    }
+
+    /**
+     * Read the next element of the array.
+     *
+     * @return the raw bytes of the element, or {@code null} at the end of the
+     * array or if the input ends first.
+     * @throws IOException on IO error
+     */
+    public byte[] next() throws IOException {
+        while (true) {
+            int c = nextNonWhitespace();
+
+            if (c == -1) {
+                logger.warn("Unexpected end-of-input at byte offset [" + position + "]: expected close marker for ARRAY");
+
+                return null;
+            }
+
+            if (c == ']') {
+                return null;
+            }
+
+            if (c == ',') {
+                continue;
+            }
+
+            elementOffset = position - 1;
+            elementLength = 0;
+            append(c);
+
+            if (!readElement(c)) {
+                logger.warn("Unexpected end-of-input at byte offset [" + position + "]: expected close marker for " + (c == '{' ? "OBJECT" : "value"));
+
+                return null;
+            }
+
+            return Arrays.copyOf(element, elementLength);
+        }
+    }
+
+    /**
+     * Get the byte offset of the start of the element last read.
+     *
+     * @return the byte offset of the start of the element last read.
+     */
+    public long getElementOffset() {
+        return elementOffset;
+    }
+
+    /**
+     * Get the byte offset following the element last read.
+     *
+     * @return the byte offset following the element last read.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Copy the rest of an element to the element buffer: an object or array
+     * up to its balancing close marker, a string up to its closing quote, or
+     * a scalar up to the next separator.
+     *
+     * @param first the first character of the element
+     * @return {@code true} if the element is complete, {@code false} if the
+     * input ended first
+     * @throws IOException on IO error
+     */
+    private boolean readElement(final int first) throws IOException {
+        if (first != '{' && first != '[' && first != '"') {
+            int c = read();
+
+            while (c != -1 && c != ',' && c != ']' && !Character.isWhitespace(c)) {
+                append(c);
+
+                c = read();
+            }
+
+            if (c == -1) {
+                return false;
+            }
+
+            unread(c); // the separator is read with the next element
+
+            return true;
+        }
+
+        int depth = first == '"' ? 0 : 1;
+        boolean inString = first == '"';
+        boolean escaped = false;
+
+        while (depth > 0 || inString) {
+            int c = read();
+
+            if (c == -1) {
+                return false;
+            }
+
+            append(c);
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+
+        return true;
+    }
+
+    private void append(final int c) {
+        if (elementLength == element.length) {
+            element = Arrays.copyOf(element, element.length * 2);
+        }
+
+        element[elementLength++] = (byte) c;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c = read();
+
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = read();
+        }
+
+        return c;
+    }
+
+    private void unread(final int c) {
+        pushback = c;
+        position--;
+    }
+
+    private int read() throws IOException {
+        if (pushback != -1) {
+            int c = pushback;
+
+            pushback = -1;
+            position++;
+
+            return c;
+        }
+
+        if (index == length) {
+            length = in.read(buffer);
+            index = 0;
+
+            if (length <= 0) {
+                length = 0;
+
+                return -1;
+            }
+        }
+
+        position++;
+
+        return buffer[index++] & 0xFF;
+    }
+
+}
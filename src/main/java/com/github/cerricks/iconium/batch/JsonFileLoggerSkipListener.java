@@ -36,7 +36,8 @@ import org.springframework.util.Assert;
 
 /**
  * Listens for skipped {@link JsonNode} and {@link JsonItem} items and writes
- * JSON content to file.
+ * JSON content to file. Each partition of a partitioned step writes its own
+ * file, named after the partition, e.g. {@code skiplog-1-NSW.json}.
  *
  * @author Clifford Errickson
  */
@@ -49,6 +50,9 @@ public class JsonFileLoggerSkipListener implements SkipListener<JsonNode, JsonIt
     @Value("file:${skip.file}")
     private Resource resource;
 
+    @Value("#{stepExecutionContext['" + BucketPartitioner.PARTITION_NAME_KEY + "']}")
+    private String partitionName;
+
     private JsonFactory jsonFactory;
     private JsonGenerator jsonGenerator;
 
@@ -59,6 +63,15 @@ public class JsonFileLoggerSkipListener implements SkipListener<JsonNode, JsonIt
     public void init() throws Exception {
         Assert.notNull(resource, "[Assertion failed] - Resource must not be null");
 
+        if (partitionName != null) {
+            String filename = resource.getFilename();
+            int extension = filename.lastIndexOf('.');
+
+            resource = resource.createRelative(extension > 0
+                    ? filename.substring(0, extension) + "-" + partitionName + filename.substring(extension)
+                    : filename + "-" + partitionName);
+        }
+
         jsonGenerator = jsonFactory.createGenerator(resource.getFile(), JsonEncoding.UTF8);
         jsonGenerator.enable(Feature.AUTO_CLOSE_TARGET);
         jsonGenerator.useDefaultPrettyPrinter();
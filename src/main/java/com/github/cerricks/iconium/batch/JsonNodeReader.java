@@ -19,12 +19,35 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.io.JsonEOFException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cerricks.iconium.data.CommittedRange;
+import com.github.cerricks.iconium.data.InputLedgerDao;
+import com.github.cerricks.iconium.util.FileFingerprint;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamException;
 import org.springframework.batch.item.ReaderNotOpenException;
 import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
 import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
@@ -37,7 +60,28 @@ import org.springframework.util.ClassUtils;
 
 /**
  * Restartable {@link ItemReader} that reads {@link JsonNode} items from an
- * array of JSON objects from {@link #setResource(Resource)}.
+ * array of JSON objects from {@link #setResource(Resource)}. By default, this
+ * is the {@code input.file} job parameter, or the sorted copy written by the
+ * {@link ExternalSortTasklet} if input sorting is enabled, or the bucket file
+ * of the partition (see {@link BucketPartitioner}) if the load step is
+ * partitioned.
+ *
+ * <p>
+ * The byte offset following the last item read is saved with the read count,
+ * so that on restart the reader seeks directly to it rather than parsing the
+ * items already read. When the input ledger is enabled (see
+ * {@link #setLedgerEnabled(boolean)}), the committed range of the file is
+ * also recorded in the ledger within each chunk transaction, and a new job
+ * reading a file whose leading bytes match a committed range starts after
+ * that range.
+ *
+ * <p>
+ * When {@link #setReadThreads(int)} is greater than zero, reading is
+ * pipelined: a thread extracts the raw bytes of each item from the file and
+ * hands them to a pool of threads for parsing, keeping up to
+ * {@link #setReadAhead(int)} items ahead of the step. Items are returned in
+ * input order, with the same byte offsets as when parsed in the step thread,
+ * and an item that fails to parse fails alone.
  *
  * @author Clifford Errickson
  */
@@ -48,13 +92,34 @@ public class JsonNodeReader extends AbstractItemCountingItemStreamItemReader<Jso
 
     private static final Logger logger = LoggerFactory.getLogger(JsonNodeReader.class);
 
-    @Value("file:#{jobParameters['input.file']}")
+    private static final String BYTE_OFFSET = "byte.offset";
+
+    @Value("file:#{stepExecutionContext['" + BucketPartitioner.PARTITION_FILE_KEY + "'] ?: jobExecutionContext['" + ExternalSortTasklet.SORTED_INPUT_FILE_KEY + "'] ?: jobParameters['input.file']}")
     private Resource resource;
 
+    @Value("#{jobExecutionContext['jobId']}")
+    private Long jobId;
+
     private JsonFactory jsonFactory;
     private JsonParser parser;
     private boolean noInput = false;
 
+    private InputLedgerDao inputLedgerDao;
+    private boolean ledgerEnabled = false;
+    private String headFingerprint;
+
+    private int readThreads = 0;
+    private int readAhead = 1024;
+    private BlockingQueue<Record> records;
+    private ExecutorService parsers;
+    private Thread extractor;
+    private boolean exhausted = false;
+
+    private long startOffset = 0;
+    private long baseOffset = 0;
+    private long currentOffset = 0;
+    private long committedOffset = 0;
+
     public JsonNodeReader() {
         super.setName(ClassUtils.getShortName(JsonNodeReader.class));
     }
@@ -63,6 +128,7 @@ public class JsonNodeReader extends AbstractItemCountingItemStreamItemReader<Jso
     public void init() {
         Assert.notNull(resource, "[Assertion failed] - Resource must not be null");
         Assert.notNull(jsonFactory, "[Assertion failed] - JsonFactory must not be null");
+        Assert.notNull(inputLedgerDao, "[Assertion failed] - InputLedgerDao must not be null");
     }
 
     /**
@@ -77,6 +143,53 @@ public class JsonNodeReader extends AbstractItemCountingItemStreamItemReader<Jso
         this.jsonFactory = jsonFactory;
     }
 
+    /**
+     * Configure the {@link InputLedgerDao} used to record and find committed
+     * ranges of input files.
+     *
+     * @param inputLedgerDao the {@link InputLedgerDao} used to record and find
+     * committed ranges of input files.
+     */
+    @Autowired
+    public void setInputLedgerDao(final InputLedgerDao inputLedgerDao) {
+        this.inputLedgerDao = inputLedgerDao;
+    }
+
+    /**
+     * Configure whether committed ranges of the input file are recorded in,
+     * and skipped using, the input ledger.
+     *
+     * @param ledgerEnabled {@code true} to use the input ledger, {@code false}
+     * otherwise.
+     */
+    @Value("${input.ledger.enabled:false}")
+    public void setLedgerEnabled(final boolean ledgerEnabled) {
+        this.ledgerEnabled = ledgerEnabled;
+    }
+
+    /**
+     * Set the number of threads parsing items read ahead of the step. Zero
+     * parses items in the step thread.
+     *
+     * @param readThreads the number of threads parsing items read ahead of
+     * the step.
+     */
+    @Value("${batch.read.threads:0}")
+    public void setReadThreads(final int readThreads) {
+        this.readThreads = readThreads;
+    }
+
+    /**
+     * Set the maximum number of items read ahead of the step when reading is
+     * pipelined.
+     *
+     * @param readAhead the maximum number of items read ahead of the step.
+     */
+    @Value("${batch.read.ahead:1024}")
+    public void setReadAhead(final int readAhead) {
+        this.readAhead = readAhead;
+    }
+
     /**
      * Set the resource to read input from.
      *
@@ -87,6 +200,59 @@ public class JsonNodeReader extends AbstractItemCountingItemStreamItemReader<Jso
         this.resource = resource;
     }
 
+    @Override
+    public void open(final ExecutionContext executionContext) throws ItemStreamException {
+        startOffset = 0;
+        headFingerprint = null;
+
+        String offsetKey = getExecutionContextKey(BYTE_OFFSET);
+
+        if (isSaveState() && executionContext.containsKey(offsetKey)) {
+            startOffset = executionContext.getLong(offsetKey);
+        } else if (ledgerEnabled && resource.exists()) {
+            CommittedRange range = findCommittedRange();
+
+            if (range != null) {
+                startOffset = range.getOffset();
+                setCurrentItemCount((int) range.getItemCount());
+
+                if (logger.isInfoEnabled()) {
+                    logger.info("Skipping [" + range.getItemCount() + "] items ([" + range.getOffset() + "] bytes) of [" + resource + "] committed by a previous job");
+                }
+            }
+        }
+
+        committedOffset = startOffset;
+        currentOffset = startOffset;
+
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(final ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+
+        if (currentOffset < 0) {
+            return;
+        }
+
+        if (isSaveState()) {
+            executionContext.putLong(getExecutionContextKey(BYTE_OFFSET), currentOffset);
+        }
+
+        if (ledgerEnabled && currentOffset > committedOffset) {
+            try {
+                File file = resource.getFile();
+
+                inputLedgerDao.saveCommittedRange(jobId, file.getAbsolutePath(), file.length(), headFingerprint(), new CommittedRange(currentOffset, getCurrentItemCount(), FileFingerprint.range(file, currentOffset)));
+            } catch (IOException ex) {
+                throw new ItemStreamException("Failed to fingerprint input resource: " + resource, ex);
+            }
+
+            committedOffset = currentOffset;
+        }
+    }
+
     @Override
     protected void doOpen() throws Exception {
         Assert.notNull(resource, "Input resource must be set");
@@ -101,7 +267,20 @@ public class JsonNodeReader extends AbstractItemCountingItemStreamItemReader<Jso
             throw new IllegalStateException("Input resource must be readable: " + resource);
         }
 
-        this.parser = jsonFactory.createParser(resource.getFile());
+        if (readThreads > 0) {
+            startPipeline(resource.getFile(), startOffset);
+
+            noInput = false;
+
+            return;
+        }
+
+        if (startOffset > 0) {
+            this.parser = createParser(resource.getFile(), startOffset);
+        } else {
+            this.parser = jsonFactory.createParser(resource.getFile());
+            this.baseOffset = 0;
+        }
 
         if (parser.nextToken() != JsonToken.START_ARRAY) {
             throw new JsonParseException(parser, "Expected array of objects");
@@ -115,6 +294,17 @@ public class JsonNodeReader extends AbstractItemCountingItemStreamItemReader<Jso
         if (parser != null) {
             parser.close();
         }
+
+        stopPipeline();
+    }
+
+    @Override
+    protected void jumpToItem(final int itemIndex) throws Exception {
+        if (startOffset > 0) {
+            return; // already positioned by byte offset
+        }
+
+        super.jumpToItem(itemIndex);
     }
 
     @Override
@@ -123,6 +313,10 @@ public class JsonNodeReader extends AbstractItemCountingItemStreamItemReader<Jso
             return null;
         }
 
+        if (records != null) {
+            return readPipelined();
+        }
+
         if (parser == null
                 || parser.isClosed()) {
             throw new ReaderNotOpenException("Reader must be open before it can be read.");
@@ -138,7 +332,7 @@ public class JsonNodeReader extends AbstractItemCountingItemStreamItemReader<Jso
             token = null;
         }
 
-        if (token == null) {
+        if (token == null || token == JsonToken.END_ARRAY) {
             if (logger.isDebugEnabled()) {
                 logger.debug("No more elements to read from file");
             }
@@ -153,10 +347,300 @@ public class JsonNodeReader extends AbstractItemCountingItemStreamItemReader<Jso
         }
 
         if (token != JsonToken.START_OBJECT) {
-            throw new JsonParseException(parser, "Unexpected token [" + token + "]", parser.getCurrentLocation());
+            JsonParseException ex = new JsonParseException(parser, "Unexpected token [" + token + "]", parser.getCurrentLocation());
+
+            parser.skipChildren(); // a nested array is skipped as one element
+
+            throw ex;
+        }
+
+        JsonNode node = parser.readValueAsTree();
+
+        long byteOffset = parser.getCurrentLocation().getByteOffset();
+
+        currentOffset = byteOffset >= 0
+                ? baseOffset + byteOffset
+                : -1; // offsets unavailable, restart by item count
+
+        return node;
+    }
+
+    /**
+     * Create a parser positioned at the given byte offset, which must follow
+     * an item of the array. The separator following the offset is consumed
+     * and the remainder of the file is parsed as if it were a new array.
+     *
+     * @param file the file to parse
+     * @param offset the byte offset following an item
+     * @return a parser positioned before the opening of the remaining array
+     * @throws IOException on IO error
+     */
+    private JsonParser createParser(final File file, final long offset) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            long remaining = offset;
+
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+
+                if (skipped <= 0) {
+                    throw new EOFException("Input resource is shorter than [" + offset + "] bytes: " + resource);
+                }
+
+                remaining -= skipped;
+            }
+
+            long position = offset;
+            int c = in.read();
+
+            while (c != -1 && Character.isWhitespace(c)) {
+                position++;
+                c = in.read();
+            }
+
+            if (c == ',') {
+                position++;
+            } else if (c != -1) {
+                in.unread(c);
+            }
+
+            // the prepended '[' takes the place of the byte before position
+            this.baseOffset = position - 1;
+
+            InputStream array = new SequenceInputStream(new ByteArrayInputStream("[".getBytes(StandardCharsets.UTF_8)), in);
+
+            return jsonFactory.createParser(array);
+        } catch (IOException | RuntimeException ex) {
+            in.close();
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Return the next item read ahead by the pipeline, rethrowing the error
+     * of an item that failed to parse.
+     *
+     * @return the next item or {@code null} at the end of the input
+     * @throws Exception on error reading or parsing the item
+     */
+    private JsonNode readPipelined() throws Exception {
+        if (exhausted) {
+            return null;
+        }
+
+        Record record = records.take();
+
+        if (record == Record.END) {
+            exhausted = true;
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("No more elements to read from file");
+            }
+
+            return null;
+        }
+
+        if (record.endOffset >= 0) {
+            currentOffset = record.endOffset;
+        }
+
+        if (record.error != null) {
+            throw record.error;
+        }
+
+        try {
+            return record.node.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Start the threads extracting and parsing items from the given byte
+     * offset of the given file, which must be {@code 0} or follow an item of
+     * the array.
+     *
+     * @param file the file to read
+     * @param offset the byte offset to read from
+     * @throws IOException on IO error
+     */
+    private void startPipeline(final File file, final long offset) throws IOException {
+        InputStream in = new FileInputStream(file);
+
+        try {
+            long remaining = offset;
+
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+
+                if (skipped <= 0) {
+                    throw new EOFException("Input resource is shorter than [" + offset + "] bytes: " + resource);
+                }
+
+                remaining -= skipped;
+            }
+
+            JsonArrayElementReader elements = new JsonArrayElementReader(in, offset);
+
+            if (offset == 0 && !elements.readStart()) {
+                throw new IllegalStateException("Expected array of objects: " + resource);
+            }
+
+            records = new ArrayBlockingQueue<>(Math.max(1, readAhead));
+            exhausted = false;
+
+            parsers = Executors.newFixedThreadPool(readThreads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "read-parse-" + count.incrementAndGet());
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+
+            extractor = new Thread(new RecordExtractor(elements), "read-extract");
+            extractor.setDaemon(true);
+            extractor.start();
+        } catch (IOException | RuntimeException ex) {
+            in.close();
+
+            throw ex;
+        }
+    }
+
+    private void stopPipeline() throws InterruptedException {
+        if (extractor != null) {
+            extractor.interrupt();
+            extractor.join();
+            extractor = null;
+        }
+
+        if (parsers != null) {
+            parsers.shutdownNow();
+            parsers = null;
+        }
+
+        records = null;
+    }
+
+    /**
+     * An item extracted from the input, parsed or being parsed, with the byte
+     * offset following it.
+     */
+    private static class Record {
+
+        static final Record END = new Record(null, -1, null);
+
+        private final Future<JsonNode> node;
+        private final long endOffset;
+        private final Exception error;
+
+        Record(final Future<JsonNode> node, final long endOffset, final Exception error) {
+            this.node = node;
+            this.endOffset = endOffset;
+            this.error = error;
+        }
+
+    }
+
+    /**
+     * Extracts the raw bytes of each object of the array (see
+     * {@link JsonArrayElementReader}) and submits them for parsing. An element
+     * that is not an object is reported as an error record, as it is by the
+     * serial path.
+     */
+    private class RecordExtractor implements Runnable {
+
+        private final JsonArrayElementReader elements;
+
+        RecordExtractor(final JsonArrayElementReader elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public void run() {
+            try {
+                extract();
+
+                records.put(Record.END);
+            } catch (InterruptedException ex) {
+                // closed
+            } finally {
+                try {
+                    elements.close();
+                } catch (IOException ex) {
+                    logger.warn("Failed to close input", ex);
+                }
+            }
+        }
+
+        private void extract() throws InterruptedException {
+            try {
+                byte[] element;
+
+                while ((element = elements.next()) != null) {
+                    if (element[0] != '{') {
+                        records.put(new Record(null, elements.getPosition(), new JsonParseException(null, "Unexpected character [" + (char) (element[0] & 0xFF) + "] at byte offset [" + elements.getElementOffset() + "]")));
+
+                        continue;
+                    }
+
+                    final byte[] bytes = element;
+
+                    Future<JsonNode> node = parsers.submit(new Callable<JsonNode>() {
+                        @Override
+                        public JsonNode call() throws IOException {
+                            return JsonArrayElementReader.readTree(jsonFactory, bytes);
+                        }
+                    });
+
+                    records.put(new Record(node, elements.getPosition(), null));
+                }
+            } catch (IOException ex) {
+                records.put(new Record(null, -1, ex));
+            }
+        }
+
+    }
+
+    /**
+     * Find the longest committed range recorded in the ledger matching the
+     * leading bytes of the input file.
+     *
+     * @return the committed range, or {@code null} if none matches.
+     */
+    private CommittedRange findCommittedRange() {
+        try {
+            File file = resource.getFile();
+
+            for (CommittedRange range : inputLedgerDao.findCommittedRanges(headFingerprint(), file.length())) {
+                if (range.getFingerprint().equals(FileFingerprint.range(file, range.getOffset()))) {
+                    return range;
+                }
+            }
+
+            return null;
+        } catch (IOException ex) {
+            throw new ItemStreamException("Failed to fingerprint input resource: " + resource, ex);
+        }
+    }
+
+    private String headFingerprint() throws IOException {
+        if (headFingerprint == null) {
+            headFingerprint = FileFingerprint.head(resource.getFile());
         }
 
-        return parser.readValueAsTree();
+        return headFingerprint;
     }
 
 }
@@ -20,26 +20,49 @@ import com.github.cerricks.iconium.data.Event;
 import com.github.cerricks.iconium.data.Property;
 import com.github.cerricks.iconium.data.PropertyListing;
 import com.github.cerricks.iconium.data.School;
+import com.github.cerricks.iconium.util.AddressNormalizer;
 import com.github.cerricks.iconium.util.JsonParseUtil;
 import java.io.IOException;
 import java.util.Iterator;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
  * Converts a {@link JsonNode} with {@code "_type"="RealEstateSoldHistoryItem"}
  * to a {@link JsonPropertyListing}.
  *
+ * <p>
+ * When address normalization is enabled (see
+ * {@link #setNormalizeAddresses(boolean)}), the addresses of comparable
+ * properties are converted to canonical form (see {@link AddressNormalizer}),
+ * so that the same address is looked up, cached and saved under the same key
+ * however it was written.
+ *
  * @author Clifford Errickson
  */
 @Component
 @StepScope
 public class JsonPropertyListingProcessor implements ItemProcessor<JsonNode, JsonPropertyListing> {
 
+    private boolean normalizeAddresses = false;
+
     public JsonPropertyListingProcessor() {
     }
 
+    /**
+     * Configure whether the addresses of comparable properties are converted
+     * to canonical form.
+     *
+     * @param normalizeAddresses {@code true} to convert addresses to canonical
+     * form, {@code false} to keep them as given.
+     */
+    @Value("${address.normalize.enabled:false}")
+    public void setNormalizeAddresses(final boolean normalizeAddresses) {
+        this.normalizeAddresses = normalizeAddresses;
+    }
+
     @Override
     public JsonPropertyListing process(final JsonNode item) throws Exception {
         if (!item.isObject()) {
@@ -204,6 +227,13 @@ public class JsonPropertyListingProcessor implements ItemProcessor<JsonNode, Jso
         property.setState(JsonParseUtil.parseText(node, "state"));
         property.setPostCode(JsonParseUtil.parseText(node, "postcode"));
         property.setAddress(JsonParseUtil.parseText(node, "address"));
+
+        if (normalizeAddresses) {
+            property.setAddress(AddressNormalizer.normalize(property.getAddress()));
+            property.setState(AddressNormalizer.normalizeName(property.getState()));
+            property.setLocality(AddressNormalizer.normalizeName(property.getLocality()));
+        }
+
         property.setSaleMethod(JsonParseUtil.parseText(node, "authority_type"));
 
         if (node.has("date_available")) {
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.data.PropertyListing;
+import com.github.cerricks.iconium.service.JsonTablePropertyListingService;
+import java.util.List;
+import javax.annotation.PostConstruct;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Handles writing {@code PropertyListing} a chunk at a time using a
+ * {@link JsonTablePropertyListingService}.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@StepScope
+public class JsonTablePropertyListingWriter implements ItemWriter<PropertyListing> {
+
+    @Value("#{jobExecutionContext['jobId']}")
+    private Long loadId;
+
+    private JsonTablePropertyListingService jsonTablePropertyListingService;
+
+    public JsonTablePropertyListingWriter() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(loadId, "[Assertion failed] - loadId must not be null");
+        Assert.notNull(jsonTablePropertyListingService, "[Assertion failed] - JsonTablePropertyListingService must not be null");
+    }
+
+    /**
+     * Configure the {@link JsonTablePropertyListingService} used to process
+     * {@code PropertyListing} objects.
+     *
+     * @param jsonTablePropertyListingService the
+     * {@link JsonTablePropertyListingService} used to process
+     * {@code PropertyListing} objects.
+     */
+    @Autowired
+    public void setJsonTablePropertyListingService(final JsonTablePropertyListingService jsonTablePropertyListingService) {
+        this.jsonTablePropertyListingService = jsonTablePropertyListingService;
+    }
+
+    @Override
+    public void write(final List<? extends PropertyListing> items)
+            throws Exception {
+        jsonTablePropertyListingService.saveAll(loadId, items);
+    }
+
+}
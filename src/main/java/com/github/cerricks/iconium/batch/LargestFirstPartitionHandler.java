@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
+
+/**
+ * A {@link TaskExecutorPartitionHandler} that submits the partitions created
+ * by {@link BucketPartitioner} largest bucket file first, so that when there
+ * are more partitions than threads the largest start first and the smaller
+ * ones fill in around them. Partitions flagged under
+ * {@link BucketPartitioner#PARTITION_LAST_KEY} are run once all other
+ * partitions have finished.
+ *
+ * @author Clifford Errickson
+ */
+public class LargestFirstPartitionHandler extends TaskExecutorPartitionHandler {
+
+    public LargestFirstPartitionHandler() {
+    }
+
+    @Override
+    protected Set<StepExecution> doHandle(final StepExecution masterStepExecution, final Set<StepExecution> partitionStepExecutions)
+            throws Exception {
+        List<StepExecution> last = runLast(partitionStepExecutions);
+        List<StepExecution> first = new ArrayList<>(partitionStepExecutions);
+
+        first.removeAll(last);
+
+        Set<StepExecution> result = new LinkedHashSet<>(super.doHandle(masterStepExecution, new LinkedHashSet<>(largestFirst(first))));
+
+        if (!last.isEmpty()) {
+            result.addAll(super.doHandle(masterStepExecution, new LinkedHashSet<>(largestFirst(last))));
+        }
+
+        return result;
+    }
+
+    /**
+     * Select the partition step executions to run once all others have
+     * finished.
+     *
+     * @param partitionStepExecutions the partition step executions
+     * @return the partition step executions to run last.
+     */
+    static List<StepExecution> runLast(final Collection<StepExecution> partitionStepExecutions) {
+        List<StepExecution> last = new ArrayList<>();
+
+        for (StepExecution stepExecution : partitionStepExecutions) {
+            if (Boolean.parseBoolean(stepExecution.getExecutionContext().getString(BucketPartitioner.PARTITION_LAST_KEY, "false"))) {
+                last.add(stepExecution);
+            }
+        }
+
+        return last;
+    }
+
+    /**
+     * Order the given partition step executions by the size of their bucket
+     * files, largest first.
+     *
+     * @param partitionStepExecutions the partition step executions
+     * @return the partition step executions, largest first.
+     */
+    static List<StepExecution> largestFirst(final Collection<StepExecution> partitionStepExecutions) {
+        List<StepExecution> ordered = new ArrayList<>(partitionStepExecutions);
+
+        Collections.sort(ordered, new Comparator<StepExecution>() {
+            @Override
+            public int compare(final StepExecution a, final StepExecution b) {
+                return Long.compare(size(b), size(a));
+            }
+        });
+
+        return ordered;
+    }
+
+    private static long size(final StepExecution stepExecution) {
+        String path = stepExecution.getExecutionContext().getString(BucketPartitioner.PARTITION_FILE_KEY, null);
+
+        return path != null ? new File(path).length() : 0;
+    }
+
+}
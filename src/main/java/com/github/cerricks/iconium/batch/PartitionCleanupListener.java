@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import java.io.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.listener.JobExecutionListenerSupport;
+import org.springframework.stereotype.Component;
+
+/**
+ * Deletes the bucket files written by the {@link BucketingTasklet} once the
+ * job has completed. The files are kept if the job fails, so that the
+ * partitions can read them when the job is restarted.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class PartitionCleanupListener extends JobExecutionListenerSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionCleanupListener.class);
+
+    @Override
+    public void afterJob(final JobExecution jobExecution) {
+        if (jobExecution.getStatus() != BatchStatus.COMPLETED
+                || !jobExecution.getExecutionContext().containsKey(BucketingTasklet.PARTITION_DIR_KEY)) {
+            return;
+        }
+
+        File directory = new File(jobExecution.getExecutionContext().getString(BucketingTasklet.PARTITION_DIR_KEY));
+        File[] buckets = directory.listFiles();
+
+        if (buckets != null) {
+            for (File bucket : buckets) {
+                if (!bucket.delete()) {
+                    logger.warn("Failed to delete bucket file [" + bucket + "]");
+                }
+            }
+        }
+
+        if (directory.exists() && !directory.delete()) {
+            logger.warn("Failed to delete partition directory [" + directory + "]");
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.data.PartitionQueueDao;
+import com.github.cerricks.iconium.data.QueuedPartition;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobInterruptedException;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Runs partitions of the load step queued in
+ * {@code rea.batch_partition_queue} by a coordinator (see
+ * {@link QueuePartitionHandler}), one at a time, until the queue has been
+ * empty for {@link #setIdleTimeout(long)}.
+ *
+ * <p>
+ * Enabled when {@code batch.partition.worker.enabled} is {@code true}. As with
+ * remote partitioning in Spring Batch, the partition step execution is read
+ * from the shared job repository and executed by the local load step, which
+ * saves its progress back to the job repository. Workers must therefore use
+ * the same database as the coordinator and be able to read its bucket files.
+ * The job itself is not launched by a worker (see
+ * {@link PartitionWorkerEnvironmentPostProcessor}).
+ *
+ * <p>
+ * While a partition runs, the worker renews the lease of its claim three
+ * times per {@link #setLease(long)}. If the claim has been queued again or
+ * abandoned by the coordinator, the partition is stopped at its next commit.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@ConditionalOnProperty(name = "batch.partition.worker.enabled", havingValue = "true")
+public class PartitionWorker implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionWorker.class);
+
+    private final String name = ManagementFactory.getRuntimeMXBean().getName();
+
+    private PartitionQueueDao partitionQueueDao;
+    private JobExplorer jobExplorer;
+    private JobRepository jobRepository;
+    private Step step;
+
+    private long pollInterval = 5000;
+    private long idleTimeout = 0;
+    private long lease = 60;
+
+    public PartitionWorker() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(partitionQueueDao, "[Assertion failed] - PartitionQueueDao must not be null");
+        Assert.notNull(jobExplorer, "[Assertion failed] - JobExplorer must not be null");
+        Assert.notNull(jobRepository, "[Assertion failed] - JobRepository must not be null");
+        Assert.notNull(step, "[Assertion failed] - Step must not be null");
+        Assert.isTrue(lease > 0, "[Assertion failed] - Lease must be greater than zero");
+    }
+
+    /**
+     * Configure the {@link PartitionQueueDao} used to claim partitions.
+     *
+     * @param partitionQueueDao the {@link PartitionQueueDao} used to claim
+     * partitions.
+     */
+    @Autowired
+    public void setPartitionQueueDao(final PartitionQueueDao partitionQueueDao) {
+        this.partitionQueueDao = partitionQueueDao;
+    }
+
+    /**
+     * Configure the {@link JobExplorer} used to read partition step
+     * executions.
+     *
+     * @param jobExplorer the {@link JobExplorer} used to read partition step
+     * executions.
+     */
+    @Autowired
+    public void setJobExplorer(final JobExplorer jobExplorer) {
+        this.jobExplorer = jobExplorer;
+    }
+
+    /**
+     * Configure the {@link JobRepository} used to save partition step
+     * executions that fail to start.
+     *
+     * @param jobRepository the {@link JobRepository} used to save partition
+     * step executions.
+     */
+    @Autowired
+    public void setJobRepository(final JobRepository jobRepository) {
+        this.jobRepository = jobRepository;
+    }
+
+    /**
+     * Configure the {@link Step} run for each partition.
+     *
+     * @param step the {@link Step} run for each partition.
+     */
+    @Autowired
+    public void setStep(@Qualifier("step1") final Step step) {
+        this.step = step;
+    }
+
+    /**
+     * Set the time, in milliseconds, between checks of an empty queue.
+     *
+     * @param pollInterval the time, in milliseconds, between checks of an
+     * empty queue.
+     */
+    @Value("${batch.partition.poll.interval:5000}")
+    public void setPollInterval(final long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Set the time, in seconds, after which the worker stops if no partition
+     * is queued. Zero runs until the process is stopped.
+     *
+     * @param idleTimeout the time, in seconds, after which an idle worker
+     * stops.
+     */
+    @Value("${batch.partition.worker.idle.timeout:0}")
+    public void setIdleTimeout(final long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Set the time, in seconds, within which the lease of a claimed partition
+     * must be renewed before the coordinator queues it again.
+     *
+     * @param lease the time, in seconds, within which the lease of a claimed
+     * partition must be renewed.
+     */
+    @Value("${batch.partition.lease:60}")
+    public void setLease(final long lease) {
+        this.lease = lease;
+    }
+
+    @Override
+    public void run(final String... args) throws Exception {
+        if (logger.isInfoEnabled()) {
+            logger.info("Partition worker [" + name + "] waiting for partitions");
+        }
+
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+        long idleSince = System.currentTimeMillis();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                QueuedPartition partition = partitionQueueDao.claimPartition(name);
+
+                if (partition == null) {
+                    if (idleTimeout > 0 && System.currentTimeMillis() - idleSince > TimeUnit.SECONDS.toMillis(idleTimeout)) {
+                        break;
+                    }
+
+                    Thread.sleep(pollInterval);
+
+                    continue;
+                }
+
+                boolean completed = execute(partition, heartbeat);
+
+                partitionQueueDao.finishPartition(partition.getClaimToken(), completed ? PartitionQueueDao.COMPLETED : PartitionQueueDao.FAILED);
+
+                idleSince = System.currentTimeMillis();
+            }
+        } finally {
+            heartbeat.shutdownNow();
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Partition worker [" + name + "] stopping");
+        }
+    }
+
+    /**
+     * Execute a claimed partition, renewing its lease until it finishes.
+     *
+     * @param partition the claimed partition
+     * @param heartbeat the executor used to renew the lease
+     * @return {@code true} if the partition completed, {@code false}
+     * otherwise.
+     */
+    private boolean execute(final QueuedPartition partition, final ScheduledExecutorService heartbeat) {
+        StepExecution stepExecution = jobExplorer.getStepExecution(partition.getJobExecutionId(), partition.getStepExecutionId());
+
+        if (stepExecution == null) {
+            logger.error("No step execution [" + partition.getStepExecutionId() + "] found for partition [" + partition.getStepName() + "]");
+
+            return false;
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Running partition [" + partition.getStepName() + "] of job execution [" + partition.getJobExecutionId() + "]");
+        }
+
+        long renewInterval = Math.max(1, TimeUnit.SECONDS.toMillis(lease) / 3);
+        ScheduledFuture<?> renewal = heartbeat.scheduleWithFixedDelay(new LeaseRenewal(partition, stepExecution), renewInterval, renewInterval, TimeUnit.MILLISECONDS);
+
+        try {
+            step.execute(stepExecution);
+        } catch (JobInterruptedException ex) {
+            stepExecution.setStatus(BatchStatus.STOPPED);
+            jobRepository.update(stepExecution);
+        } catch (Throwable ex) {
+            logger.error("Partition [" + partition.getStepName() + "] failed", ex);
+
+            stepExecution.addFailureException(ex);
+            stepExecution.setStatus(BatchStatus.FAILED);
+            stepExecution.setExitStatus(ExitStatus.FAILED);
+            jobRepository.update(stepExecution);
+        } finally {
+            renewal.cancel(false);
+        }
+
+        return stepExecution.getStatus() == BatchStatus.COMPLETED;
+    }
+
+    /**
+     * Renews the lease of a claimed partition, stopping the partition once
+     * its claim is lost.
+     */
+    private class LeaseRenewal implements Runnable {
+
+        private final QueuedPartition partition;
+        private final StepExecution stepExecution;
+
+        private boolean lost = false;
+
+        LeaseRenewal(final QueuedPartition partition, final StepExecution stepExecution) {
+            this.partition = partition;
+            this.stepExecution = stepExecution;
+        }
+
+        @Override
+        public void run() {
+            if (lost) {
+                return;
+            }
+
+            try {
+                if (!partitionQueueDao.renewClaim(partition.getClaimToken())) {
+                    lost = true;
+
+                    logger.warn("Claim of partition [" + partition.getStepName() + "] was lost, stopping the partition");
+
+                    stepExecution.setTerminateOnly();
+                }
+            } catch (DataAccessException ex) {
+                logger.warn("Failed to renew the lease of partition [" + partition.getStepName() + "]", ex);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+/**
+ * Disables launching of the job on startup when the process runs as a
+ * {@link PartitionWorker}, i.e. when {@code batch.partition.worker.enabled}
+ * is {@code true}, by setting {@code spring.batch.job.enabled} to
+ * {@code false} ahead of all other property sources.
+ *
+ * <p>
+ * When partitions are run by workers, i.e. in a worker or when
+ * {@code batch.partition.mode} is {@code queue}, the property key filter is
+ * also disabled ({@code property.lookup.filter.enabled}). The filter of each
+ * process only learns of the properties inserted by that process, so a miss
+ * would not be definite for properties committed by other workers.
+ *
+ * <p>
+ * Registered in {@code META-INF/spring.factories}, so it runs after the
+ * application properties have been loaded.
+ *
+ * @author Clifford Errickson
+ */
+public class PartitionWorkerEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String PROPERTY_SOURCE_NAME = "partitionWorker";
+
+    @Override
+    public void postProcessEnvironment(final ConfigurableEnvironment environment, final SpringApplication application) {
+        boolean worker = environment.getProperty("batch.partition.worker.enabled", Boolean.class, false);
+        Map<String, Object> properties = new HashMap<>();
+
+        if (worker) {
+            properties.put("spring.batch.job.enabled", "false");
+        }
+
+        if (worker || "queue".equals(environment.getProperty("batch.partition.mode"))) {
+            properties.put("property.lookup.filter.enabled", "false");
+        }
+
+        if (!properties.isEmpty()) {
+            environment.getPropertySources().addFirst(new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
+        }
+    }
+
+}
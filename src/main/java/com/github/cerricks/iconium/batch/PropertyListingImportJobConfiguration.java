@@ -18,18 +18,40 @@ package com.github.cerricks.iconium.batch;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.github.cerricks.iconium.data.AcquisitionKeyFilter;
+import com.github.cerricks.iconium.data.IdAllocator;
+import com.github.cerricks.iconium.data.PartitionQueueDao;
+import com.github.cerricks.iconium.data.PersistentLookupStore;
 import com.github.cerricks.iconium.data.PropertyListing;
+import com.github.cerricks.iconium.service.WriteStatistics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.job.builder.FlowBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.support.SimpleFlow;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.CompositeItemProcessor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
 
 /**
  * Configuration for the batch job to load {@link PropertyListing} objects.
@@ -38,7 +60,6 @@ import org.springframework.context.annotation.Configuration;
  */
 @Configuration
 @EnableBatchProcessing
-@EnableCaching
 public class PropertyListingImportJobConfiguration {
 
     @Value("${batch.skip.limit}")
@@ -47,6 +68,36 @@ public class PropertyListingImportJobConfiguration {
     @Value("${batch.commit.interval}")
     int commitLimit = 2500;
 
+    @Value("${batch.write.mode:statement}")
+    String writeMode = "statement";
+
+    @Value("${batch.sort.enabled:false}")
+    boolean sortEnabled = false;
+
+    @Value("${cache.sizing.enabled:false}")
+    boolean cacheSizingEnabled = false;
+
+    @Value("${batch.partition.enabled:false}")
+    boolean partitionEnabled = false;
+
+    @Value("${batch.partition.threads:4}")
+    int partitionThreads = 4;
+
+    @Value("${batch.partition.file.threads:1}")
+    int partitionFileThreads = 1;
+
+    @Value("${batch.partition.mode:local}")
+    String partitionMode = "local";
+
+    @Value("${batch.partition.poll.interval:5000}")
+    long partitionPollInterval = 5000;
+
+    @Value("${batch.partition.timeout:0}")
+    long partitionTimeout = 0;
+
+    @Value("${batch.partition.lease:60}")
+    long partitionLease = 60;
+
     @Autowired
     public JobBuilderFactory jobBuilderFactory;
 
@@ -71,9 +122,78 @@ public class PropertyListingImportJobConfiguration {
     @Autowired
     private JsonPropertyListingProcessor jsonPropertyListingProcessor;
 
+    @Autowired
+    private IncrementalFilterProcessor incrementalFilterProcessor;
+
+    @Autowired
+    private AcquisitionKeyFilter acquisitionKeyFilter;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
     @Autowired
     private PropertyListingWriter propertyListingWriter;
 
+    @Autowired
+    private StoredProcedurePropertyListingWriter storedProcedurePropertyListingWriter;
+
+    @Autowired
+    private BulkLoadPropertyListingWriter bulkLoadPropertyListingWriter;
+
+    @Autowired
+    private JsonTablePropertyListingWriter jsonTablePropertyListingWriter;
+
+    @Autowired
+    private StagingPropertyListingWriter stagingPropertyListingWriter;
+
+    @Autowired
+    private StagingMergeTasklet stagingMergeTasklet;
+
+    @Autowired
+    private ExternalSortTasklet externalSortTasklet;
+
+    @Autowired
+    private CacheSizingTasklet cacheSizingTasklet;
+
+    @Autowired
+    private SortedInputCleanupListener sortedInputCleanupListener;
+
+    @Autowired
+    private WriteStatisticsListener writeStatisticsListener;
+
+    @Autowired
+    private WriteStatistics writeStatistics;
+
+    @Autowired
+    private CacheStatisticsListener cacheStatisticsListener;
+
+    @Autowired
+    private PersistentLookupStore persistentLookupStore;
+
+    @Autowired
+    private ChunkLookupPrefetcher chunkLookupPrefetcher;
+
+    @Autowired
+    private BucketingTasklet bucketingTasklet;
+
+    @Autowired
+    private BucketPartitioner bucketPartitioner;
+
+    @Autowired
+    private PartitionCleanupListener partitionCleanupListener;
+
+    @Autowired
+    private PartitionQueueDao partitionQueueDao;
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired
+    private InputFilePartitioner inputFilePartitioner;
+
+    @Autowired
+    private InputFileDecider inputFileDecider;
+
     @Bean
     public JsonFactory getJsonFactory() {
         return new MappingJsonFactory();
@@ -81,25 +201,275 @@ public class PropertyListingImportJobConfiguration {
 
     @Bean
     public Job importPropertyListingJob() {
+        List<Step> steps = new ArrayList<>();
+
+        if (cacheSizingEnabled) {
+            steps.add(cacheSizingStep());
+        }
+
+        if (sortEnabled) {
+            steps.add(sortStep());
+        }
+
+        if (!"local".equals(partitionMode) && !"queue".equals(partitionMode)) {
+            throw new IllegalArgumentException("Unsupported batch.partition.mode [" + partitionMode + "]");
+        }
+
+        if (partitionEnabled) {
+            // the bulk, staging and json writers stage each chunk in shared files or tables
+            if (!"statement".equals(writeMode) && !"procedure".equals(writeMode)) {
+                throw new IllegalArgumentException("batch.partition.enabled requires batch.write.mode [statement] or [procedure], not [" + writeMode + "]");
+            }
+
+            steps.add(bucketStep());
+            steps.add(partitionedLoadStep());
+        } else {
+            steps.add(step1());
+        }
+
+        if ("staging".equals(writeMode)) {
+            steps.add(mergeStep());
+        }
+
+        // a directory or pattern of input files is loaded as a partition per file
+        List<Step> fileSteps = new ArrayList<>();
+
+        if (cacheSizingEnabled) {
+            fileSteps.add(cacheSizingStep());
+        }
+
+        fileSteps.add(fileLoadStep());
+
+        Flow input = new FlowBuilder<SimpleFlow>("input")
+                .start(inputFileDecider)
+                .on(InputFileDecider.MULTIPLE_FILES).to(flow("multipleFiles", fileSteps))
+                .from(inputFileDecider)
+                .on("*").to(flow("singleFile", steps))
+                .end();
+
         return jobBuilderFactory.get("propertyListingImportJob")
                 .incrementer(new RunIdIncrementer())
                 .listener(jobStatusCompletionListener)
                 .listener(jobIdToContextExecutionListener)
-                .flow(step1())
+                .listener(sortedInputCleanupListener)
+                .listener(partitionCleanupListener)
+                .start(input)
                 .end()
                 .build();
     }
 
+    /**
+     * Build the load step, run on its own or as a partition by a remote
+     * worker.
+     *
+     * @return the load step.
+     */
     @Bean
     public Step step1() {
-        return stepBuilderFactory.get("load")
+        return loadStep(true);
+    }
+
+    /**
+     * Build the load step run as a partition by
+     * {@link LargestFirstPartitionHandler}. Statistics of local partitions
+     * are collected by the partitioned step across all partitions.
+     *
+     * @return the load step for local partitions.
+     */
+    @Bean
+    public Step localPartitionLoadStep() {
+        return loadStep(false);
+    }
+
+    private Step loadStep(final boolean collectStatistics) {
+        StepBuilder load = stepBuilderFactory.get("load");
+
+        if (collectStatistics) {
+            load.listener(writeStatisticsListener);
+            load.listener(cacheStatisticsListener);
+        }
+
+        SimpleStepBuilder<JsonNode, JsonPropertyListing> step = load
                 .<JsonNode, JsonPropertyListing>chunk(commitLimit)
                 .faultTolerant().listener(jsonFileLoggerSkipListener).skip(Exception.class).skipLimit(skipLimit)
                 .reader(jsonNodeReader)
-                .processor(jsonPropertyListingProcessor)
-                .writer(propertyListingWriter)
-                .listener(clearCacheOnRollbackListener)
+                .processor(propertyListingProcessor())
+                .writer(propertyListingWriter());
+
+        step.listener(clearCacheOnRollbackListener);
+        step.listener((ChunkListener) persistentLookupStore);
+        step.listener((ChunkListener) writeStatistics);
+        step.listener((ChunkListener) acquisitionKeyFilter);
+
+        // only the statement and bulk writers look up IDs while writing
+        if (chunkLookupPrefetcher.isEnabled()
+                && ("statement".equals(writeMode) || "bulk".equals(writeMode))) {
+            step.listener((ItemWriteListener<PropertyListing>) chunkLookupPrefetcher);
+        }
+
+        return step.build();
+    }
+
+    /**
+     * Build the load step partitioned by region, with one partition per
+     * bucket file.
+     *
+     * @return the partitioned load step.
+     */
+    @Bean
+    public Step partitionedLoadStep() {
+        return partitionedStep("partitionedLoad", bucketPartitioner, partitionThreads);
+    }
+
+    /**
+     * Build the load step partitioned by input file, with one partition per
+     * file named by the {@code input.file} job parameter.
+     *
+     * <p>
+     * Unlike region buckets, files may reference the same comparable
+     * properties, and a partition cannot see a property inserted by another
+     * partition until it commits, so files are loaded by
+     * {@code batch.partition.file.threads} threads, one by default.
+     *
+     * @return the load step partitioned by input file.
+     */
+    @Bean
+    public Step fileLoadStep() {
+        return partitionedStep("fileLoad", inputFilePartitioner, partitionFileThreads);
+    }
+
+    /**
+     * Build a partitioned load step. In {@code local} mode, the partitions
+     * run on a work-stealing pool of the given number of threads, sharing the
+     * lookup caches. In {@code queue} mode, they are queued for remote
+     * workers.
+     *
+     * @param name the name of the partitioned step
+     * @param partitioner the {@link Partitioner} creating the partitions
+     * @param threads the number of partitions run at the same time in
+     * {@code local} mode
+     * @return the partitioned load step.
+     */
+    private Step partitionedStep(final String name, final Partitioner partitioner, final int threads) {
+        if ("queue".equals(partitionMode)) {
+            QueuePartitionHandler partitionHandler = new QueuePartitionHandler();
+
+            partitionHandler.setPartitionQueueDao(partitionQueueDao);
+            partitionHandler.setJobExplorer(jobExplorer);
+            partitionHandler.setPollInterval(partitionPollInterval);
+            partitionHandler.setTimeout(TimeUnit.SECONDS.toMillis(partitionTimeout));
+            partitionHandler.setLease(partitionLease);
+
+            return stepBuilderFactory.get(name)
+                    .partitioner("load", partitioner)
+                    .partitionHandler(partitionHandler)
+                    .build();
+        }
+
+        LargestFirstPartitionHandler partitionHandler = new LargestFirstPartitionHandler();
+
+        partitionHandler.setStep(localPartitionLoadStep());
+        partitionHandler.setTaskExecutor(new ConcurrentTaskExecutor(new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true)));
+
+        return stepBuilderFactory.get(name)
+                .listener(writeStatisticsListener)
+                .listener(cacheStatisticsListener)
+                .partitioner("load", partitioner)
+                .partitionHandler(partitionHandler)
+                .build();
+    }
+
+    @Bean
+    public Step bucketStep() {
+        return stepBuilderFactory.get("bucket")
+                .tasklet(bucketingTasklet)
                 .build();
     }
 
+    @Bean
+    public Step cacheSizingStep() {
+        return stepBuilderFactory.get("estimate")
+                .tasklet(cacheSizingTasklet)
+                .allowStartIfComplete(true) // cache sizes are not kept across restarts
+                .build();
+    }
+
+    @Bean
+    public Step sortStep() {
+        return stepBuilderFactory.get("sort")
+                .tasklet(externalSortTasklet)
+                .build();
+    }
+
+    @Bean
+    public Step mergeStep() {
+        return stepBuilderFactory.get("merge")
+                .listener(writeStatisticsListener)
+                .tasklet(stagingMergeTasklet)
+                .listener((ChunkListener) writeStatistics)
+                .build();
+    }
+
+    /**
+     * Build a flow running the given steps in order.
+     *
+     * @param name the name of the flow
+     * @param steps the steps to run
+     * @return the flow.
+     */
+    private static Flow flow(final String name, final List<Step> steps) {
+        FlowBuilder<SimpleFlow> flow = new FlowBuilder<SimpleFlow>(name).start(steps.get(0));
+
+        for (Step step : steps.subList(1, steps.size())) {
+            flow.next(step);
+        }
+
+        return flow.build();
+    }
+
+    /**
+     * Build the processor, filtering out listings already loaded when
+     * incremental loading is enabled.
+     *
+     * @return the processor for the load step.
+     */
+    private ItemProcessor<JsonNode, JsonPropertyListing> propertyListingProcessor() {
+        if (!acquisitionKeyFilter.isEnabled()) {
+            return jsonPropertyListingProcessor;
+        }
+
+        CompositeItemProcessor<JsonNode, JsonPropertyListing> processor = new CompositeItemProcessor<>();
+
+        processor.setDelegates(Arrays.<ItemProcessor<?, ?>>asList(incrementalFilterProcessor, jsonPropertyListingProcessor));
+
+        return processor;
+    }
+
+    /**
+     * Select the writer for the configured write mode.
+     *
+     * @return the writer for the configured write mode.
+     */
+    private ItemWriter<PropertyListing> propertyListingWriter() {
+        switch (writeMode) {
+            case "statement":
+                return propertyListingWriter;
+            case "procedure":
+                return storedProcedurePropertyListingWriter;
+            case "bulk":
+                // checked here rather than per chunk, where every item would be skipped
+                if (!idAllocator.isEnabled()) {
+                    throw new IllegalArgumentException("batch.write.mode [bulk] requires client-side ID allocation (id.allocator.enabled=true)");
+                }
+
+                return bulkLoadPropertyListingWriter;
+            case "staging":
+                return stagingPropertyListingWriter;
+            case "json":
+                return jsonTablePropertyListingWriter;
+            default:
+                throw new IllegalArgumentException("Unsupported batch.write.mode [" + writeMode + "]");
+        }
+    }
+
 }
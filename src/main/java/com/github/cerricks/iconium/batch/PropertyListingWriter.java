@@ -16,6 +16,7 @@
 package com.github.cerricks.iconium.batch;
 
 import com.github.cerricks.iconium.data.PropertyListing;
+import com.github.cerricks.iconium.service.ChunkIdentityMap;
 import com.github.cerricks.iconium.service.PropertyListingService;
 import java.util.List;
 import javax.annotation.PostConstruct;
@@ -41,12 +42,15 @@ public class PropertyListingWriter implements ItemWriter<PropertyListing> {
 
     private PropertyListingService propertyListingService;
 
+    private ChunkIdentityMap chunkIdentityMap;
+
     public PropertyListingWriter() {
     }
 
     @PostConstruct
     public void init() {
         Assert.notNull(propertyListingService, "[Assertion failed] - PropertyListingService must not be null");
+        Assert.notNull(chunkIdentityMap, "[Assertion failed] - ChunkIdentityMap must not be null");
     }
 
     /**
@@ -61,11 +65,27 @@ public class PropertyListingWriter implements ItemWriter<PropertyListing> {
         this.propertyListingService = propertyListingService;
     }
 
+    /**
+     * Configure the {@link ChunkIdentityMap} cleared at the end of each
+     * chunk.
+     *
+     * @param chunkIdentityMap the {@link ChunkIdentityMap} cleared at the end
+     * of each chunk.
+     */
+    @Autowired
+    public void setChunkIdentityMap(final ChunkIdentityMap chunkIdentityMap) {
+        this.chunkIdentityMap = chunkIdentityMap;
+    }
+
     @Override
     public void write(final List<? extends PropertyListing> items)
             throws Exception {
-        for (PropertyListing listing : items) {
-            propertyListingService.save(listing);
+        try {
+            for (PropertyListing listing : items) {
+                propertyListingService.save(listing);
+            }
+        } finally {
+            chunkIdentityMap.clear();
         }
     }
 
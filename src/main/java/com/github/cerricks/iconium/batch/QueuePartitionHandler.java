@@ -0,0 +1,222 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.data.PartitionQueueDao;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.StepExecutionSplitter;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link PartitionHandler} that hands partitions to remote workers through
+ * {@code rea.batch_partition_queue} rather than running them itself.
+ *
+ * <p>
+ * The partition step executions created by the splitter are saved in the job
+ * repository as usual, and a row for each is queued, largest bucket file
+ * first, with partitions flagged to run last (see
+ * {@link BucketPartitioner#PARTITION_LAST_KEY}) only queued once the others
+ * have finished. Workers (see {@link PartitionWorker}) claim the rows, run the
+ * partitions against the shared job repository and record whether they
+ * completed. This handler polls the queue until no partition of the job
+ * execution is left queued or claimed, then returns the partition step
+ * executions as saved by the workers.
+ *
+ * <p>
+ * While waiting, claims whose lease has not been renewed within
+ * {@link #setLease(long)}, e.g. as their worker was killed, are queued again
+ * to be claimed by another worker, which resumes the partition from its last
+ * commit. If the wait times out or is interrupted, the unfinished partitions
+ * are abandoned so that no worker loads them alongside a restarted job.
+ *
+ * @author Clifford Errickson
+ */
+public class QueuePartitionHandler implements PartitionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueuePartitionHandler.class);
+
+    private PartitionQueueDao partitionQueueDao;
+    private JobExplorer jobExplorer;
+
+    private int gridSize = 1;
+    private long pollInterval = 5000;
+    private long timeout = 0;
+    private long lease = 60;
+
+    public QueuePartitionHandler() {
+    }
+
+    /**
+     * Configure the {@link PartitionQueueDao} used to queue partitions.
+     *
+     * @param partitionQueueDao the {@link PartitionQueueDao} used to queue
+     * partitions.
+     */
+    public void setPartitionQueueDao(final PartitionQueueDao partitionQueueDao) {
+        this.partitionQueueDao = partitionQueueDao;
+    }
+
+    /**
+     * Configure the {@link JobExplorer} used to read the partition step
+     * executions saved by the workers.
+     *
+     * @param jobExplorer the {@link JobExplorer} used to read the partition
+     * step executions.
+     */
+    public void setJobExplorer(final JobExplorer jobExplorer) {
+        this.jobExplorer = jobExplorer;
+    }
+
+    /**
+     * Set the grid size passed to the splitter.
+     *
+     * @param gridSize the grid size passed to the splitter.
+     */
+    public void setGridSize(final int gridSize) {
+        this.gridSize = gridSize;
+    }
+
+    /**
+     * Set the time, in milliseconds, between checks of the queue.
+     *
+     * @param pollInterval the time, in milliseconds, between checks of the
+     * queue.
+     */
+    public void setPollInterval(final long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Set the time, in milliseconds, to wait for all partitions to finish
+     * before failing. Zero waits indefinitely.
+     *
+     * @param timeout the time, in milliseconds, to wait for all partitions to
+     * finish.
+     */
+    public void setTimeout(final long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Set the time, in seconds, within which a worker must renew the lease of
+     * a claimed partition before it is queued again.
+     *
+     * @param lease the time, in seconds, within which a worker must renew the
+     * lease of a claimed partition.
+     */
+    public void setLease(final long lease) {
+        this.lease = lease;
+    }
+
+    @Override
+    public Collection<StepExecution> handle(final StepExecutionSplitter stepSplitter, final StepExecution masterStepExecution)
+            throws Exception {
+        Assert.notNull(partitionQueueDao, "[Assertion failed] - PartitionQueueDao must not be null");
+        Assert.notNull(jobExplorer, "[Assertion failed] - JobExplorer must not be null");
+
+        long jobExecutionId = masterStepExecution.getJobExecutionId();
+        Set<StepExecution> partitionStepExecutions = stepSplitter.split(masterStepExecution, gridSize);
+
+        List<StepExecution> last = LargestFirstPartitionHandler.runLast(partitionStepExecutions);
+        List<StepExecution> first = new ArrayList<>(partitionStepExecutions);
+
+        first.removeAll(last);
+
+        try {
+            queue(jobExecutionId, first);
+            await(jobExecutionId);
+
+            if (!last.isEmpty()) {
+                queue(jobExecutionId, last);
+                await(jobExecutionId);
+            }
+        } catch (Exception ex) {
+            int abandoned = partitionQueueDao.abandonPartitions(jobExecutionId);
+
+            if (abandoned > 0) {
+                logger.warn("Abandoned [" + abandoned + "] unfinished partitions of job execution [" + jobExecutionId + "]");
+            }
+
+            throw ex;
+        }
+
+        List<StepExecution> result = new ArrayList<>(partitionStepExecutions.size());
+
+        for (StepExecution stepExecution : partitionStepExecutions) {
+            result.add(jobExplorer.getStepExecution(jobExecutionId, stepExecution.getId()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Queue the given partitions, largest first.
+     *
+     * @param jobExecutionId the ID of the job execution
+     * @param stepExecutions the partition step executions to queue
+     */
+    private void queue(final long jobExecutionId, final List<StepExecution> stepExecutions) {
+        for (StepExecution stepExecution : LargestFirstPartitionHandler.largestFirst(stepExecutions)) {
+            partitionQueueDao.addPartition(jobExecutionId, stepExecution.getId(), stepExecution.getStepName());
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Queued [" + stepExecutions.size() + "] partitions of job execution [" + jobExecutionId + "] for workers");
+        }
+    }
+
+    /**
+     * Wait for all partitions of the given job execution to finish, queueing
+     * again claims whose lease has expired.
+     *
+     * @param jobExecutionId the ID of the job execution
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the partitions do not finish within
+     * the timeout
+     */
+    private void await(final long jobExecutionId) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        int unfinished;
+
+        while ((unfinished = partitionQueueDao.countUnfinishedPartitions(jobExecutionId)) > 0) {
+            if (timeout > 0 && System.currentTimeMillis() - start > timeout) {
+                throw new IllegalStateException("Timed out after [" + TimeUnit.MILLISECONDS.toSeconds(timeout) + "] s waiting for [" + unfinished + "] partitions of job execution [" + jobExecutionId + "]");
+            }
+
+            int requeued = partitionQueueDao.requeueExpiredPartitions(jobExecutionId, lease);
+
+            if (requeued > 0) {
+                logger.warn("Queued again [" + requeued + "] partitions of job execution [" + jobExecutionId + "] whose worker lease expired");
+            }
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Waiting for [" + unfinished + "] partitions of job execution [" + jobExecutionId + "]");
+            }
+
+            Thread.sleep(pollInterval);
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.data.IdAllocator;
+import com.github.cerricks.iconium.data.StagingDao;
+import com.github.cerricks.iconium.service.WriteStatistics;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Merges the rows staged by the {@link StagingPropertyListingWriter} into the
+ * {@code rea.*} tables using set-based SQL, then deletes them. The merge runs
+ * in a single transaction, so a failed merge leaves the staged rows in place
+ * for the step to be restarted.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@StepScope
+public class StagingMergeTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(StagingMergeTasklet.class);
+
+    @Value("#{jobExecutionContext['jobId']}")
+    private Long loadId;
+
+    private StagingDao stagingDao;
+
+    private IdAllocator idAllocator;
+
+    private WriteStatistics writeStatistics;
+
+    public StagingMergeTasklet() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(loadId, "[Assertion failed] - loadId must not be null");
+        Assert.notNull(stagingDao, "[Assertion failed] - StagingDao must not be null");
+        Assert.notNull(idAllocator, "[Assertion failed] - IdAllocator must not be null");
+        Assert.notNull(writeStatistics, "[Assertion failed] - WriteStatistics must not be null");
+    }
+
+    /**
+     * Configure the {@link StagingDao} used to merge staged rows.
+     *
+     * @param stagingDao the {@link StagingDao} used to merge staged rows.
+     */
+    @Autowired
+    public void setStagingDao(final StagingDao stagingDao) {
+        this.stagingDao = stagingDao;
+    }
+
+    /**
+     * Configure the {@link IdAllocator}, which must be disabled as merged
+     * rows are assigned IDs by the database.
+     *
+     * @param idAllocator the {@link IdAllocator}
+     */
+    @Autowired
+    public void setIdAllocator(final IdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * Configure the {@link WriteStatistics} to record inserted rows in.
+     *
+     * @param writeStatistics the {@link WriteStatistics} to record inserted
+     * rows in.
+     */
+    @Autowired
+    public void setWriteStatistics(final WriteStatistics writeStatistics) {
+        this.writeStatistics = writeStatistics;
+    }
+
+    @Override
+    public RepeatStatus execute(final StepContribution contribution, final ChunkContext chunkContext)
+            throws Exception {
+        Assert.state(!idAllocator.isEnabled(), "Staging write mode cannot be used with client-side ID allocation (id.allocator.enabled=true)");
+
+        Map<String, Integer> inserted = stagingDao.merge(loadId);
+
+        for (Map.Entry<String, Integer> entry : inserted.entrySet()) {
+            if (entry.getValue() > 0) {
+                writeStatistics.recordInsert(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // as in statement mode, listings without an address PID are not recorded as acquired
+        int unresolved = stagingDao.countUnresolvedListings(loadId);
+
+        if (unresolved > 0) {
+            logger.warn("Skipped data acquisition details of [" + unresolved + "] listings of load [" + loadId + "] without an address PID");
+
+            writeStatistics.recordSkipped("data_acquisition", unresolved);
+        }
+
+        stagingDao.clear(loadId);
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Merged load [" + loadId + "]: " + inserted);
+        }
+
+        return RepeatStatus.FINISHED;
+    }
+
+}
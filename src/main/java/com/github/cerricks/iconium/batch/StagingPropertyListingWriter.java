@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.data.PropertyListing;
+import com.github.cerricks.iconium.data.StagingDao;
+import java.util.List;
+import javax.annotation.PostConstruct;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Handles writing {@code PropertyListing} to the staging tables using a
+ * {@link StagingDao}, to be merged into the {@code rea.*} tables by the
+ * {@link StagingMergeTasklet}. Rows are staged under the ID of the job
+ * instance, so that rows staged before a restart are merged with the rest.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@StepScope
+public class StagingPropertyListingWriter implements ItemWriter<PropertyListing> {
+
+    @Value("#{jobExecutionContext['jobId']}")
+    private Long loadId;
+
+    private StagingDao stagingDao;
+
+    public StagingPropertyListingWriter() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(loadId, "[Assertion failed] - loadId must not be null");
+        Assert.notNull(stagingDao, "[Assertion failed] - StagingDao must not be null");
+    }
+
+    /**
+     * Configure the {@link StagingDao} used to stage {@code PropertyListing}
+     * objects.
+     *
+     * @param stagingDao the {@link StagingDao} used to stage
+     * {@code PropertyListing} objects.
+     */
+    @Autowired
+    public void setStagingDao(final StagingDao stagingDao) {
+        this.stagingDao = stagingDao;
+    }
+
+    @Override
+    public void write(final List<? extends PropertyListing> items)
+            throws Exception {
+        stagingDao.stage(loadId, items);
+    }
+
+}
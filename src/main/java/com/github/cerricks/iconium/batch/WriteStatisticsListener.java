@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.batch;
+
+import com.github.cerricks.iconium.service.WriteStatistics;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Resets {@link WriteStatistics} before a step and copies the collected counts
+ * into the step {@code ExecutionContext} once the step is complete. Counts are
+ * stored under keys prefixed with {@link #STATISTICS_KEY_PREFIX} so that they
+ * are reported by {@link JobStatusNotificationListener}.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class WriteStatisticsListener implements StepExecutionListener {
+
+    /**
+     * Prefix of {@code ExecutionContext} keys containing statistics to report
+     * at job end.
+     */
+    public static final String STATISTICS_KEY_PREFIX = "stats.";
+
+    private WriteStatistics writeStatistics;
+
+    public WriteStatisticsListener() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(writeStatistics, "[Assertion failed] - WriteStatistics must not be null");
+    }
+
+    /**
+     * Configure the {@link WriteStatistics} to report on.
+     *
+     * @param writeStatistics the {@link WriteStatistics} to report on.
+     */
+    @Autowired
+    public void setWriteStatistics(final WriteStatistics writeStatistics) {
+        this.writeStatistics = writeStatistics;
+    }
+
+    @Override
+    public void beforeStep(final StepExecution stepExecution) {
+        writeStatistics.reset();
+    }
+
+    @Override
+    public ExitStatus afterStep(final StepExecution stepExecution) {
+        for (Map.Entry<String, Long> entry : writeStatistics.getInserted().entrySet()) {
+            stepExecution.getExecutionContext().putLong(STATISTICS_KEY_PREFIX + "inserted." + entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<String, Long> entry : writeStatistics.getDuplicates().entrySet()) {
+            stepExecution.getExecutionContext().putLong(STATISTICS_KEY_PREFIX + "duplicates." + entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<String, Long> entry : writeStatistics.getFiltered().entrySet()) {
+            stepExecution.getExecutionContext().putLong(STATISTICS_KEY_PREFIX + "filtered." + entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<String, Long> entry : writeStatistics.getSkipped().entrySet()) {
+            stepExecution.getExecutionContext().putLong(STATISTICS_KEY_PREFIX + "skipped." + entry.getKey(), entry.getValue());
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.github.cerricks.iconium.util.Clearable;
+import com.github.cerricks.iconium.util.Hashing;
+import com.github.cerricks.iconium.util.LongHashSet;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the listings already loaded so that an incremental load can drop
+ * them before any lookups are made.
+ *
+ * <p>
+ * A listing is identified by its (url, acquired_on) pair as recorded in
+ * {@code rea.data_acquisition}. The keys for a given acquired_on date are
+ * loaded from the database the first time a listing for that date is checked,
+ * so the set covers exactly the date range of the input. Keys are held as
+ * 64-bit hashes in a {@link LongHashSet}.
+ *
+ * <p>
+ * The cached page IDs seen during the job are also tracked, so that a page
+ * repeated within the input is only processed once. The pages recorded by
+ * each thread since its chunk began are remembered and removed again if the
+ * chunk is rolled back (see {@link #afterChunkError(ChunkContext)}), e.g. on
+ * a skipped processor error, so that they are not filtered out when the
+ * chunk is processed again.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class AcquisitionKeyFilter implements Clearable, ChunkListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AcquisitionKeyFilter.class);
+
+    private static final long ACQUISITION_SEED = Hashing.hash(Hashing.SEED, "acquisition");
+    private static final long PAGE_SEED = Hashing.hash(Hashing.SEED, "page");
+
+    /**
+     * SQL: Select URLs of listings acquired on a given date.
+     */
+    private static final String SELECT_ACQUIRED_URLS
+            = "SELECT "
+            + "  url "
+            + "FROM "
+            + "  rea.data_acquisition "
+            + "WHERE "
+            + "  acquired_on = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Set<LocalDate> loadedDates = Collections.newSetFromMap(new ConcurrentHashMap<LocalDate, Boolean>());
+    private final LongHashSet acquisitionKeys = new LongHashSet();
+    private final LongHashSet pageKeys = new LongHashSet();
+
+    private final ThreadLocal<List<Long>> chunkPageKeys = new ThreadLocal<List<Long>>() {
+        @Override
+        protected List<Long> initialValue() {
+            return new ArrayList<>();
+        }
+    };
+
+    private boolean enabled = false;
+
+    /**
+     * Creates instance of an {@code AcquisitionKeyFilter}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     */
+    @Autowired
+    public AcquisitionKeyFilter(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Configure whether this filter is enabled. When disabled, no listing is
+     * ever reported as loaded.
+     *
+     * @param enabled {@code true} to enable this filter, {@code false}
+     * otherwise.
+     */
+    @Value("${batch.incremental.enabled:false}")
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Determine if this filter is enabled.
+     *
+     * @return {@code true} if this filter is enabled, {@code false} otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Determine if the listing at the given URL has already been loaded for
+     * the given date.
+     *
+     * @param url the URL of the listing
+     * @param acquiredOn the date the listing was acquired
+     * @return {@code true} if already loaded, {@code false} otherwise.
+     * @throws DataAccessException on data access error
+     */
+    public boolean isAcquired(final String url, final LocalDate acquiredOn)
+            throws DataAccessException {
+        if (!enabled || url == null || acquiredOn == null) {
+            return false;
+        }
+
+        load(acquiredOn);
+
+        return acquisitionKeys.contains(acquisitionKey(url, acquiredOn));
+    }
+
+    /**
+     * Record the given cached page as seen.
+     *
+     * @param cachedPageId the ID of the cached page
+     * @return {@code true} if the page has not been seen before during the
+     * job, {@code false} otherwise.
+     */
+    public boolean addPage(final String cachedPageId) {
+        if (!enabled || cachedPageId == null) {
+            return true;
+        }
+
+        long pageKey = Hashing.hash(PAGE_SEED, cachedPageId);
+
+        if (!pageKeys.add(pageKey)) {
+            return false;
+        }
+
+        chunkPageKeys.get().add(pageKey);
+
+        return true;
+    }
+
+    /**
+     * Remove all cached page IDs from this filter.
+     */
+    @Override
+    public void clear() {
+        chunkPageKeys.get().clear();
+        pageKeys.clear();
+    }
+
+    @Override
+    public void beforeChunk(final ChunkContext context) {
+        chunkPageKeys.get().clear();
+    }
+
+    @Override
+    public void afterChunk(final ChunkContext context) {
+        chunkPageKeys.get().clear();
+    }
+
+    /**
+     * Remove the cached page IDs recorded by the rolled back chunk.
+     *
+     * @param context the chunk context
+     */
+    @Override
+    public void afterChunkError(final ChunkContext context) {
+        List<Long> keys = chunkPageKeys.get();
+
+        for (Long pageKey : keys) {
+            pageKeys.remove(pageKey);
+        }
+
+        keys.clear();
+    }
+
+    /**
+     * Ensure the keys for the given date have been loaded, loading them if
+     * necessary.
+     *
+     * @param acquiredOn the date to load keys for
+     */
+    private void load(final LocalDate acquiredOn) {
+        if (!loadedDates.contains(acquiredOn)) {
+            synchronized (this) {
+                if (!loadedDates.contains(acquiredOn)) {
+                    final LocalDate date = acquiredOn;
+                    final int[] count = new int[1];
+
+                    jdbcTemplate.query(SELECT_ACQUIRED_URLS, new Object[]{date.toDate()}, new RowCallbackHandler() {
+                        @Override
+                        public void processRow(final ResultSet rs) throws SQLException {
+                            acquisitionKeys.add(acquisitionKey(rs.getString(1), date));
+
+                            count[0]++;
+                        }
+                    });
+
+                    loadedDates.add(date);
+
+                    if (logger.isInfoEnabled()) {
+                        logger.info("Loaded [" + count[0] + "] acquisition keys for date [" + date + "]");
+                    }
+                }
+            }
+        }
+    }
+
+    private static long acquisitionKey(final String url, final LocalDate acquiredOn) {
+        return Hashing.hash(Hashing.hash(ACQUISITION_SEED, url), acquiredOn.getYear() * 10000L + acquiredOn.getMonthOfYear() * 100L + acquiredOn.getDayOfMonth());
+    }
+
+}
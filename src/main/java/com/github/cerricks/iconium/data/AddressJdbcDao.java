@@ -15,14 +15,20 @@
  */
 package com.github.cerricks.iconium.data;
 
+import com.github.cerricks.iconium.util.SingleFlight;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
 
 /**
  * A data access object JDBC implementation for retrieving address information
@@ -35,6 +41,16 @@ public class AddressJdbcDao implements AddressDao {
 
     private static final Logger logger = LoggerFactory.getLogger(AddressJdbcDao.class);
 
+    /**
+     * Name of the cache of AddressDetailsPID values by address.
+     */
+    public static final String ADDRESS_DETAIL_PID_CACHE = "gnaf_address_pid_cache";
+
+    /**
+     * Name of the cache of StreetLocalityPID values by street address.
+     */
+    public static final String STREET_LOCALITY_PID_CACHE = "gnaf_street_locality_pid_cache";
+
     /**
      * SQL: Select address details PID for given address.
      */
@@ -49,6 +65,20 @@ public class AddressJdbcDao implements AddressDao {
             + "AND (post_code IS NULL OR post_code = ?) "
             + "AND locality = UPPER(?)";
 
+    /**
+     * SQL: Select address details PID for given canonical address.
+     */
+    private static final String SELECT_ADDRESS_DETAIL_PID_EXACT
+            = "SELECT "
+            + "  address_detail_pid "
+            + "FROM "
+            + "  gnaf.addr_txt_to_id_v "
+            + "WHERE "
+            + "  address = UPPER(?) "
+            + "AND state = ? "
+            + "AND (post_code IS NULL OR post_code = ?) "
+            + "AND locality = UPPER(?)";
+
     /**
      * SQL: Select street locality PID for given locality.
      */
@@ -65,6 +95,14 @@ public class AddressJdbcDao implements AddressDao {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private boolean exactMatch = false;
+
+    private PersistentLookupStore persistentLookupStore;
+    private CacheStatistics cacheStatistics;
+
+    private final SingleFlight<List<String>, String> addressDetailPIDLoads = new SingleFlight<>();
+    private final SingleFlight<List<String>, String> streetLocalityPIDLoads = new SingleFlight<>();
+
     /**
      * Creates instance of an {@code GnafAddressJdbcDao}.
      *
@@ -75,6 +113,59 @@ public class AddressJdbcDao implements AddressDao {
         this.jdbcTemplate = (jdbcTemplate);
     }
 
+    /**
+     * Set how addresses are matched to the GNAF database: {@code prefix}
+     * matches addresses starting with the given address using {@code LIKE},
+     * while {@code exact} matches the given address exactly, allowing an index
+     * seek, and requires the address to be in the canonical form of the view
+     * (see {@link com.github.cerricks.iconium.util.AddressNormalizer}).
+     *
+     * @param addressMatch {@code prefix} or {@code exact}
+     */
+    @Value("${gnaf.address.match:prefix}")
+    public void setAddressMatch(final String addressMatch) {
+        Assert.isTrue("prefix".equals(addressMatch) || "exact".equals(addressMatch), "Unsupported gnaf.address.match [" + addressMatch + "]");
+
+        this.exactMatch = "exact".equals(addressMatch);
+    }
+
+    /**
+     * Configure whether concurrent lookups of the same key are coalesced into
+     * a single query (see {@link SingleFlight}).
+     *
+     * @param singleFlight {@code true} to coalesce concurrent lookups of the
+     * same key, {@code false} otherwise.
+     */
+    @Value("${lookup.single.flight.enabled:false}")
+    public void setSingleFlight(final boolean singleFlight) {
+        addressDetailPIDLoads.setEnabled(singleFlight);
+        streetLocalityPIDLoads.setEnabled(singleFlight);
+    }
+
+    /**
+     * Configure the {@link PersistentLookupStore} holding matches made by
+     * previous runs.
+     *
+     * @param persistentLookupStore the {@link PersistentLookupStore} holding
+     * matches made by previous runs.
+     */
+    @Autowired
+    public void setPersistentLookupStore(final PersistentLookupStore persistentLookupStore) {
+        this.persistentLookupStore = persistentLookupStore;
+    }
+
+    /**
+     * Configure the {@link CacheStatistics} in which loads of cached values
+     * are recorded.
+     *
+     * @param cacheStatistics the {@link CacheStatistics} in which loads of
+     * cached values are recorded.
+     */
+    @Autowired
+    public void setCacheStatistics(final CacheStatistics cacheStatistics) {
+        this.cacheStatistics = cacheStatistics;
+    }
+
     /**
      * Retrieve the AddressDetailsPID value for the matching address. This
      * method will return {@code null} if a match is not made.
@@ -90,25 +181,54 @@ public class AddressJdbcDao implements AddressDao {
      * if no match is found.
      * @throws DataAccessException on data access error
      */
-    @Cacheable(value = "gnaf_address_pid_cache")
+    @Cacheable(value = ADDRESS_DETAIL_PID_CACHE)
     @Override
     public String findAddressDetailPID(final String address, final String state, final String postCode, final String locality)
             throws DataAccessException {
-        Object[] parameters = new Object[]{
-            address + '%', // use wildcard to match the first part of the address
-            state,
-            postCode,
-            locality
-        };
+        return addressDetailPIDLoads.load(Arrays.asList(address, state, postCode, locality), new Callable<String>() {
+            @Override
+            public String call() {
+                return loadAddressDetailPID(address, state, postCode, locality);
+            }
+        });
+    }
+
+    /**
+     * Query the AddressDetailsPID value for the matching address.
+     */
+    private String loadAddressDetailPID(final String address, final String state, final String postCode, final String locality)
+            throws DataAccessException {
+        long start = System.nanoTime();
 
         try {
-            return jdbcTemplate.queryForObject(SELECT_ADDRESS_DETAIL_PID, parameters, String.class);
-        } catch (EmptyResultDataAccessException ex) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Unable to match address in GNAF database for: address [" + address + "], state [" + state + "], postCode [" + postCode + "], and locality [" + locality + "]");
+            String addressDetailPID = persistentLookupStore.findAddressDetailPID(address, state, postCode, locality);
+
+            if (addressDetailPID != null) {
+                return addressDetailPID;
             }
 
-            return null;
+            Object[] parameters = new Object[]{
+                exactMatch ? address : address + '%', // use wildcard to match the first part of the address
+                state,
+                postCode,
+                locality
+            };
+
+            try {
+                addressDetailPID = jdbcTemplate.queryForObject(exactMatch ? SELECT_ADDRESS_DETAIL_PID_EXACT : SELECT_ADDRESS_DETAIL_PID, parameters, String.class);
+
+                persistentLookupStore.putAddressDetailPID(address, state, postCode, locality, addressDetailPID);
+
+                return addressDetailPID;
+            } catch (EmptyResultDataAccessException ex) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Unable to match address in GNAF database for: address [" + address + "], state [" + state + "], postCode [" + postCode + "], and locality [" + locality + "]");
+                }
+
+                return null;
+            }
+        } finally {
+            cacheStatistics.recordLoad(ADDRESS_DETAIL_PID_CACHE, System.nanoTime() - start);
         }
     }
 
@@ -127,25 +247,54 @@ public class AddressJdbcDao implements AddressDao {
      * {@code null} if no match is found.
      * @throws DataAccessException on data access error
      */
-    @Cacheable(value = "gnaf_street_locality_pid_cache")
+    @Cacheable(value = STREET_LOCALITY_PID_CACHE)
     @Override
     public String findStreetLocalityPID(final String street, final String state, final String postCode, final String locality)
             throws DataAccessException {
-        Object[] parameters = new Object[]{
-            state,
-            postCode,
-            locality,
-            street
-        };
+        return streetLocalityPIDLoads.load(Arrays.asList(street, state, postCode, locality), new Callable<String>() {
+            @Override
+            public String call() {
+                return loadStreetLocalityPID(street, state, postCode, locality);
+            }
+        });
+    }
+
+    /**
+     * Query the StreetLocalityPID value for the matching street address.
+     */
+    private String loadStreetLocalityPID(final String street, final String state, final String postCode, final String locality)
+            throws DataAccessException {
+        long start = System.nanoTime();
 
         try {
-            return jdbcTemplate.queryForObject(SELECT_STREET_LOCALITY_PID, parameters, String.class);
-        } catch (EmptyResultDataAccessException ex) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Unable to match street locality in GNAF database for: street [" + street + "], state [" + state + "], postCode [" + postCode + "], and locality [" + locality + "]");
+            String streetLocalityPID = persistentLookupStore.findStreetLocalityPID(street, state, postCode, locality);
+
+            if (streetLocalityPID != null) {
+                return streetLocalityPID;
             }
 
-            return null;
+            Object[] parameters = new Object[]{
+                state,
+                postCode,
+                locality,
+                street
+            };
+
+            try {
+                streetLocalityPID = jdbcTemplate.queryForObject(SELECT_STREET_LOCALITY_PID, parameters, String.class);
+
+                persistentLookupStore.putStreetLocalityPID(street, state, postCode, locality, streetLocalityPID);
+
+                return streetLocalityPID;
+            } catch (EmptyResultDataAccessException ex) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Unable to match street locality in GNAF database for: street [" + street + "], state [" + state + "], postCode [" + postCode + "], and locality [" + locality + "]");
+                }
+
+                return null;
+            }
+        } finally {
+            cacheStatistics.recordLoad(STREET_LOCALITY_PID_CACHE, System.nanoTime() - start);
         }
     }
 
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * A set of tab-delimited files, one per table, into which {@link Property} and
+ * {@link School} records are staged before being loaded into the database with
+ * {@code LOAD DATA LOCAL INFILE}.
+ *
+ * <p>
+ * Files are written in the default {@code LOAD DATA} format: tab separated
+ * fields, newline terminated lines, backslash escapes and {@code \N} for
+ * {@code NULL}. Parent tables are loaded before the tables that reference
+ * them. Link tables are loaded with {@code IGNORE} so that duplicate rows are
+ * skipped.
+ *
+ * <p>
+ * With {@code LOCAL}, MySQL reports duplicate-key and data conversion errors
+ * as warnings and skips the offending rows even without {@code IGNORE}. Other
+ * rows reference the IDs allocated to parent rows, so a parent table that
+ * loads fewer rows than were staged fails the load rather than leaving
+ * dangling references.
+ *
+ * <p>
+ * Instances are not thread-safe and must be closed once loaded, which deletes
+ * the staged files.
+ *
+ * @author Clifford Errickson
+ */
+public class BulkLoadBatch implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoadBatch.class);
+
+    public static final String SCHOOLS_TABLE = "schools";
+    public static final String PROPERTY_DETAILS_TABLE = "property_details";
+    public static final String HISTORY_TABLE = "property_sale_rent_hist";
+    public static final String COMPARABLE_PROPERTIES_TABLE = "comparable_properties";
+    public static final String SCHOOL_DISTANCE_TABLE = "schools_near_props";
+    public static final String DATA_ACQUISITION_TABLE = "data_acquisition";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final File directory;
+    private final String prefix;
+
+    /**
+     * Staged tables in load order.
+     */
+    private final Map<String, TableFile> tables = new LinkedHashMap<>();
+
+    /**
+     * Creates instance of a {@code BulkLoadBatch}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} used to load staged files.
+     * @param directory the directory to stage files in.
+     * @param prefix the prefix of staged file names, unique to this batch.
+     */
+    BulkLoadBatch(final JdbcTemplate jdbcTemplate, final File directory, final String prefix) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.directory = directory;
+        this.prefix = prefix;
+
+        addTable(SCHOOLS_TABLE, false, "school_id", "name", "website", "type", "sector", "gnaf_street_locality_pid");
+        addTable(PROPERTY_DETAILS_TABLE, false, "prop_dtls_id", "gnaf_addr_dtl_pid", "as_at", "state", "post_code", "locality", "address", "property_type", "bedrooms", "bathrooms", "car_spots", "land_size_desc", "bldg_size_desc", "council_area", "price_desc", "price_estimate_from", "price_estimate_to", "price_estimate_confidence", "sale_method", "sold_date", "avail_for_lease", "year_built", "block_code");
+        addTable(HISTORY_TABLE, true, "prop_dtls_id", "event_year", "event_month", "event_type", "price_desc");
+        addTable(COMPARABLE_PROPERTIES_TABLE, true, "prop_compared_id", "comparable_prop_id", "comparison_type", "compared_on");
+        addTable(SCHOOL_DISTANCE_TABLE, true, "prop_dtls_id", "school_id", "distance_desc");
+        addTable(DATA_ACQUISITION_TABLE, true, "gnaf_addr_dtl_pid", "url", "acquired_on", "prop_dtls_id");
+    }
+
+    /**
+     * Stage property details.
+     *
+     * @param propertyId the allocated property ID
+     * @param property property details
+     * @param recordDate the date for this record
+     * @throws DataAccessException if the record cannot be staged
+     */
+    public void addProperty(final long propertyId, final Property property, final LocalDate recordDate)
+            throws DataAccessException {
+        Assert.notNull(property);
+        Assert.notNull(recordDate);
+
+        Object[] parameters = PropertyJdbcDao.toInsertParameters(property, recordDate);
+        Object[] row = new Object[parameters.length + 1];
+        row[0] = propertyId;
+        System.arraycopy(parameters, 0, row, 1, parameters.length);
+
+        write(PROPERTY_DETAILS_TABLE, row);
+    }
+
+    /**
+     * Stage comparable property associated with given property.
+     *
+     * @param propertyId The ID of the property for which the comparable
+     * property has been found.
+     * @param comparablePropertyId The ID of a property considered comparable.
+     * @param type The type of comparison e.g. for rent, for sale, sold.
+     * @param date The date the comparison was made.
+     * @throws DataAccessException if the record cannot be staged
+     */
+    public void addComparableProperty(final Long propertyId, final Long comparablePropertyId, final String type, final LocalDate date)
+            throws DataAccessException {
+        Assert.notNull(propertyId);
+        Assert.notNull(comparablePropertyId);
+        Assert.notNull(type);
+        Assert.notNull(date);
+
+        write(COMPARABLE_PROPERTIES_TABLE, propertyId, comparablePropertyId, type, date.toDate());
+    }
+
+    /**
+     * Stage data acquisition details for a given property.
+     *
+     * @param addressPID the AddressPID of the address in the GNAF database
+     * @param url URL of the request for data
+     * @param acquiredOn the date the data was acquired
+     * @param propertyId the ID of the property for which details were extracted
+     * @throws DataAccessException if the record cannot be staged
+     */
+    public void addDataAcquisition(final String addressPID, final String url, final LocalDate acquiredOn, final Long propertyId)
+            throws DataAccessException {
+        Assert.notNull(addressPID);
+        Assert.notNull(url);
+        Assert.notNull(acquiredOn);
+        Assert.notNull(propertyId);
+
+        write(DATA_ACQUISITION_TABLE, addressPID, url, acquiredOn.toDate(), propertyId);
+    }
+
+    /**
+     * Stage property rental/sale history.
+     *
+     * @param propertyId The ID of the property to which the history applies.
+     * @param event event details
+     * @throws DataAccessException if the record cannot be staged
+     */
+    public void addEvent(final Long propertyId, final Event event)
+            throws DataAccessException {
+        Assert.notNull(event);
+        Assert.notNull(event.getYearMonth());
+        Assert.notNull(event.getType());
+
+        write(HISTORY_TABLE, propertyId, event.getYear(), event.getMonth(), PropertyJdbcDao.convertEventTypeText(event.getType()), event.getPriceDesc());
+    }
+
+    /**
+     * Stage school details.
+     *
+     * @param schoolId the allocated school ID
+     * @param school school details
+     * @throws DataAccessException if the record cannot be staged
+     */
+    public void addSchool(final long schoolId, final School school)
+            throws DataAccessException {
+        Assert.notNull(school);
+
+        write(SCHOOLS_TABLE, schoolId, school.getName(), school.getWebsite(), school.getType(), school.getSector(), school.getStreetLocalityPID());
+    }
+
+    /**
+     * Stage school distance relative to given property.
+     *
+     * @param propertyId property internal id number
+     * @param schoolId school internal id number
+     * @param distance relative distance
+     * @throws DataAccessException if the record cannot be staged
+     */
+    public void addSchoolDistance(final Long propertyId, final Long schoolId, final String distance)
+            throws DataAccessException {
+        Assert.notNull(propertyId);
+        Assert.notNull(schoolId);
+
+        write(SCHOOL_DISTANCE_TABLE, propertyId, schoolId, distance);
+    }
+
+    /**
+     * Get the number of rows staged for the given table.
+     *
+     * @param table name of the table, one of the {@code *_TABLE} constants
+     * @return the number of rows staged
+     */
+    public int getRowCount(final String table) {
+        TableFile tableFile = tables.get(table);
+
+        return tableFile != null
+                ? tableFile.rowCount
+                : 0;
+    }
+
+    /**
+     * Load all staged files into the database, in the current transaction.
+     *
+     * @return the number of rows loaded, by table name.
+     * @throws DataAccessException on data access error, or if fewer rows
+     * than were staged are loaded into a parent table
+     */
+    public Map<String, Integer> load()
+            throws DataAccessException {
+        Map<String, Integer> loaded = new LinkedHashMap<>();
+
+        for (Map.Entry<String, TableFile> entry : tables.entrySet()) {
+            TableFile tableFile = entry.getValue();
+
+            if (tableFile.rowCount == 0) {
+                continue;
+            }
+
+            try {
+                tableFile.writer.close();
+            } catch (IOException ex) {
+                throw new DataAccessResourceFailureException("Failed to write staged file [" + tableFile.file + "]", ex);
+            }
+
+            String sql = "LOAD DATA LOCAL INFILE '" + tableFile.file.getAbsolutePath().replace("\\", "\\\\").replace("'", "\\'") + "' "
+                    + (tableFile.ignoreDuplicates ? "IGNORE " : "")
+                    + "INTO TABLE rea." + entry.getKey() + " "
+                    + "CHARACTER SET utf8 "
+                    + "(" + StringUtils.arrayToCommaDelimitedString(tableFile.columns) + ")";
+
+            int rows = jdbcTemplate.update(sql);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Loaded [" + rows + "] of [" + tableFile.rowCount + "] rows into [" + entry.getKey() + "]");
+            }
+
+            if (!tableFile.ignoreDuplicates && rows != tableFile.rowCount) {
+                throw new JdbcUpdateAffectedIncorrectNumberOfRowsException("LOAD DATA INTO rea." + entry.getKey(), tableFile.rowCount, rows);
+            }
+
+            loaded.put(entry.getKey(), rows);
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Close and delete all staged files.
+     */
+    @Override
+    public void close() {
+        for (TableFile tableFile : tables.values()) {
+            if (tableFile.writer != null) {
+                try {
+                    tableFile.writer.close();
+                } catch (IOException ex) {
+                    logger.warn("Failed to close staged file [" + tableFile.file + "]: " + ex.getMessage());
+                }
+            }
+
+            if (tableFile.file.exists() && !tableFile.file.delete()) {
+                logger.warn("Failed to delete staged file [" + tableFile.file + "]");
+            }
+        }
+    }
+
+    private void addTable(final String table, final boolean ignoreDuplicates, final String... columns) {
+        tables.put(table, new TableFile(new File(directory, prefix + "-" + table + ".tsv"), ignoreDuplicates, columns));
+    }
+
+    private void write(final String table, final Object... values) {
+        TableFile tableFile = tables.get(table);
+
+        try {
+            if (tableFile.writer == null) {
+                tableFile.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tableFile.file), StandardCharsets.UTF_8));
+            }
+
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    tableFile.writer.write('\t');
+                }
+
+                writeValue(tableFile.writer, values[i]);
+            }
+
+            tableFile.writer.write('\n');
+            tableFile.rowCount++;
+        } catch (IOException ex) {
+            throw new DataAccessResourceFailureException("Failed to write staged file [" + tableFile.file + "]", ex);
+        }
+    }
+
+    private static void writeValue(final Writer writer, final Object value) throws IOException {
+        if (value == null) {
+            writer.write("\\N");
+        } else if (value instanceof Date) {
+            writer.write(new LocalDate(value).toString());
+        } else if (value instanceof String) {
+            String text = (String) value;
+
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+
+                switch (c) {
+                    case '\\':
+                        writer.write("\\\\");
+                        break;
+                    case '\t':
+                        writer.write("\\t");
+                        break;
+                    case '\n':
+                        writer.write("\\n");
+                        break;
+                    case '\r':
+                        writer.write("\\r");
+                        break;
+                    case '\0':
+                        writer.write("\\0");
+                        break;
+                    default:
+                        writer.write(c);
+                }
+            }
+        } else {
+            writer.write(value.toString());
+        }
+    }
+
+    /**
+     * A staged file for a single table.
+     */
+    private static class TableFile {
+
+        private final File file;
+        private final boolean ignoreDuplicates;
+        private final String[] columns;
+        private Writer writer;
+        private int rowCount;
+
+        TableFile(final File file, final boolean ignoreDuplicates, final String[] columns) {
+            this.file = file;
+            this.ignoreDuplicates = ignoreDuplicates;
+            this.columns = columns;
+        }
+
+    }
+
+}
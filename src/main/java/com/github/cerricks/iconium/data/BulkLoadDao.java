@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * A data access object interface for loading {@link Property} and
+ * {@link School} records in bulk from staged files.
+ *
+ * @author Clifford Errickson
+ */
+public interface BulkLoadDao {
+
+    /**
+     * Create a new {@link BulkLoadBatch} to stage records into.
+     *
+     * @return a new {@link BulkLoadBatch}
+     * @throws DataAccessException if the staging files cannot be created
+     */
+    BulkLoadBatch createBatch()
+            throws DataAccessException;
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import java.io.File;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * A data access object JDBC implementation for loading records in bulk using
+ * MySQL {@code LOAD DATA LOCAL INFILE}.
+ *
+ * @author Clifford Errickson
+ */
+@Repository
+public class BulkLoadJdbcDao implements BulkLoadDao {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private File directory = new File("work/bulk");
+
+    /**
+     * Creates instance of a {@code BulkLoadJdbcDao}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     */
+    @Autowired
+    public BulkLoadJdbcDao(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Set the directory in which files are staged before loading.
+     *
+     * @param directory the directory in which files are staged.
+     */
+    @Value("${bulk.load.dir:work/bulk}")
+    public void setDirectory(final File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public BulkLoadBatch createBatch()
+            throws DataAccessException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new DataAccessResourceFailureException("Unable to create bulk load directory [" + directory + "]");
+        }
+
+        return new BulkLoadBatch(jdbcTemplate, directory, UUID.randomUUID().toString());
+    }
+
+}
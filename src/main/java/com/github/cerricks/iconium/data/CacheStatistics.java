@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.statistics.StatisticsGateway;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects the number of hits, misses, evictions and loads, and the average
+ * load time, of each lookup cache. A load is a call to the underlying DAO
+ * method following a miss.
+ *
+ * <p>
+ * When {@code cache.mode} is {@code annotation}, hits, misses and evictions
+ * (including expiries) are read from the ehcache statistics, relative to the
+ * last {@link #reset()}. When it is {@code hashed}, they are recorded by the
+ * {@code HashedCache*Dao} implementations. Loads are recorded by the JDBC
+ * DAOs in both modes.
+ *
+ * <p>
+ * The statistics are exported over JMX as
+ * {@code com.github.cerricks.iconium:type=CacheStatistics}.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+@ManagedResource(objectName = "com.github.cerricks.iconium:type=CacheStatistics", description = "Lookup cache statistics")
+public class CacheStatistics {
+
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, long[]> baselines = new ConcurrentHashMap<>();
+
+    private CacheManager cacheManager;
+
+    public CacheStatistics() {
+    }
+
+    /**
+     * Configure the {@link CacheManager} whose ehcache statistics are
+     * reported. There is none unless {@code cache.mode} is
+     * {@code annotation}.
+     *
+     * @param cacheManager the {@link CacheManager} whose ehcache statistics
+     * are reported.
+     */
+    @Autowired(required = false)
+    public void setCacheManager(final CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Record a hit on the given cache.
+     *
+     * @param cacheName name of the cache
+     */
+    public void recordHit(final String cacheName) {
+        counters(cacheName).hits.incrementAndGet();
+    }
+
+    /**
+     * Record a miss on the given cache.
+     *
+     * @param cacheName name of the cache
+     */
+    public void recordMiss(final String cacheName) {
+        counters(cacheName).misses.incrementAndGet();
+    }
+
+    /**
+     * Record entries evicted from the given cache.
+     *
+     * @param cacheName name of the cache
+     * @param count number of entries evicted
+     */
+    public void recordEvictions(final String cacheName, final long count) {
+        if (count > 0) {
+            counters(cacheName).evictions.addAndGet(count);
+        }
+    }
+
+    /**
+     * Record a load of a value for the given cache.
+     *
+     * @param cacheName name of the cache
+     * @param nanos time taken to load the value, in nanoseconds
+     */
+    public void recordLoad(final String cacheName, final long nanos) {
+        Counters cacheCounters = counters(cacheName);
+
+        cacheCounters.loads.incrementAndGet();
+        cacheCounters.loadNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Get the statistics of each cache, by {@code <cache>.<statistic>}, where
+     * the statistic is one of {@code hits}, {@code misses},
+     * {@code evictions}, {@code loads} and {@code load.avg.micros}.
+     *
+     * @return the statistics of each cache.
+     */
+    @ManagedAttribute(description = "Hits, misses, evictions, loads and average load time (us) by cache")
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new TreeMap<>();
+
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            Counters cacheCounters = entry.getValue();
+            long loads = cacheCounters.loads.get();
+
+            statistics.put(entry.getKey() + ".hits", cacheCounters.hits.get());
+            statistics.put(entry.getKey() + ".misses", cacheCounters.misses.get());
+            statistics.put(entry.getKey() + ".evictions", cacheCounters.evictions.get());
+            statistics.put(entry.getKey() + ".loads", loads);
+            statistics.put(entry.getKey() + ".load.avg.micros", loads > 0 ? TimeUnit.NANOSECONDS.toMicros(cacheCounters.loadNanos.get() / loads) : 0);
+        }
+
+        if (cacheManager != null) {
+            for (String cacheName : cacheManager.getCacheNames()) {
+                long[] current = ehcacheCounts(cacheName);
+
+                if (current != null) {
+                    long[] baseline = baselines.get(cacheName);
+
+                    statistics.put(cacheName + ".hits", current[0] - (baseline != null ? baseline[0] : 0));
+                    statistics.put(cacheName + ".misses", current[1] - (baseline != null ? baseline[1] : 0));
+                    statistics.put(cacheName + ".evictions", current[2] - (baseline != null ? baseline[2] : 0));
+
+                    if (!statistics.containsKey(cacheName + ".loads")) {
+                        statistics.put(cacheName + ".loads", 0L);
+                        statistics.put(cacheName + ".load.avg.micros", 0L);
+                    }
+                }
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Reset all statistics to zero.
+     */
+    @ManagedOperation(description = "Reset all statistics to zero")
+    public void reset() {
+        counters.clear();
+        baselines.clear();
+
+        if (cacheManager != null) {
+            for (String cacheName : cacheManager.getCacheNames()) {
+                long[] current = ehcacheCounts(cacheName);
+
+                if (current != null) {
+                    baselines.put(cacheName, current);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the hit, miss and eviction counts of the given ehcache cache.
+     *
+     * @param cacheName name of the cache
+     * @return the hit, miss and eviction (including expiry) counts, or
+     * {@code null} if the cache is not an ehcache cache.
+     */
+    private long[] ehcacheCounts(final String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+
+        if (cache == null || !(cache.getNativeCache() instanceof Ehcache)) {
+            return null;
+        }
+
+        StatisticsGateway statistics = ((Ehcache) cache.getNativeCache()).getStatistics();
+
+        return new long[]{
+            statistics.cacheHitCount(),
+            statistics.cacheMissCount(),
+            statistics.cacheEvictedCount() + statistics.cacheExpiredCount()
+        };
+    }
+
+    private Counters counters(final String cacheName) {
+        Counters cacheCounters = counters.get(cacheName);
+
+        if (cacheCounters == null) {
+            Counters newCounters = new Counters();
+
+            cacheCounters = counters.putIfAbsent(cacheName, newCounters);
+
+            if (cacheCounters == null) {
+                cacheCounters = newCounters;
+            }
+        }
+
+        return cacheCounters;
+    }
+
+    /**
+     * Counters of a single cache.
+     */
+    private static class Counters {
+
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong loads = new AtomicLong();
+        private final AtomicLong loadNanos = new AtomicLong();
+
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+/**
+ * Contains details on the leading range of an input file that has been fully
+ * committed, as recorded in {@code rea.input_file_ledger}.
+ *
+ * @author Clifford Errickson
+ */
+public class CommittedRange {
+
+    private long offset;
+    private long itemCount;
+    private String fingerprint;
+
+    public CommittedRange() {
+    }
+
+    public CommittedRange(final long offset, final long itemCount, final String fingerprint) {
+        this.offset = offset;
+        this.itemCount = itemCount;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Get the number of bytes from the start of the file committed.
+     *
+     * @return the number of bytes from the start of the file committed.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Get the number of items read from the committed bytes.
+     *
+     * @return the number of items read from the committed bytes.
+     */
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(long itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * Get the fingerprint of the committed bytes (see
+     * {@link com.github.cerricks.iconium.util.FileFingerprint#range(java.io.File, long)}).
+     *
+     * @return the fingerprint of the committed bytes.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+}
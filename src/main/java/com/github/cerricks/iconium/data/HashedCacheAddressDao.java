@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.github.cerricks.iconium.util.Hashing;
+import com.github.cerricks.iconium.util.LookupCache;
+import com.github.cerricks.iconium.util.ResizableCaches;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of {@link AddressDao} that caches the results of
+ * {@link AddressJdbcDao} in {@link LookupCache} instances keyed by the hash of
+ * the lookup arguments, in place of the {@code @Cacheable} proxy.
+ *
+ * <p>
+ * Replaces {@link AddressJdbcDao} when {@code cache.mode} is {@code hashed}.
+ * As with the {@code @Cacheable} caches, addresses without a match are also
+ * cached.
+ *
+ * @author Clifford Errickson
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "cache.mode", havingValue = "hashed")
+public class HashedCacheAddressDao implements AddressDao, ResizableCaches {
+
+    private static final long ADDRESS_DETAIL_PID_SEED = Hashing.hash(Hashing.SEED, AddressJdbcDao.ADDRESS_DETAIL_PID_CACHE);
+    private static final long STREET_LOCALITY_PID_SEED = Hashing.hash(Hashing.SEED, AddressJdbcDao.STREET_LOCALITY_PID_CACHE);
+
+    private static final String NO_MATCH = "";
+
+    private final AddressJdbcDao addressDao;
+    private final CacheStatistics cacheStatistics;
+
+    private final LookupCache<String> addressDetailPIDs;
+    private final LookupCache<String> streetLocalityPIDs;
+
+    /**
+     * Creates instance of a {@code HashedCacheAddressDao}.
+     *
+     * @param addressDao the {@link AddressJdbcDao} to cache the results of.
+     * @param cacheStatistics the {@link CacheStatistics} to record hits,
+     * misses and evictions in.
+     * @param maxEntries the maximum number of entries held per cache.
+     */
+    @Autowired
+    public HashedCacheAddressDao(final AddressJdbcDao addressDao, final CacheStatistics cacheStatistics, @Value("${cache.hashed.max.entries:100000}") final int maxEntries) {
+        this.addressDao = addressDao;
+        this.cacheStatistics = cacheStatistics;
+        this.addressDetailPIDs = new LookupCache<>(maxEntries);
+        this.streetLocalityPIDs = new LookupCache<>(maxEntries);
+    }
+
+    @Override
+    public String findAddressDetailPID(final String address, final String state, final String postCode, final String locality)
+            throws DataAccessException {
+        long key = key(ADDRESS_DETAIL_PID_SEED, address, state, postCode, locality);
+        String addressDetailPID = addressDetailPIDs.get(key);
+
+        if (addressDetailPID == null) {
+            cacheStatistics.recordMiss(AddressJdbcDao.ADDRESS_DETAIL_PID_CACHE);
+
+            addressDetailPID = addressDao.findAddressDetailPID(address, state, postCode, locality);
+
+            cacheStatistics.recordEvictions(AddressJdbcDao.ADDRESS_DETAIL_PID_CACHE, addressDetailPIDs.put(key, addressDetailPID != null ? addressDetailPID : NO_MATCH));
+        } else {
+            cacheStatistics.recordHit(AddressJdbcDao.ADDRESS_DETAIL_PID_CACHE);
+        }
+
+        return addressDetailPID != NO_MATCH ? addressDetailPID : null;
+    }
+
+    @Override
+    public String findStreetLocalityPID(final String street, final String state, final String postCode, final String locality)
+            throws DataAccessException {
+        long key = key(STREET_LOCALITY_PID_SEED, street, state, postCode, locality);
+        String streetLocalityPID = streetLocalityPIDs.get(key);
+
+        if (streetLocalityPID == null) {
+            cacheStatistics.recordMiss(AddressJdbcDao.STREET_LOCALITY_PID_CACHE);
+
+            streetLocalityPID = addressDao.findStreetLocalityPID(street, state, postCode, locality);
+
+            cacheStatistics.recordEvictions(AddressJdbcDao.STREET_LOCALITY_PID_CACHE, streetLocalityPIDs.put(key, streetLocalityPID != null ? streetLocalityPID : NO_MATCH));
+        } else {
+            cacheStatistics.recordHit(AddressJdbcDao.STREET_LOCALITY_PID_CACHE);
+        }
+
+        return streetLocalityPID != NO_MATCH ? streetLocalityPID : null;
+    }
+
+    @Override
+    public boolean resize(final String cacheName, final int maxEntries) {
+        if (AddressJdbcDao.ADDRESS_DETAIL_PID_CACHE.equals(cacheName)) {
+            addressDetailPIDs.resize(maxEntries);
+
+            return true;
+        } else if (AddressJdbcDao.STREET_LOCALITY_PID_CACHE.equals(cacheName)) {
+            streetLocalityPIDs.resize(maxEntries);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private static long key(final long seed, final String address, final String state, final String postCode, final String locality) {
+        return Hashing.hash(Hashing.hash(Hashing.hash(Hashing.hash(seed, address), state), postCode), locality);
+    }
+
+}
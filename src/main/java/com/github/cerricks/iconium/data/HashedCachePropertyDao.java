@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.github.cerricks.iconium.util.Clearable;
+import com.github.cerricks.iconium.util.Hashing;
+import com.github.cerricks.iconium.util.LookupCache;
+import com.github.cerricks.iconium.util.ResizableCaches;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of {@link PropertyDao} that caches the property IDs found by
+ * {@link PropertyJdbcDao} in {@link LookupCache} instances keyed by the hash
+ * of the lookup arguments, in place of the {@code @Cacheable} proxy.
+ *
+ * <p>
+ * Replaces {@link PropertyJdbcDao} when {@code cache.mode} is {@code hashed}.
+ * As with the {@code @Cacheable} caches, lookups without a match are not
+ * cached, and the caches are cleared following a failed write.
+ *
+ * @author Clifford Errickson
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "cache.mode", havingValue = "hashed")
+public class HashedCachePropertyDao implements PropertyDao, Clearable, ResizableCaches {
+
+    private static final long ADDRESS_SEED = Hashing.hash(Hashing.SEED, PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_CACHE);
+    private static final long ADDRESS_PID_SEED = Hashing.hash(Hashing.SEED, PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_PID_CACHE);
+
+    private final PropertyJdbcDao propertyDao;
+    private final CacheStatistics cacheStatistics;
+
+    private final LookupCache<Long> propertyIdsByAddress;
+    private final LookupCache<Long> propertyIdsByAddressPID;
+
+    /**
+     * Creates instance of a {@code HashedCachePropertyDao}.
+     *
+     * @param propertyDao the {@link PropertyJdbcDao} to cache the results of.
+     * @param cacheStatistics the {@link CacheStatistics} to record hits,
+     * misses and evictions in.
+     * @param maxEntries the maximum number of entries held per cache.
+     */
+    @Autowired
+    public HashedCachePropertyDao(final PropertyJdbcDao propertyDao, final CacheStatistics cacheStatistics, @Value("${cache.hashed.max.entries:100000}") final int maxEntries) {
+        this.propertyDao = propertyDao;
+        this.cacheStatistics = cacheStatistics;
+        this.propertyIdsByAddress = new LookupCache<>(maxEntries);
+        this.propertyIdsByAddressPID = new LookupCache<>(maxEntries);
+    }
+
+    @Override
+    public int addComparableProperty(final Long propertyId, final Long comparablePropertyId, final String type, final LocalDate date)
+            throws DataAccessException {
+        return propertyDao.addComparableProperty(propertyId, comparablePropertyId, type, date);
+    }
+
+    @Override
+    public int addDataAcquisition(final String addressPID, final String url, final LocalDate acquiredOn, final Long propertyId)
+            throws DataAccessException {
+        return propertyDao.addDataAcquisition(addressPID, url, acquiredOn, propertyId);
+    }
+
+    @Override
+    public int addEvent(final Long propertyId, final Event event)
+            throws DataAccessException {
+        return propertyDao.addEvent(propertyId, event);
+    }
+
+    @Override
+    public Long addProperty(final Property property, final LocalDate recordDate)
+            throws DataAccessException {
+        return propertyDao.addProperty(property, recordDate);
+    }
+
+    @Override
+    public Long findPropertyIdByAddress(final String address, final String state, final String postCode, final String locality, final LocalDate recordDate)
+            throws DataAccessException {
+        if (recordDate == null) {
+            return propertyDao.findPropertyIdByAddress(address, state, postCode, locality, recordDate);
+        }
+
+        long key = Hashing.hash(Hashing.hash(Hashing.hash(Hashing.hash(Hashing.hash(ADDRESS_SEED, address), state), postCode), locality), toLong(recordDate));
+        Long propertyId = propertyIdsByAddress.get(key);
+
+        if (propertyId == null) {
+            cacheStatistics.recordMiss(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_CACHE);
+
+            propertyId = propertyDao.findPropertyIdByAddress(address, state, postCode, locality, recordDate);
+
+            if (propertyId != null) {
+                cacheStatistics.recordEvictions(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_CACHE, propertyIdsByAddress.put(key, propertyId));
+            }
+        } else {
+            cacheStatistics.recordHit(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_CACHE);
+        }
+
+        return propertyId;
+    }
+
+    @Override
+    public Long findPropertyIdByAddressPID(final String addressPID, final LocalDate recordDate)
+            throws DataAccessException {
+        if (addressPID == null || recordDate == null) {
+            return propertyDao.findPropertyIdByAddressPID(addressPID, recordDate);
+        }
+
+        long key = Hashing.hash(Hashing.hash(ADDRESS_PID_SEED, addressPID), toLong(recordDate));
+        Long propertyId = propertyIdsByAddressPID.get(key);
+
+        if (propertyId == null) {
+            cacheStatistics.recordMiss(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_PID_CACHE);
+
+            propertyId = propertyDao.findPropertyIdByAddressPID(addressPID, recordDate);
+
+            if (propertyId != null) {
+                cacheStatistics.recordEvictions(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_PID_CACHE, propertyIdsByAddressPID.put(key, propertyId));
+            }
+        } else {
+            cacheStatistics.recordHit(PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_PID_CACHE);
+        }
+
+        return propertyId;
+    }
+
+    @Override
+    public int updateProperty(final Property property)
+            throws DataAccessException {
+        return propertyDao.updateProperty(property);
+    }
+
+    @Override
+    public void clear() {
+        propertyIdsByAddress.clear();
+        propertyIdsByAddressPID.clear();
+    }
+
+    @Override
+    public boolean resize(final String cacheName, final int maxEntries) {
+        if (PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_CACHE.equals(cacheName)) {
+            propertyIdsByAddress.resize(maxEntries);
+
+            return true;
+        } else if (PropertyJdbcDao.PROPERTY_ID_BY_ADDRESS_PID_CACHE.equals(cacheName)) {
+            propertyIdsByAddressPID.resize(maxEntries);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private static long toLong(final LocalDate date) {
+        return date.getYear() * 10000L + date.getMonthOfYear() * 100L + date.getDayOfMonth();
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.github.cerricks.iconium.util.Clearable;
+import com.github.cerricks.iconium.util.Hashing;
+import com.github.cerricks.iconium.util.LookupCache;
+import com.github.cerricks.iconium.util.ResizableCaches;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of {@link SchoolDao} that caches the school IDs found or
+ * added by {@link SchoolJdbcDao} in a {@link LookupCache} keyed by the hash of
+ * the school name, type and sector, in place of the {@code @Cacheable} proxy.
+ *
+ * <p>
+ * Replaces {@link SchoolJdbcDao} when {@code cache.mode} is {@code hashed}.
+ * As with the {@code @Cacheable} cache, lookups without a match are not
+ * cached, and the cache is cleared following a failed write.
+ *
+ * @author Clifford Errickson
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "cache.mode", havingValue = "hashed")
+public class HashedCacheSchoolDao implements SchoolDao, Clearable, ResizableCaches {
+
+    private static final long SCHOOL_ID_SEED = Hashing.hash(Hashing.SEED, SchoolJdbcDao.SCHOOL_ID_CACHE);
+
+    private final SchoolJdbcDao schoolDao;
+    private final CacheStatistics cacheStatistics;
+
+    private final LookupCache<Long> schoolIds;
+
+    /**
+     * Creates instance of a {@code HashedCacheSchoolDao}.
+     *
+     * @param schoolDao the {@link SchoolJdbcDao} to cache the results of.
+     * @param cacheStatistics the {@link CacheStatistics} to record hits,
+     * misses and evictions in.
+     * @param maxEntries the maximum number of entries held.
+     */
+    @Autowired
+    public HashedCacheSchoolDao(final SchoolJdbcDao schoolDao, final CacheStatistics cacheStatistics, @Value("${cache.hashed.max.entries:100000}") final int maxEntries) {
+        this.schoolDao = schoolDao;
+        this.cacheStatistics = cacheStatistics;
+        this.schoolIds = new LookupCache<>(maxEntries);
+    }
+
+    @Override
+    public Long addSchool(final School school)
+            throws DataAccessException {
+        Long schoolId = schoolDao.addSchool(school);
+
+        if (schoolId != null) {
+            cacheStatistics.recordEvictions(SchoolJdbcDao.SCHOOL_ID_CACHE, schoolIds.put(key(school.getName(), school.getType(), school.getSector()), schoolId));
+        }
+
+        return schoolId;
+    }
+
+    @Override
+    public int addSchoolDistance(final Long propertyId, final Long schoolId, final String distance)
+            throws DataAccessException {
+        return schoolDao.addSchoolDistance(propertyId, schoolId, distance);
+    }
+
+    @Override
+    public Long findSchoolId(final String name, final String type, final String sector)
+            throws DataAccessException {
+        long key = key(name, type, sector);
+        Long schoolId = schoolIds.get(key);
+
+        if (schoolId == null) {
+            cacheStatistics.recordMiss(SchoolJdbcDao.SCHOOL_ID_CACHE);
+
+            schoolId = schoolDao.findSchoolId(name, type, sector);
+
+            if (schoolId != null) {
+                cacheStatistics.recordEvictions(SchoolJdbcDao.SCHOOL_ID_CACHE, schoolIds.put(key, schoolId));
+            }
+        } else {
+            cacheStatistics.recordHit(SchoolJdbcDao.SCHOOL_ID_CACHE);
+        }
+
+        return schoolId;
+    }
+
+    @Override
+    public void clear() {
+        schoolIds.clear();
+    }
+
+    @Override
+    public boolean resize(final String cacheName, final int maxEntries) {
+        if (SchoolJdbcDao.SCHOOL_ID_CACHE.equals(cacheName)) {
+            schoolIds.resize(maxEntries);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private static long key(final String name, final String type, final String sector) {
+        return Hashing.hash(Hashing.hash(Hashing.hash(SCHOOL_ID_SEED, name), type), sector);
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * An {@link IdAllocator} that reserves blocks of IDs from the
+ * {@code rea.id_sequences} table and hands them out from memory (the hi/lo
+ * algorithm).
+ *
+ * <p>
+ * Each block is reserved in its own transaction, so that the sequence row is
+ * not locked for the duration of a chunk. IDs from a block reserved by a chunk
+ * that is later rolled back are not reused, leaving gaps in the sequence.
+ *
+ * <p>
+ * When enabled, every process inserting into the tables concerned must
+ * allocate IDs through the sequence table, otherwise IDs generated by
+ * {@code AUTO_INCREMENT} may collide with allocated IDs.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class HiLoIdAllocator implements IdAllocator {
+
+    private static final Logger logger = LoggerFactory.getLogger(HiLoIdAllocator.class);
+
+    /**
+     * SQL: Reserve a block of IDs, recording the new value of the sequence as
+     * the connection's last insert ID.
+     */
+    private static final String UPDATE_SEQUENCE
+            = "UPDATE "
+            + "  rea.id_sequences "
+            + "SET "
+            + "  next_id = LAST_INSERT_ID(next_id + ?) "
+            + "WHERE "
+            + "  sequence_name = ?";
+
+    /**
+     * SQL: Select the value of the sequence following the reserved block.
+     */
+    private static final String SELECT_LAST_INSERT_ID
+            = "SELECT LAST_INSERT_ID()";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Block> blocks = new HashMap<>();
+
+    private boolean enabled = false;
+    private int blockSize = 1000;
+
+    /**
+     * Creates instance of a {@code HiLoIdAllocator}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     * @param transactionManager the {@link PlatformTransactionManager} used to
+     * reserve blocks in a new transaction.
+     */
+    @Autowired
+    public HiLoIdAllocator(final JdbcTemplate jdbcTemplate, final PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Configure whether IDs are allocated by this allocator.
+     *
+     * @param enabled {@code true} to allocate IDs on the client,
+     * {@code false} to have the database generate IDs.
+     */
+    @Value("${id.allocator.enabled:false}")
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Set the number of IDs reserved from the sequence table at a time.
+     *
+     * @param blockSize the number of IDs reserved at a time.
+     */
+    @Value("${id.allocator.block.size:1000}")
+    public void setBlockSize(final int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public synchronized long nextId(final String sequenceName)
+            throws DataAccessException {
+        Block block = blocks.get(sequenceName);
+
+        if (block == null || block.next >= block.end) {
+            block = reserveBlock(sequenceName);
+
+            blocks.put(sequenceName, block);
+        }
+
+        return block.next++;
+    }
+
+    /**
+     * Reserve the next block of IDs from the given sequence.
+     *
+     * @param sequenceName name of the sequence
+     * @return the reserved block
+     */
+    private Block reserveBlock(final String sequenceName) {
+        final int size = blockSize;
+
+        Long end = transactionTemplate.execute(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(final TransactionStatus status) {
+                if (jdbcTemplate.update(UPDATE_SEQUENCE, size, sequenceName) == 0) {
+                    throw new EmptyResultDataAccessException("Sequence [" + sequenceName + "] not found in rea.id_sequences", 1);
+                }
+
+                return jdbcTemplate.queryForObject(SELECT_LAST_INSERT_ID, Long.class);
+            }
+        });
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Reserved IDs [" + (end - size) + "] to [" + (end - 1) + "] from sequence [" + sequenceName + "]");
+        }
+
+        return new Block(end - size, end);
+    }
+
+    /**
+     * A block of reserved IDs.
+     */
+    private static class Block {
+
+        private long next;
+        private final long end;
+
+        Block(final long next, final long end) {
+            this.next = next;
+            this.end = end;
+        }
+
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * An interface for allocating record IDs on the client, removing the need to
+ * retrieve a generated key after each insert.
+ *
+ * @author Clifford Errickson
+ */
+public interface IdAllocator {
+
+    /**
+     * Sequence used to allocate {@code rea.property_details} IDs.
+     */
+    String PROPERTY_DETAILS = "property_details";
+
+    /**
+     * Sequence used to allocate {@code rea.schools} IDs.
+     */
+    String SCHOOLS = "schools";
+
+    /**
+     * Determine if IDs are to be allocated by this allocator. When disabled,
+     * IDs are generated by the database on insert.
+     *
+     * @return {@code true} if enabled, {@code false} otherwise.
+     */
+    boolean isEnabled();
+
+    /**
+     * Allocate the next ID from the given sequence.
+     *
+     * @param sequenceName name of the sequence
+     * @return the allocated ID
+     * @throws DataAccessException on data access error
+     */
+    long nextId(String sequenceName)
+            throws DataAccessException;
+
+}
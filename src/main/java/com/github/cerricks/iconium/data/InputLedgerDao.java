@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import java.util.List;
+import org.springframework.dao.DataAccessException;
+
+/**
+ * A data access object interface for the ledger of input file ranges that
+ * have been fully committed.
+ *
+ * @author Clifford Errickson
+ */
+public interface InputLedgerDao {
+
+    /**
+     * Find the committed ranges of files with the given head fingerprint that
+     * fit within the given file size, longest first.
+     *
+     * @param headFingerprint fingerprint of the first block of the file (see
+     * {@link com.github.cerricks.iconium.util.FileFingerprint#head(java.io.File)})
+     * @param fileSize the size of the file
+     * @return the committed ranges, longest first.
+     * @throws DataAccessException on data access error
+     */
+    List<CommittedRange> findCommittedRanges(String headFingerprint, long fileSize)
+            throws DataAccessException;
+
+    /**
+     * Record the range of the given file committed by the given job.
+     *
+     * @param jobId the ID of the job instance reading the file
+     * @param fileName the name of the file
+     * @param fileSize the size of the file
+     * @param headFingerprint fingerprint of the first block of the file
+     * @param range the committed range
+     * @throws DataAccessException on data access error
+     */
+    void saveCommittedRange(long jobId, String fileName, long fileSize, String headFingerprint, CommittedRange range)
+            throws DataAccessException;
+
+}
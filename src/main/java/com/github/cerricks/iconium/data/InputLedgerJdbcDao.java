@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+/**
+ * A data access object JDBC implementation for the ledger of input file
+ * ranges that have been fully committed.
+ *
+ * @author Clifford Errickson
+ */
+@Repository
+public class InputLedgerJdbcDao implements InputLedgerDao {
+
+    /**
+     * SQL: Select committed ranges by head fingerprint.
+     */
+    private static final String SELECT_COMMITTED_RANGES
+            = "SELECT "
+            + "  committed_offset, "
+            + "  committed_items, "
+            + "  committed_fingerprint "
+            + "FROM "
+            + "  rea.input_file_ledger "
+            + "WHERE "
+            + "  head_fingerprint = ? "
+            + "  AND committed_offset <= ? "
+            + "  AND committed_offset > 0 "
+            + "ORDER BY "
+            + "  committed_offset DESC "
+            + "LIMIT 10";
+
+    /**
+     * SQL: Insert or update the committed range of a file read by a job.
+     */
+    private static final String UPSERT_COMMITTED_RANGE
+            = "INSERT INTO "
+            + "  rea.input_file_ledger "
+            + "  ( "
+            + "    job_instance_id, "
+            + "    file_name, "
+            + "    file_size, "
+            + "    head_fingerprint, "
+            + "    committed_offset, "
+            + "    committed_items, "
+            + "    committed_fingerprint "
+            + "  ) "
+            + "  VALUES "
+            + "  (?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE "
+            + "  committed_offset      = VALUES(committed_offset), "
+            + "  committed_items       = VALUES(committed_items), "
+            + "  committed_fingerprint = VALUES(committed_fingerprint)";
+
+    private static final RowMapper<CommittedRange> COMMITTED_RANGE_MAPPER = new RowMapper<CommittedRange>() {
+        @Override
+        public CommittedRange mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+            return new CommittedRange(rs.getLong(1), rs.getLong(2), rs.getString(3));
+        }
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates instance of an {@code InputLedgerJdbcDao}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     */
+    @Autowired
+    public InputLedgerJdbcDao(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<CommittedRange> findCommittedRanges(final String headFingerprint, final long fileSize)
+            throws DataAccessException {
+        Assert.notNull(headFingerprint);
+
+        return jdbcTemplate.query(SELECT_COMMITTED_RANGES, new Object[]{headFingerprint, fileSize}, COMMITTED_RANGE_MAPPER);
+    }
+
+    @Override
+    public void saveCommittedRange(final long jobId, final String fileName, final long fileSize, final String headFingerprint, final CommittedRange range)
+            throws DataAccessException {
+        Assert.notNull(fileName);
+        Assert.notNull(headFingerprint);
+        Assert.notNull(range);
+
+        jdbcTemplate.update(UPSERT_COMMITTED_RANGE, new Object[]{
+            jobId,
+            fileName,
+            fileSize,
+            headFingerprint,
+            range.getOffset(),
+            range.getItemCount(),
+            range.getFingerprint()
+        });
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * A data access object interface for the work queue of partitions run by
+ * remote workers.
+ *
+ * @author Clifford Errickson
+ */
+public interface PartitionQueueDao {
+
+    /**
+     * Status of a partition waiting to be claimed.
+     */
+    String QUEUED = "QUEUED";
+
+    /**
+     * Status of a partition claimed by a worker.
+     */
+    String CLAIMED = "CLAIMED";
+
+    /**
+     * Status of a partition that completed.
+     */
+    String COMPLETED = "COMPLETED";
+
+    /**
+     * Status of a partition that did not complete.
+     */
+    String FAILED = "FAILED";
+
+    /**
+     * Status of a partition given up on by the coordinator before it finished.
+     */
+    String ABANDONED = "ABANDONED";
+
+    /**
+     * Queue a partition to be claimed by a worker.
+     *
+     * @param jobExecutionId the ID of the job execution
+     * @param stepExecutionId the ID of the step execution of the partition
+     * @param stepName the name of the step execution of the partition
+     * @throws DataAccessException on data access error
+     */
+    void addPartition(long jobExecutionId, long stepExecutionId, String stepName)
+            throws DataAccessException;
+
+    /**
+     * Claim the partition queued first for the given worker, skipping
+     * partitions of job executions that are no longer running.
+     *
+     * @param worker name of the worker
+     * @return the claimed partition, or {@code null} if none is queued.
+     * @throws DataAccessException on data access error
+     */
+    QueuedPartition claimPartition(String worker)
+            throws DataAccessException;
+
+    /**
+     * Renew the lease of a claimed partition.
+     *
+     * @param claimToken the claim token of the partition
+     * @return {@code true} if the partition is still claimed with the given
+     * token, {@code false} if it was re-queued or abandoned.
+     * @throws DataAccessException on data access error
+     */
+    boolean renewClaim(String claimToken)
+            throws DataAccessException;
+
+    /**
+     * Record that a claimed partition has finished.
+     *
+     * @param claimToken the claim token of the partition
+     * @param status {@link #COMPLETED} or {@link #FAILED}
+     * @throws DataAccessException on data access error
+     */
+    void finishPartition(String claimToken, String status)
+            throws DataAccessException;
+
+    /**
+     * Queue again the claimed partitions of the given job execution whose
+     * lease has not been renewed within the given time, e.g. as their worker
+     * was killed.
+     *
+     * @param jobExecutionId the ID of the job execution
+     * @param lease the time, in seconds, within which a lease must be renewed
+     * @return the number of partitions queued again.
+     * @throws DataAccessException on data access error
+     */
+    int requeueExpiredPartitions(long jobExecutionId, long lease)
+            throws DataAccessException;
+
+    /**
+     * Mark the queued and claimed partitions of the given job execution as
+     * {@link #ABANDONED}, so that they are no longer claimed or finished.
+     *
+     * @param jobExecutionId the ID of the job execution
+     * @return the number of partitions abandoned.
+     * @throws DataAccessException on data access error
+     */
+    int abandonPartitions(long jobExecutionId)
+            throws DataAccessException;
+
+    /**
+     * Count the partitions of the given job execution that are queued or
+     * claimed.
+     *
+     * @param jobExecutionId the ID of the job execution
+     * @return the number of partitions that have not finished.
+     * @throws DataAccessException on data access error
+     */
+    int countUnfinishedPartitions(long jobExecutionId)
+            throws DataAccessException;
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+/**
+ * A data access object JDBC implementation for the work queue of partitions
+ * run by remote workers.
+ *
+ * <p>
+ * A partition is claimed with a single {@code UPDATE} of the first queued
+ * row, tagging it with a random claim token. The update locks the row, so
+ * concurrent workers each claim a different partition, and the claimed row is
+ * then found by its token. Only partitions of job executions still
+ * {@code STARTED} in {@code BATCH_JOB_EXECUTION} are claimed.
+ *
+ * <p>
+ * The worker renews the lease of its claim by updating {@code heartbeat_at}
+ * with the claim token, and the claim token is cleared when an expired claim
+ * is queued again, so a worker whose claim was taken over can no longer renew
+ * or finish it.
+ *
+ * @author Clifford Errickson
+ */
+@Repository
+public class PartitionQueueJdbcDao implements PartitionQueueDao {
+
+    /**
+     * SQL: Insert a queued partition.
+     */
+    private static final String INSERT_PARTITION
+            = "INSERT INTO "
+            + "  rea.batch_partition_queue "
+            + "  ( "
+            + "    job_execution_id, "
+            + "    step_execution_id, "
+            + "    step_name, "
+            + "    status "
+            + "  ) "
+            + "  VALUES "
+            + "  (?, ?, ?, '" + QUEUED + "')";
+
+    /**
+     * SQL: Claim the first queued partition of a running job execution.
+     */
+    private static final String CLAIM_PARTITION
+            = "UPDATE "
+            + "  rea.batch_partition_queue "
+            + "SET "
+            + "  status       = '" + CLAIMED + "', "
+            + "  worker       = ?, "
+            + "  claim_token  = ?, "
+            + "  claimed_at   = CURRENT_TIMESTAMP, "
+            + "  heartbeat_at = CURRENT_TIMESTAMP "
+            + "WHERE "
+            + "  status = '" + QUEUED + "' "
+            + "  AND EXISTS ( "
+            + "    SELECT "
+            + "      1 "
+            + "    FROM "
+            + "      BATCH_JOB_EXECUTION e "
+            + "    WHERE "
+            + "      e.JOB_EXECUTION_ID = rea.batch_partition_queue.job_execution_id "
+            + "      AND e.STATUS = 'STARTED' "
+            + "  ) "
+            + "ORDER BY "
+            + "  queue_id "
+            + "LIMIT 1";
+
+    /**
+     * SQL: Select a claimed partition by claim token.
+     */
+    private static final String SELECT_CLAIMED_PARTITION
+            = "SELECT "
+            + "  job_execution_id, "
+            + "  step_execution_id, "
+            + "  step_name, "
+            + "  claim_token "
+            + "FROM "
+            + "  rea.batch_partition_queue "
+            + "WHERE "
+            + "  claim_token = ?";
+
+    /**
+     * SQL: Renew the lease of a claimed partition.
+     */
+    private static final String UPDATE_HEARTBEAT
+            = "UPDATE "
+            + "  rea.batch_partition_queue "
+            + "SET "
+            + "  heartbeat_at = CURRENT_TIMESTAMP "
+            + "WHERE "
+            + "  claim_token = ? "
+            + "  AND status = '" + CLAIMED + "'";
+
+    /**
+     * SQL: Update the status of a claimed partition when it finishes.
+     */
+    private static final String UPDATE_FINISHED_PARTITION
+            = "UPDATE "
+            + "  rea.batch_partition_queue "
+            + "SET "
+            + "  status      = ?, "
+            + "  finished_at = CURRENT_TIMESTAMP "
+            + "WHERE "
+            + "  claim_token = ? "
+            + "  AND status = '" + CLAIMED + "'";
+
+    /**
+     * SQL: Queue again the claimed partitions of a job execution whose lease
+     * has expired.
+     */
+    private static final String REQUEUE_EXPIRED_PARTITIONS
+            = "UPDATE "
+            + "  rea.batch_partition_queue "
+            + "SET "
+            + "  status       = '" + QUEUED + "', "
+            + "  worker       = NULL, "
+            + "  claim_token  = NULL, "
+            + "  claimed_at   = NULL, "
+            + "  heartbeat_at = NULL "
+            + "WHERE "
+            + "  job_execution_id = ? "
+            + "  AND status = '" + CLAIMED + "' "
+            + "  AND heartbeat_at < CURRENT_TIMESTAMP - INTERVAL ? SECOND";
+
+    /**
+     * SQL: Abandon the queued and claimed partitions of a job execution.
+     */
+    private static final String ABANDON_PARTITIONS
+            = "UPDATE "
+            + "  rea.batch_partition_queue "
+            + "SET "
+            + "  status      = '" + ABANDONED + "', "
+            + "  finished_at = CURRENT_TIMESTAMP "
+            + "WHERE "
+            + "  job_execution_id = ? "
+            + "  AND status IN ('" + QUEUED + "', '" + CLAIMED + "')";
+
+    /**
+     * SQL: Count the queued and claimed partitions of a job execution.
+     */
+    private static final String COUNT_UNFINISHED_PARTITIONS
+            = "SELECT "
+            + "  COUNT(*) "
+            + "FROM "
+            + "  rea.batch_partition_queue "
+            + "WHERE "
+            + "  job_execution_id = ? "
+            + "  AND status IN ('" + QUEUED + "', '" + CLAIMED + "')";
+
+    private static final RowMapper<QueuedPartition> QUEUED_PARTITION_MAPPER = new RowMapper<QueuedPartition>() {
+        @Override
+        public QueuedPartition mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+            return new QueuedPartition(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4));
+        }
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates instance of a {@code PartitionQueueJdbcDao}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     */
+    @Autowired
+    public PartitionQueueJdbcDao(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void addPartition(final long jobExecutionId, final long stepExecutionId, final String stepName)
+            throws DataAccessException {
+        Assert.notNull(stepName);
+
+        jdbcTemplate.update(INSERT_PARTITION, new Object[]{jobExecutionId, stepExecutionId, stepName});
+    }
+
+    @Override
+    public QueuedPartition claimPartition(final String worker)
+            throws DataAccessException {
+        Assert.notNull(worker);
+
+        String claimToken = UUID.randomUUID().toString();
+
+        if (jdbcTemplate.update(CLAIM_PARTITION, new Object[]{worker, claimToken}) == 0) {
+            return null;
+        }
+
+        List<QueuedPartition> partitions = jdbcTemplate.query(SELECT_CLAIMED_PARTITION, new Object[]{claimToken}, QUEUED_PARTITION_MAPPER);
+
+        return partitions.isEmpty() ? null : partitions.get(0);
+    }
+
+    @Override
+    public boolean renewClaim(final String claimToken)
+            throws DataAccessException {
+        Assert.notNull(claimToken);
+
+        return jdbcTemplate.update(UPDATE_HEARTBEAT, new Object[]{claimToken}) > 0;
+    }
+
+    @Override
+    public void finishPartition(final String claimToken, final String status)
+            throws DataAccessException {
+        Assert.notNull(claimToken);
+        Assert.isTrue(COMPLETED.equals(status) || FAILED.equals(status), "Unsupported status [" + status + "]");
+
+        jdbcTemplate.update(UPDATE_FINISHED_PARTITION, new Object[]{status, claimToken});
+    }
+
+    @Override
+    public int requeueExpiredPartitions(final long jobExecutionId, final long lease)
+            throws DataAccessException {
+        Assert.isTrue(lease > 0, "Lease must be greater than zero");
+
+        return jdbcTemplate.update(REQUEUE_EXPIRED_PARTITIONS, new Object[]{jobExecutionId, lease});
+    }
+
+    @Override
+    public int abandonPartitions(final long jobExecutionId)
+            throws DataAccessException {
+        return jdbcTemplate.update(ABANDON_PARTITIONS, new Object[]{jobExecutionId});
+    }
+
+    @Override
+    public int countUnfinishedPartitions(final long jobExecutionId)
+            throws DataAccessException {
+        return jdbcTemplate.queryForObject(COUNT_UNFINISHED_PARTITIONS, new Object[]{jobExecutionId}, Integer.class);
+    }
+
+}
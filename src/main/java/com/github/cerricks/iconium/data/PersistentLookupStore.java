@@ -0,0 +1,587 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.github.cerricks.iconium.util.Clearable;
+import com.github.cerricks.iconium.util.Hashing;
+import com.github.cerricks.iconium.util.LongLongHashMap;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * A persistent tier behind the lookup caches, holding GNAF address and street
+ * locality PIDs and (address PID, as_at) to property ID mappings in files
+ * that are loaded at startup, so that a run starts with the lookups made by
+ * previous runs.
+ *
+ * <p>
+ * Each tier is an append-only file of key/value lines, with a
+ * {@code .version} file recording what its entries are valid for:
+ * <ul>
+ * <li>The GNAF tiers are tagged with {@link #setGnafVersion(String)} and are
+ * discarded when it changes. They are not used if no version is set.</li>
+ * <li>The property tier is tagged with the change count of
+ * {@code rea.property_details_changes}, incremented by triggers whenever a
+ * property row is deleted or its key columns are updated (see
+ * {@code sql/property_details_changes.sql}), and is discarded when it
+ * changes. Inserts do not invalidate the tier. It is not used if the table
+ * does not exist.</li>
+ * </ul>
+ *
+ * <p>
+ * Property IDs recorded during a chunk are held back and only written once
+ * the chunk has committed, and are discarded on rollback.
+ *
+ * <p>
+ * The files of a directory are used by one process at a time: a process
+ * holds a {@link FileLock} on the {@code .lock} file of the directory while
+ * it runs, and a process that cannot obtain the lock, e.g. a second partition
+ * worker on the same host, runs without the store.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class PersistentLookupStore implements Clearable, ChunkListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistentLookupStore.class);
+
+    private static final String ADDRESS_DETAIL_PID_TIER = "gnaf_address_pid";
+    private static final String STREET_LOCALITY_PID_TIER = "gnaf_street_locality_pid";
+    private static final String PROPERTY_ID_TIER = "property_id_by_address_pid";
+
+    private static final String LOCK_FILE = ".lock";
+
+    private static final long PROPERTY_SEED = Hashing.hash(Hashing.SEED, "property_id_by_address_pid");
+
+    /**
+     * SQL: Select the change count of property details.
+     */
+    private static final String SELECT_PROPERTY_SIGNATURE
+            = "SELECT "
+            + "  change_count "
+            + "FROM "
+            + "  rea.property_details_changes "
+            + "WHERE "
+            + "  marker_id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentMap<String, String> addressDetailPIDs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> streetLocalityPIDs = new ConcurrentHashMap<>();
+    private final LongLongHashMap propertyIds = new LongLongHashMap();
+    private final ThreadLocal<List<long[]>> pendingPropertyIds = new ThreadLocal<List<long[]>>() {
+        @Override
+        protected List<long[]> initialValue() {
+            return new ArrayList<>();
+        }
+    };
+
+    private boolean enabled = false;
+    private File directory = new File("work/lookup");
+    private String gnafVersion = "";
+    private String propertySignature;
+
+    private Writer addressDetailPIDWriter;
+    private Writer streetLocalityPIDWriter;
+    private Writer propertyIdWriter;
+
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    /**
+     * Creates instance of a {@code PersistentLookupStore}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     */
+    @Autowired
+    public PersistentLookupStore(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Configure whether the persistent tier is used.
+     *
+     * @param enabled {@code true} to use the persistent tier, {@code false}
+     * otherwise.
+     */
+    @Value("${lookup.store.enabled:false}")
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Set the directory holding the tier files.
+     *
+     * @param directory the directory holding the tier files.
+     */
+    @Value("${lookup.store.dir:work/lookup}")
+    public void setDirectory(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Set the version of the GNAF data, e.g. the release loaded. The GNAF
+     * tiers are discarded when the version changes, and are not used if the
+     * version is empty.
+     *
+     * @param gnafVersion the version of the GNAF data.
+     */
+    @Value("${lookup.store.gnaf.version:}")
+    public void setGnafVersion(final String gnafVersion) {
+        this.gnafVersion = gnafVersion != null ? gnafVersion.trim() : "";
+    }
+
+    /**
+     * Load the tiers that are still valid, discarding the others.
+     *
+     * @throws IOException on IO error
+     * @throws DataAccessException on data access error
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create lookup store directory [" + directory + "]");
+        }
+
+        lockChannel = new RandomAccessFile(new File(directory, LOCK_FILE), "rw").getChannel();
+        lock = lockChannel.tryLock();
+
+        if (lock == null) {
+            logger.warn("Not using lookup store [" + directory + "]: in use by another process");
+
+            lockChannel.close();
+            lockChannel = null;
+            enabled = false;
+
+            return;
+        }
+
+        if (!gnafVersion.isEmpty()) {
+            addressDetailPIDWriter = open(ADDRESS_DETAIL_PID_TIER, gnafVersion, new TierLoader() {
+                @Override
+                public void load(final String key, final String value) {
+                    addressDetailPIDs.put(key, value);
+                }
+            });
+
+            streetLocalityPIDWriter = open(STREET_LOCALITY_PID_TIER, gnafVersion, new TierLoader() {
+                @Override
+                public void load(final String key, final String value) {
+                    streetLocalityPIDs.put(key, value);
+                }
+            });
+        }
+
+        propertySignature = propertySignature();
+
+        if (propertySignature != null) {
+            propertyIdWriter = open(PROPERTY_ID_TIER, propertySignature, new TierLoader() {
+                @Override
+                public void load(final String key, final String value) {
+                    propertyIds.put(Long.parseLong(key), Long.parseLong(value));
+                }
+            });
+        } else {
+            logger.info("Not using lookup store tier [" + PROPERTY_ID_TIER + "]: rea.property_details_changes not found");
+        }
+    }
+
+    /**
+     * Flush the tiers. If property rows were deleted or rekeyed while this
+     * run was in progress, the property tier may hold IDs that no longer
+     * exist and is discarded.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (!enabled) {
+            return;
+        }
+
+        close(addressDetailPIDWriter);
+        close(streetLocalityPIDWriter);
+        close(propertyIdWriter);
+
+        try {
+            discardChangedPropertyTier();
+        } finally {
+            try {
+                lock.release();
+                lockChannel.close();
+            } catch (IOException ex) {
+                logger.warn("Failed to release lookup store lock", ex);
+            }
+        }
+    }
+
+    /**
+     * Discard the property tier if property rows were deleted or rekeyed
+     * while this run was in progress.
+     */
+    private void discardChangedPropertyTier() {
+        if (propertySignature == null) {
+            return;
+        }
+
+        String currentSignature;
+
+        try {
+            currentSignature = propertySignature();
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to read property signature, the property tier will be discarded on next run", ex);
+
+            currentSignature = null;
+        }
+
+        if (!propertySignature.equals(currentSignature)) {
+            new File(directory, PROPERTY_ID_TIER + ".version").delete();
+        }
+    }
+
+    /**
+     * Retrieve the AddressDetailsPID recorded for the given address.
+     *
+     * @param address address value
+     * @param state state value
+     * @param postCode post code value
+     * @param locality locality value
+     * @return the AddressDetailsPID or {@code null} if not recorded.
+     */
+    public String findAddressDetailPID(final String address, final String state, final String postCode, final String locality) {
+        return addressDetailPIDWriter != null
+                ? addressDetailPIDs.get(key(address, state, postCode, locality))
+                : null;
+    }
+
+    /**
+     * Record the AddressDetailsPID matched for the given address.
+     *
+     * @param address address value
+     * @param state state value
+     * @param postCode post code value
+     * @param locality locality value
+     * @param addressDetailPID the AddressDetailsPID matched
+     */
+    public void putAddressDetailPID(final String address, final String state, final String postCode, final String locality, final String addressDetailPID) {
+        if (addressDetailPIDWriter == null || addressDetailPID == null) {
+            return;
+        }
+
+        String key = key(address, state, postCode, locality);
+
+        if (addressDetailPIDs.putIfAbsent(key, addressDetailPID) == null) {
+            append(addressDetailPIDWriter, key, addressDetailPID);
+        }
+    }
+
+    /**
+     * Retrieve the StreetLocalityPID recorded for the given street address.
+     *
+     * @param street street value
+     * @param state state value
+     * @param postCode post code value
+     * @param locality locality value
+     * @return the StreetLocalityPID or {@code null} if not recorded.
+     */
+    public String findStreetLocalityPID(final String street, final String state, final String postCode, final String locality) {
+        return streetLocalityPIDWriter != null
+                ? streetLocalityPIDs.get(key(street, state, postCode, locality))
+                : null;
+    }
+
+    /**
+     * Record the StreetLocalityPID matched for the given street address.
+     *
+     * @param street street value
+     * @param state state value
+     * @param postCode post code value
+     * @param locality locality value
+     * @param streetLocalityPID the StreetLocalityPID matched
+     */
+    public void putStreetLocalityPID(final String street, final String state, final String postCode, final String locality, final String streetLocalityPID) {
+        if (streetLocalityPIDWriter == null || streetLocalityPID == null) {
+            return;
+        }
+
+        String key = key(street, state, postCode, locality);
+
+        if (streetLocalityPIDs.putIfAbsent(key, streetLocalityPID) == null) {
+            append(streetLocalityPIDWriter, key, streetLocalityPID);
+        }
+    }
+
+    /**
+     * Retrieve the ID recorded for the property with the given addressPID on
+     * the given date.
+     *
+     * @param addressPID the AddressPID of the address in the GNAF database
+     * @param recordDate the date for the record
+     * @return the ID of the property or {@code null} if not recorded.
+     */
+    public Long findPropertyId(final String addressPID, final LocalDate recordDate) {
+        if (propertyIdWriter == null) {
+            return null;
+        }
+
+        long id;
+
+        synchronized (propertyIds) {
+            id = propertyIds.get(propertyKey(addressPID, recordDate), 0);
+        }
+
+        return id != 0 ? id : null;
+    }
+
+    /**
+     * Record the ID of the property with the given addressPID on the given
+     * date. The ID is held back until the current chunk of the calling
+     * thread has committed.
+     *
+     * @param addressPID the AddressPID of the address in the GNAF database
+     * @param recordDate the date for the record
+     * @param propertyId the ID of the property
+     */
+    public void putPropertyId(final String addressPID, final LocalDate recordDate, final Long propertyId) {
+        if (propertyIdWriter == null || addressPID == null || propertyId == null) {
+            return;
+        }
+
+        pendingPropertyIds.get().add(new long[]{propertyKey(addressPID, recordDate), propertyId});
+    }
+
+    @Override
+    public void beforeChunk(final ChunkContext context) {
+        // do nothing
+    }
+
+    /**
+     * Write the property IDs recorded during the committed chunk.
+     *
+     * @param context the chunk context
+     */
+    @Override
+    public void afterChunk(final ChunkContext context) {
+        if (propertyIdWriter != null) {
+            List<long[]> pending = pendingPropertyIds.get();
+
+            synchronized (propertyIds) {
+                for (long[] entry : pending) {
+                    propertyIds.put(entry[0], entry[1]);
+
+                    append(propertyIdWriter, Long.toString(entry[0]), Long.toString(entry[1]));
+                }
+            }
+
+            pending.clear();
+        }
+
+        flush(addressDetailPIDWriter);
+        flush(streetLocalityPIDWriter);
+        flush(propertyIdWriter);
+    }
+
+    @Override
+    public void afterChunkError(final ChunkContext context) {
+        clear();
+    }
+
+    /**
+     * Discard the property IDs recorded by the calling thread since its last
+     * commit.
+     */
+    @Override
+    public void clear() {
+        pendingPropertyIds.get().clear();
+    }
+
+    /**
+     * Open a tier, loading its entries if its version matches the given
+     * version or discarding them otherwise.
+     *
+     * @param tier name of the tier
+     * @param version the version the entries must be valid for
+     * @param loader receives the loaded entries
+     * @return writer to append entries to the tier
+     * @throws IOException on IO error
+     */
+    private Writer open(final String tier, final String version, final TierLoader loader) throws IOException {
+        File data = new File(directory, tier + ".dat");
+        String savedVersion = readVersion(tier);
+        boolean valid = data.exists() && isValid(savedVersion, version);
+        int count = 0;
+
+        if (valid) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(data), StandardCharsets.UTF_8), 65536)) {
+                String line;
+
+                while ((line = in.readLine()) != null) {
+                    int separator = line.indexOf('\t');
+
+                    if (separator > 0) { // ignore a line left incomplete by a failed run
+                        try {
+                            loader.load(line.substring(0, separator), line.substring(separator + 1));
+
+                            count++;
+                        } catch (NumberFormatException ex) {
+                            logger.warn("Ignoring invalid entry in lookup store tier [" + tier + "]: " + line);
+                        }
+                    }
+                }
+            }
+        } else if (data.exists() && logger.isInfoEnabled()) {
+            logger.info("Discarding lookup store tier [" + tier + "] saved for [" + savedVersion + "], current [" + version + "]");
+        }
+
+        if (!valid) {
+            writeVersion(tier, version);
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Loaded [" + count + "] entries from lookup store tier [" + tier + "]");
+        }
+
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(data, valid), StandardCharsets.UTF_8), 65536);
+    }
+
+    private static boolean isValid(final String savedVersion, final String version) {
+        return savedVersion != null && savedVersion.equals(version);
+    }
+
+    private String readVersion(final String tier) throws IOException {
+        File file = new File(directory, tier + ".version");
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return in.readLine();
+        }
+    }
+
+    private void writeVersion(final String tier, final String version) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(new File(directory, tier + ".version")), StandardCharsets.UTF_8)) {
+            out.write(version);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Read the change count of property details.
+     *
+     * @return the change count, or {@code null} if the change marker is not
+     * installed.
+     * @throws DataAccessException on data access error
+     */
+    private String propertySignature() throws DataAccessException {
+        try {
+            return jdbcTemplate.queryForObject(SELECT_PROPERTY_SIGNATURE, String.class);
+        } catch (BadSqlGrammarException | EmptyResultDataAccessException ex) {
+            return null;
+        }
+    }
+
+    private static void append(final Writer writer, final String key, final String value) {
+        synchronized (writer) {
+            try {
+                writer.write(key);
+                writer.write('\t');
+                writer.write(value);
+                writer.write('\n');
+            } catch (IOException ex) {
+                logger.warn("Failed to write to lookup store", ex);
+            }
+        }
+    }
+
+    private static void flush(final Writer writer) {
+        if (writer == null) {
+            return;
+        }
+
+        synchronized (writer) {
+            try {
+                writer.flush();
+            } catch (IOException ex) {
+                logger.warn("Failed to flush lookup store", ex);
+            }
+        }
+    }
+
+    private static void close(final Writer writer) {
+        if (writer == null) {
+            return;
+        }
+
+        synchronized (writer) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                logger.warn("Failed to close lookup store", ex);
+            }
+        }
+    }
+
+    private static String key(final String address, final String state, final String postCode, final String locality) {
+        return (address + '\u0001' + state + '\u0001' + postCode + '\u0001' + locality).replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static long propertyKey(final String addressPID, final LocalDate recordDate) {
+        return Hashing.hash(Hashing.hash(PROPERTY_SEED, addressPID), recordDate.getYear() * 10000L + recordDate.getMonthOfYear() * 100L + recordDate.getDayOfMonth());
+    }
+
+    /**
+     * Receives the entries loaded from a tier.
+     */
+    private interface TierLoader {
+
+        void load(String key, String value);
+
+    }
+
+}
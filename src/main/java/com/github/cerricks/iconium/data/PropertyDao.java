@@ -33,9 +33,10 @@ public interface PropertyDao {
      * @param comparablePropertyId The ID of a property considered comparable.
      * @param type The type of comparison e.g. for rent, for sale, sold.
      * @param date The date the comparison was made.
+     * @return the number of affected rows
      * @throws DataAccessException on data access error
      */
-    void addComparableProperty(Long propertyId, Long comparablePropertyId, String type, LocalDate date)
+    int addComparableProperty(Long propertyId, Long comparablePropertyId, String type, LocalDate date)
             throws DataAccessException;
 
     /**
@@ -45,9 +46,10 @@ public interface PropertyDao {
      * @param url URL of the request for data
      * @param acquiredOn the date the data was acquired
      * @param propertyId the ID of the property for which details were extracted
+     * @return the number of affected rows
      * @throws DataAccessException on data access error
      */
-    void addDataAcquisition(String addressPID, String url, LocalDate acquiredOn, Long propertyId)
+    int addDataAcquisition(String addressPID, String url, LocalDate acquiredOn, Long propertyId)
             throws DataAccessException;
 
     /**
@@ -55,9 +57,10 @@ public interface PropertyDao {
      *
      * @param propertyId The ID of the property to which the history applies.
      * @param event event details
+     * @return the number of affected rows
      * @throws DataAccessException on data access error
      */
-    void addEvent(Long propertyId, Event event)
+    int addEvent(Long propertyId, Event event)
             throws DataAccessException;
 
     /**
@@ -65,7 +68,7 @@ public interface PropertyDao {
      *
      * @param property property details
      * @param recordDate the date for this record
-     * @return auto-generated property ID
+     * @return allocated or auto-generated property ID
      * @throws DataAccessException on data access error
      */
     Long addProperty(Property property, LocalDate recordDate)
@@ -23,6 +23,7 @@ import org.joda.time.LocalDate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -45,6 +46,16 @@ public class PropertyJdbcDao implements PropertyDao {
 
     private static final Logger logger = LoggerFactory.getLogger(PropertyJdbcDao.class);
 
+    /**
+     * Name of the cache of property IDs by address and date.
+     */
+    public static final String PROPERTY_ID_BY_ADDRESS_CACHE = "property_id_by_address_cache";
+
+    /**
+     * Name of the cache of property IDs by AddressPID and date.
+     */
+    public static final String PROPERTY_ID_BY_ADDRESS_PID_CACHE = "property_id_by_address_pid_cache";
+
     /**
      * SQL: Insert comparable property associated with a property.
      */
@@ -94,6 +105,25 @@ public class PropertyJdbcDao implements PropertyDao {
             + "  VALUES "
             + "  (?, ?, ?, ?, ?)";
 
+    /**
+     * SQL: Insert comparable property associated with a property, ignoring
+     * duplicates.
+     */
+    private static final String INSERT_IGNORE_COMPARABLE_PROPERTY
+            = "INSERT IGNORE " + INSERT_COMPARABLE_PROPERTY.substring("INSERT ".length());
+
+    /**
+     * SQL: Insert data acquisition details, ignoring duplicates.
+     */
+    private static final String INSERT_IGNORE_DATA_ACQUISITION
+            = "INSERT IGNORE " + INSERT_DATA_ACQUISITION.substring("INSERT ".length());
+
+    /**
+     * SQL: Insert property history, ignoring duplicates.
+     */
+    private static final String INSERT_IGNORE_EVENT
+            = "INSERT IGNORE " + INSERT_EVENT.substring("INSERT ".length());
+
     /**
      * SQL: Insert property details.
      */
@@ -128,6 +158,41 @@ public class PropertyJdbcDao implements PropertyDao {
             + "  VALUES "
             + "  (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
+    /**
+     * SQL: Insert property details with a client-allocated ID.
+     */
+    private static final String INSERT_PROPERTY_WITH_ID
+            = "INSERT "
+            + "INTO "
+            + "  rea.property_details "
+            + "  ( "
+            + "    prop_dtls_id, "
+            + "    gnaf_addr_dtl_pid, "
+            + "    as_at, "
+            + "    state, "
+            + "    post_code, "
+            + "    locality, "
+            + "    address, "
+            + "    property_type, "
+            + "    bedrooms, "
+            + "    bathrooms, "
+            + "    car_spots, "
+            + "    land_size_desc, "
+            + "    bldg_size_desc, "
+            + "    council_area, "
+            + "    price_desc, "
+            + "    price_estimate_from, "
+            + "    price_estimate_to, "
+            + "    price_estimate_confidence, "
+            + "    sale_method, "
+            + "    sold_date, "
+            + "    avail_for_lease, "
+            + "    year_built, "
+            + "    block_code "
+            + "  ) "
+            + "  VALUES "
+            + "  (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     /**
      * SQL: Select property ID for given address.
      */
@@ -177,8 +242,45 @@ public class PropertyJdbcDao implements PropertyDao {
             + "WHERE "
             + "  prop_dtls_id = ?";
 
+    /**
+     * Update property details and the row hash held in the column named by
+     * {@code %1$s}, unless the stored hash is the same.
+     */
+    private static final String UPDATE_PROPERTY_WITH_HASH
+            = "UPDATE "
+            + "  rea.property_details "
+            + "SET "
+            + "  property_type             = ?, "
+            + "  bedrooms                  = ?, "
+            + "  bathrooms                 = ?, "
+            + "  car_spots                 = ?, "
+            + "  land_size_desc            = ?, "
+            + "  bldg_size_desc            = ?, "
+            + "  council_area              = ?, "
+            + "  price_estimate_from       = ?, "
+            + "  price_estimate_to         = ?, "
+            + "  price_estimate_confidence = ?, "
+            + "  year_built                = ?, "
+            + "  block_code                = ?, "
+            + "  %1$s = ? "
+            + "WHERE "
+            + "  prop_dtls_id = ? "
+            + "AND (%1$s IS NULL OR %1$s <> ?)";
+
     private final JdbcTemplate jdbcTemplate;
 
+    private PropertyKeyFilter propertyKeyFilter;
+
+    private IdAllocator idAllocator;
+
+    private PropertyRowHashes propertyRowHashes;
+    private PersistentLookupStore persistentLookupStore;
+    private CacheStatistics cacheStatistics;
+
+    private boolean ignoreDuplicates = false;
+
+    private String updatePropertyWithHash;
+
     /**
      * Creates instance of a {@code PropertyJdbcDao}.
      *
@@ -189,6 +291,102 @@ public class PropertyJdbcDao implements PropertyDao {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    /**
+     * Configure whether comparable property, data acquisition and history
+     * records are written using {@code INSERT IGNORE}. When enabled, a
+     * duplicate record is reported as zero affected rows rather than by
+     * throwing a {@code DuplicateKeyException}.
+     *
+     * @param ignoreDuplicates {@code true} to ignore duplicate records,
+     * {@code false} otherwise.
+     */
+    @Value("${batch.write.idempotent:false}")
+    public void setIgnoreDuplicates(final boolean ignoreDuplicates) {
+        this.ignoreDuplicates = ignoreDuplicates;
+    }
+
+    /**
+     * Configure the {@link IdAllocator} used to allocate property IDs on the
+     * client when enabled.
+     *
+     * @param idAllocator the {@link IdAllocator} used to allocate property
+     * IDs.
+     */
+    @Autowired
+    public void setIdAllocator(final IdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * Configure the {@link PropertyKeyFilter} used to skip lookups for
+     * properties that definitely do not exist.
+     *
+     * @param propertyKeyFilter the {@link PropertyKeyFilter} used to skip
+     * lookups for properties that definitely do not exist.
+     */
+    @Autowired
+    public void setPropertyKeyFilter(final PropertyKeyFilter propertyKeyFilter) {
+        this.propertyKeyFilter = propertyKeyFilter;
+    }
+
+    /**
+     * Configure the {@link PropertyRowHashes} used to skip updates that would
+     * not change a property row.
+     *
+     * @param propertyRowHashes the {@link PropertyRowHashes} used to skip
+     * updates that would not change a property row.
+     */
+    @Autowired
+    public void setPropertyRowHashes(final PropertyRowHashes propertyRowHashes) {
+        this.propertyRowHashes = propertyRowHashes;
+    }
+
+    /**
+     * Configure the {@link PersistentLookupStore} holding property IDs found
+     * or inserted by previous runs.
+     *
+     * @param persistentLookupStore the {@link PersistentLookupStore} holding
+     * property IDs found or inserted by previous runs.
+     */
+    @Autowired
+    public void setPersistentLookupStore(final PersistentLookupStore persistentLookupStore) {
+        this.persistentLookupStore = persistentLookupStore;
+    }
+
+    /**
+     * Configure the {@link CacheStatistics} in which loads of cached values
+     * are recorded.
+     *
+     * @param cacheStatistics the {@link CacheStatistics} in which loads of
+     * cached values are recorded.
+     */
+    @Autowired
+    public void setCacheStatistics(final CacheStatistics cacheStatistics) {
+        this.cacheStatistics = cacheStatistics;
+    }
+
+    /**
+     * Set the name of a {@code BIGINT} column of {@code rea.property_details}
+     * in which to store the hash of the updatable column values (see
+     * {@link PropertyRowHashes#hash(Property)}). When set, an update is only
+     * applied by the database if the stored hash differs. An empty name
+     * disables the column.
+     *
+     * @param hashColumn name of the hash column, or empty for none.
+     */
+    @Value("${property.update.hash.column:}")
+    public void setHashColumn(final String hashColumn) {
+        if (!StringUtils.hasText(hashColumn)) {
+            this.updatePropertyWithHash = null;
+
+            return;
+        }
+
+        Assert.isTrue(hashColumn.matches("[A-Za-z_][A-Za-z0-9_]*"), "Invalid hash column name [" + hashColumn + "]");
+
+        this.updatePropertyWithHash = String.format(UPDATE_PROPERTY_WITH_HASH, hashColumn);
+    }
+
     /**
      * Add comparable property associated with given property.
      *
@@ -197,10 +395,11 @@ public class PropertyJdbcDao implements PropertyDao {
      * @param comparablePropertyId The ID of a property considered comparable.
      * @param type The type of comparison e.g. for rent, for sale, sold.
      * @param date The date the comparison was made.
+     * @return the number of affected rows
      * @throws DataAccessException on data access error
      */
     @Override
-    public void addComparableProperty(final Long propertyId, final Long comparablePropertyId, final String type, final LocalDate date)
+    public int addComparableProperty(final Long propertyId, final Long comparablePropertyId, final String type, final LocalDate date)
             throws DataAccessException {
         Assert.notNull(propertyId);
         Assert.notNull(comparablePropertyId);
@@ -214,7 +413,7 @@ public class PropertyJdbcDao implements PropertyDao {
             date.toDate()
         };
 
-        jdbcTemplate.update(INSERT_COMPARABLE_PROPERTY, parameters);
+        return jdbcTemplate.update(ignoreDuplicates ? INSERT_IGNORE_COMPARABLE_PROPERTY : INSERT_COMPARABLE_PROPERTY, parameters);
     }
 
     /**
@@ -224,10 +423,11 @@ public class PropertyJdbcDao implements PropertyDao {
      * @param url URL of the request for data
      * @param acquiredOn the date the data was acquired
      * @param propertyId the ID of the property for which details were extracted
+     * @return the number of affected rows
      * @throws DataAccessException on data access error
      */
     @Override
-    public void addDataAcquisition(final String addressPID, final String url, final LocalDate acquiredOn, final Long propertyId)
+    public int addDataAcquisition(final String addressPID, final String url, final LocalDate acquiredOn, final Long propertyId)
             throws DataAccessException {
         Assert.notNull(addressPID);
         Assert.notNull(url);
@@ -241,7 +441,7 @@ public class PropertyJdbcDao implements PropertyDao {
             propertyId
         };
 
-        jdbcTemplate.update(INSERT_DATA_ACQUISITION, parameters);
+        return jdbcTemplate.update(ignoreDuplicates ? INSERT_IGNORE_DATA_ACQUISITION : INSERT_DATA_ACQUISITION, parameters);
     }
 
     /**
@@ -249,10 +449,11 @@ public class PropertyJdbcDao implements PropertyDao {
      *
      * @param propertyId The ID of the property to which the history applies.
      * @param event event details
+     * @return the number of affected rows
      * @throws DataAccessException on data access error
      */
     @Override
-    public void addEvent(final Long propertyId, final Event event)
+    public int addEvent(final Long propertyId, final Event event)
             throws DataAccessException {
         Assert.notNull(event);
         Assert.notNull(event.getYearMonth());
@@ -266,7 +467,7 @@ public class PropertyJdbcDao implements PropertyDao {
             event.getPriceDesc()
         };
 
-        jdbcTemplate.update(INSERT_EVENT, parameters);
+        return jdbcTemplate.update(ignoreDuplicates ? INSERT_IGNORE_EVENT : INSERT_EVENT, parameters);
     }
 
     /**
@@ -274,7 +475,7 @@ public class PropertyJdbcDao implements PropertyDao {
      *
      * @param property property details
      * @param recordDate the date for this record
-     * @return auto-generated property ID
+     * @return allocated or auto-generated property ID
      * @throws DataAccessException on data access error
      */
     @Override
@@ -283,30 +484,23 @@ public class PropertyJdbcDao implements PropertyDao {
         Assert.notNull(property);
         Assert.notNull(recordDate);
 
-        final Object[] parameters = new Object[]{
-            property.getAddressPID(),
-            recordDate.toDate(),
-            property.getAddressPID() == null ? property.getState() : null,
-            property.getAddressPID() == null ? property.getPostCode() : null,
-            property.getAddressPID() == null ? property.getLocality() : null,
-            property.getAddressPID() == null ? property.getAddress() : null,
-            property.getPropertyType(),
-            property.getBedrooms(),
-            property.getBathrooms(),
-            property.getCarSpots(),
-            property.getLandSizeDesc(),
-            property.getBuildingSizeDesc(),
-            property.getCouncilArea(),
-            property.getPriceDesc(),
-            property.getPriceEstimateFrom(),
-            property.getPriceEstimateTo(),
-            property.getPriceEstimateConfidence(),
-            property.getSaleMethod(),
-            property.getSoldDate() != null ? property.getSoldDate().toDate() : null,
-            property.getAvailableForLeaseDate() != null ? property.getAvailableForLeaseDate().toDate() : null,
-            property.getYearBuilt(),
-            property.getBlockCode()
-        };
+        final Object[] parameters = toInsertParameters(property, recordDate);
+
+        if (idAllocator.isEnabled()) {
+            long propertyId = idAllocator.nextId(IdAllocator.PROPERTY_DETAILS);
+
+            Object[] parametersWithId = new Object[parameters.length + 1];
+            parametersWithId[0] = propertyId;
+            System.arraycopy(parameters, 0, parametersWithId, 1, parameters.length);
+
+            jdbcTemplate.update(INSERT_PROPERTY_WITH_ID, parametersWithId);
+
+            propertyKeyFilter.add(property, recordDate);
+            propertyRowHashes.put(propertyId, PropertyRowHashes.hash(property));
+            persistentLookupStore.putPropertyId(property.getAddressPID(), recordDate, propertyId);
+
+            return propertyId;
+        }
 
         final KeyHolder keyHolder = new GeneratedKeyHolder();
 
@@ -321,7 +515,13 @@ public class PropertyJdbcDao implements PropertyDao {
             }
         }, keyHolder);
 
-        return keyHolder.getKey().longValue();
+        long propertyId = keyHolder.getKey().longValue();
+
+        propertyKeyFilter.add(property, recordDate);
+        propertyRowHashes.put(propertyId, PropertyRowHashes.hash(property));
+        persistentLookupStore.putPropertyId(property.getAddressPID(), recordDate, propertyId);
+
+        return propertyId;
     }
 
     /**
@@ -337,45 +537,55 @@ public class PropertyJdbcDao implements PropertyDao {
      * found.
      * @throws DataAccessException on data access error
      */
-    @Cacheable(value = "property_id_by_address_cache", unless = "#result == null")
+    @Cacheable(value = PROPERTY_ID_BY_ADDRESS_CACHE, unless = "#result == null")
     @Override
     public Long findPropertyIdByAddress(final String address, final String state, final String postCode, final String locality, final LocalDate recordDate)
             throws DataAccessException {
-        if (!StringUtils.hasText(address)
-                && !StringUtils.hasText(state)
-                && !StringUtils.hasText(postCode)
-                && !StringUtils.hasText(locality)) {
-            if (logger.isInfoEnabled()) {
-                logger.info("");
-            }
-
-            return null;
-        }
+        long start = System.nanoTime();
 
-        if (recordDate == null) {
-            if (logger.isInfoEnabled()) {
-                logger.info("recordDate cannot be NULL");
+        try {
+            if (!StringUtils.hasText(address)
+                    && !StringUtils.hasText(state)
+                    && !StringUtils.hasText(postCode)
+                    && !StringUtils.hasText(locality)) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("");
+                }
+
+                return null;
             }
 
-            return null;
-        }
+            if (recordDate == null) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("recordDate cannot be NULL");
+                }
 
-        Object[] parameters = new Object[]{
-            address,
-            state,
-            postCode,
-            locality,
-            recordDate.toDate()
-        };
+                return null;
+            }
 
-        try {
-            return jdbcTemplate.queryForObject(SELECT_PROPERTY_BY_ADDRESS, parameters, Long.class);
-        } catch (EmptyResultDataAccessException ex) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Unable to match property for: address [" + address + "], state [" + state + "], postCode [" + postCode + "], locality [" + locality + "] and recordDate [" + recordDate.toString() + "]");
+            if (!propertyKeyFilter.mightContainAddress(address, state, locality, recordDate)) {
+                return null;
             }
 
-            return null;
+            Object[] parameters = new Object[]{
+                address,
+                state,
+                postCode,
+                locality,
+                recordDate.toDate()
+            };
+
+            try {
+                return jdbcTemplate.queryForObject(SELECT_PROPERTY_BY_ADDRESS, parameters, Long.class);
+            } catch (EmptyResultDataAccessException ex) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Unable to match property for: address [" + address + "], state [" + state + "], postCode [" + postCode + "], locality [" + locality + "] and recordDate [" + recordDate.toString() + "]");
+                }
+
+                return null;
+            }
+        } finally {
+            cacheStatistics.recordLoad(PROPERTY_ID_BY_ADDRESS_CACHE, System.nanoTime() - start);
         }
     }
 
@@ -389,33 +599,53 @@ public class PropertyJdbcDao implements PropertyDao {
      * match found.
      * @throws DataAccessException on data access error
      */
-    @Cacheable(value = "property_id_by_address_pid_cache", unless = "#result == null")
+    @Cacheable(value = PROPERTY_ID_BY_ADDRESS_PID_CACHE, unless = "#result == null")
     @Override
     public Long findPropertyIdByAddressPID(final String addressPID, final LocalDate recordDate)
             throws DataAccessException {
-        if (addressPID == null) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("AddressPID details cannot be NULL");
+        long start = System.nanoTime();
+
+        try {
+            if (addressPID == null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("AddressPID details cannot be NULL");
+                }
+
+                return null;
             }
 
-            return null;
-        }
+            Assert.notNull(recordDate);
 
-        Assert.notNull(recordDate);
+            Long propertyId = persistentLookupStore.findPropertyId(addressPID, recordDate);
 
-        Object[] parameters = new Object[]{
-            addressPID,
-            recordDate.toDate()
-        };
+            if (propertyId != null) {
+                return propertyId;
+            }
 
-        try {
-            return jdbcTemplate.queryForObject(SELECT_PROPERTY_BY_ADDRESS_PID, parameters, Long.class);
-        } catch (EmptyResultDataAccessException ex) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Unable to match property for: addressPID [" + addressPID + "] and recordDate [" + recordDate.toString() + "]");
+            if (!propertyKeyFilter.mightContainAddressPID(addressPID, recordDate)) {
+                return null;
             }
 
-            return null;
+            Object[] parameters = new Object[]{
+                addressPID,
+                recordDate.toDate()
+            };
+
+            try {
+                propertyId = jdbcTemplate.queryForObject(SELECT_PROPERTY_BY_ADDRESS_PID, parameters, Long.class);
+
+                persistentLookupStore.putPropertyId(addressPID, recordDate, propertyId);
+
+                return propertyId;
+            } catch (EmptyResultDataAccessException ex) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Unable to match property for: addressPID [" + addressPID + "] and recordDate [" + recordDate.toString() + "]");
+                }
+
+                return null;
+            }
+        } finally {
+            cacheStatistics.recordLoad(PROPERTY_ID_BY_ADDRESS_PID_CACHE, System.nanoTime() - start);
         }
     }
 
@@ -423,6 +653,11 @@ public class PropertyJdbcDao implements PropertyDao {
      * Update property details using {@link Property#getId()} to identify the
      * property record to update.
      *
+     * <p>
+     * The update is skipped, returning zero, if the values are known to be
+     * unchanged (see {@link PropertyRowHashes}), or is not applied by the
+     * database if a hash column is configured and holds the same hash.
+     *
      * @param property property details to update
      * @return the number of affected rows
      * @throws DataAccessException on data access error
@@ -433,7 +668,71 @@ public class PropertyJdbcDao implements PropertyDao {
         Assert.notNull(property);
         Assert.notNull(property.getId());
 
-        final Object[] parameters = new Object[]{
+        long rowHash = PropertyRowHashes.hash(property);
+
+        if (propertyRowHashes.isUnchanged(property.getId(), rowHash)) {
+            return 0;
+        }
+
+        int rows;
+
+        if (updatePropertyWithHash != null) {
+            rows = jdbcTemplate.update(updatePropertyWithHash, new Object[]{
+                property.getPropertyType(),
+                property.getBedrooms(),
+                property.getBathrooms(),
+                property.getCarSpots(),
+                property.getLandSizeDesc(),
+                property.getBuildingSizeDesc(),
+                property.getCouncilArea(),
+                property.getPriceEstimateFrom(),
+                property.getPriceEstimateTo(),
+                property.getPriceEstimateConfidence(),
+                property.getYearBuilt(),
+                property.getBlockCode(),
+                rowHash,
+                property.getId(),
+                rowHash
+            });
+        } else {
+            rows = jdbcTemplate.update(UPDATE_PROPERTY, new Object[]{
+                property.getPropertyType(),
+                property.getBedrooms(),
+                property.getBathrooms(),
+                property.getCarSpots(),
+                property.getLandSizeDesc(),
+                property.getBuildingSizeDesc(),
+                property.getCouncilArea(),
+                property.getPriceEstimateFrom(),
+                property.getPriceEstimateTo(),
+                property.getPriceEstimateConfidence(),
+                property.getYearBuilt(),
+                property.getBlockCode(),
+                property.getId()
+            });
+        }
+
+        propertyRowHashes.put(property.getId(), rowHash);
+
+        return rows;
+    }
+
+    /**
+     * Convert property details to the parameters of {@link #INSERT_PROPERTY}.
+     * Address details are only recorded when the AddressPID is unknown.
+     *
+     * @param property property details
+     * @param recordDate the date for this record
+     * @return the insert parameters
+     */
+    static Object[] toInsertParameters(final Property property, final LocalDate recordDate) {
+        return new Object[]{
+            property.getAddressPID(),
+            recordDate.toDate(),
+            property.getAddressPID() == null ? property.getState() : null,
+            property.getAddressPID() == null ? property.getPostCode() : null,
+            property.getAddressPID() == null ? property.getLocality() : null,
+            property.getAddressPID() == null ? property.getAddress() : null,
             property.getPropertyType(),
             property.getBedrooms(),
             property.getBathrooms(),
@@ -441,15 +740,16 @@ public class PropertyJdbcDao implements PropertyDao {
             property.getLandSizeDesc(),
             property.getBuildingSizeDesc(),
             property.getCouncilArea(),
+            property.getPriceDesc(),
             property.getPriceEstimateFrom(),
             property.getPriceEstimateTo(),
             property.getPriceEstimateConfidence(),
+            property.getSaleMethod(),
+            property.getSoldDate() != null ? property.getSoldDate().toDate() : null,
+            property.getAvailableForLeaseDate() != null ? property.getAvailableForLeaseDate().toDate() : null,
             property.getYearBuilt(),
-            property.getBlockCode(),
-            property.getId()
+            property.getBlockCode()
         };
-
-        return jdbcTemplate.update(UPDATE_PROPERTY, parameters);
     }
 
     /**
@@ -459,7 +759,7 @@ public class PropertyJdbcDao implements PropertyDao {
      * @param typeText type text to convert
      * @return either 'rented', 'sold', or original value (if unable to convert)
      */
-    private String convertEventTypeText(final String typeText) {
+    static String convertEventTypeText(final String typeText) {
         if (typeText == null) {
             return null;
         }
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.github.cerricks.iconium.util.BloomFilter;
+import com.github.cerricks.iconium.util.Hashing;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * A {@link BloomFilter} of the (address key, as_at) pairs present in
+ * {@code rea.property_details}, used to skip property ID lookups that are
+ * certain to miss.
+ *
+ * <p>
+ * The keys for a given as_at date are loaded from the database the first time
+ * a lookup is made for that date, so the filter covers exactly the date range
+ * of the input. Keys are added as properties are inserted. A key added for an
+ * insert that is later rolled back only results in a false positive (i.e. an
+ * unnecessary lookup), so the filter does not need to be cleared on rollback.
+ *
+ * <p>
+ * Keys are upper-cased and trimmed, and the post code is excluded from the
+ * address key, so that the filter never rejects a row that the
+ * case-insensitive lookup queries would match.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class PropertyKeyFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PropertyKeyFilter.class);
+
+    private static final long ADDRESS_PID_SEED = Hashing.hash(Hashing.SEED, "address_pid");
+    private static final long ADDRESS_SEED = Hashing.hash(Hashing.SEED, "address");
+
+    /**
+     * SQL: Select address keys of properties recorded on a given date.
+     */
+    private static final String SELECT_PROPERTY_KEYS
+            = "SELECT "
+            + "  gnaf_addr_dtl_pid, "
+            + "  address, "
+            + "  state, "
+            + "  locality "
+            + "FROM "
+            + "  rea.property_details "
+            + "WHERE "
+            + "  as_at = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Set<LocalDate> loadedDates = Collections.newSetFromMap(new ConcurrentHashMap<LocalDate, Boolean>());
+
+    private boolean enabled = false;
+    private long expectedEntries = 10000000;
+    private double falsePositiveProbability = 0.01;
+
+    private volatile BloomFilter filter;
+
+    /**
+     * Creates instance of a {@code PropertyKeyFilter}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     */
+    @Autowired
+    public PropertyKeyFilter(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Configure whether this filter is enabled. When disabled, every key is
+     * reported as possibly present.
+     *
+     * @param enabled {@code true} to enable this filter, {@code false}
+     * otherwise.
+     */
+    @Value("${property.lookup.filter.enabled:false}")
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Set the expected number of property keys, used to size the filter.
+     *
+     * @param expectedEntries the expected number of property keys
+     */
+    @Value("${property.lookup.filter.expected.entries:10000000}")
+    public void setExpectedEntries(final long expectedEntries) {
+        this.expectedEntries = expectedEntries;
+    }
+
+    /**
+     * Set the desired false positive probability of the filter.
+     *
+     * @param falsePositiveProbability the desired false positive probability
+     */
+    @Value("${property.lookup.filter.fpp:0.01}")
+    public void setFalsePositiveProbability(final double falsePositiveProbability) {
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    /**
+     * Determine if a property with the given addressPID may exist for the
+     * given date.
+     *
+     * @param addressPID the AddressPID of the address in the GNAF database
+     * @param recordDate the date for the record
+     * @return {@code false} if the property definitely does not exist,
+     * {@code true} otherwise.
+     * @throws DataAccessException on data access error
+     */
+    public boolean mightContainAddressPID(final String addressPID, final LocalDate recordDate)
+            throws DataAccessException {
+        if (!enabled) {
+            return true;
+        }
+
+        return load(recordDate).mightContain(addressPIDKey(addressPID, recordDate));
+    }
+
+    /**
+     * Determine if a property with the given address may exist for the given
+     * date.
+     *
+     * @param address address value
+     * @param state state value
+     * @param locality locality value
+     * @param recordDate the date for the record
+     * @return {@code false} if the property definitely does not exist,
+     * {@code true} otherwise.
+     * @throws DataAccessException on data access error
+     */
+    public boolean mightContainAddress(final String address, final String state, final String locality, final LocalDate recordDate)
+            throws DataAccessException {
+        if (!enabled) {
+            return true;
+        }
+
+        return load(recordDate).mightContain(addressKey(address, state, locality, recordDate));
+    }
+
+    /**
+     * Add the key of a newly inserted property to this filter.
+     *
+     * @param property the property inserted
+     * @param recordDate the date for the record
+     */
+    public void add(final Property property, final LocalDate recordDate) {
+        if (!enabled || filter == null) {
+            return;
+        }
+
+        if (property.getAddressPID() != null) {
+            filter.put(addressPIDKey(property.getAddressPID(), recordDate));
+        } else {
+            filter.put(addressKey(property.getAddress(), property.getState(), property.getLocality(), recordDate));
+        }
+    }
+
+    /**
+     * Ensure the keys for the given date have been loaded, loading them if
+     * necessary.
+     *
+     * @param recordDate the date to load keys for
+     * @return the filter
+     */
+    private BloomFilter load(final LocalDate recordDate) {
+        if (filter == null) {
+            synchronized (this) {
+                if (filter == null) {
+                    filter = new BloomFilter(expectedEntries, falsePositiveProbability);
+                }
+            }
+        }
+
+        if (!loadedDates.contains(recordDate)) {
+            synchronized (this) {
+                if (!loadedDates.contains(recordDate)) {
+                    final BloomFilter target = filter;
+                    final LocalDate date = recordDate;
+                    final int[] count = new int[1];
+
+                    jdbcTemplate.query(SELECT_PROPERTY_KEYS, new Object[]{date.toDate()}, new RowCallbackHandler() {
+                        @Override
+                        public void processRow(final ResultSet rs) throws SQLException {
+                            String addressPID = rs.getString(1);
+
+                            if (addressPID != null) {
+                                target.put(addressPIDKey(addressPID, date));
+                            } else {
+                                target.put(addressKey(rs.getString(2), rs.getString(3), rs.getString(4), date));
+                            }
+
+                            count[0]++;
+                        }
+                    });
+
+                    loadedDates.add(date);
+
+                    if (logger.isInfoEnabled()) {
+                        logger.info("Loaded [" + count[0] + "] property keys for date [" + date + "]");
+                    }
+                }
+            }
+        }
+
+        return filter;
+    }
+
+    private static long addressPIDKey(final String addressPID, final LocalDate recordDate) {
+        return Hashing.hash(Hashing.hash(ADDRESS_PID_SEED, normalize(addressPID)), dateKey(recordDate));
+    }
+
+    private static long addressKey(final String address, final String state, final String locality, final LocalDate recordDate) {
+        long hash = Hashing.hash(ADDRESS_SEED, normalize(address));
+        hash = Hashing.hash(hash, normalize(state));
+        hash = Hashing.hash(hash, normalize(locality));
+
+        return Hashing.hash(hash, dateKey(recordDate));
+    }
+
+    private static String normalize(final String value) {
+        return value != null
+                ? value.trim().toUpperCase()
+                : null;
+    }
+
+    private static long dateKey(final LocalDate date) {
+        return date.getYear() * 10000L + date.getMonthOfYear() * 100L + date.getDayOfMonth();
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.List;
+import org.joda.time.LocalDate;
+
+/**
+ * A utility for converting {@link PropertyListing} objects into JSON documents
+ * for processing on the database server.
+ *
+ * <p>
+ * Field names match the columns they are written to. Absent values are
+ * omitted rather than written as JSON {@code null}, so that
+ * {@code JSON_UNQUOTE(JSON_EXTRACT(...))} yields SQL {@code NULL} for them.
+ * Event types are converted as by {@link PropertyJdbcDao}.
+ *
+ * @author Clifford Errickson
+ */
+final class PropertyListingDocuments {
+
+    private PropertyListingDocuments() {
+    }
+
+    /**
+     * Convert the given listing into a JSON document.
+     *
+     * @param listing the listing to convert
+     * @param keyed {@code true} to include the staging key of each property
+     * as {@code prop_key} (see {@link StagingJdbcDao#propertyKey(Property)})
+     * @return the JSON document
+     */
+    static ObjectNode toDocument(final PropertyListing listing, final boolean keyed) {
+        Property property = listing.getPropertyDetails();
+
+        ObjectNode document = JsonNodeFactory.instance.objectNode();
+
+        put(document, "url", listing.getUrl());
+        put(document, "crawl_date", listing.getCrawlDate());
+
+        document.set("property", toDocument(property, keyed));
+
+        ArrayNode comparables = document.putArray("comparables");
+
+        addComparables(comparables, property.getComparablePropertiesForSale(), "for sale", keyed);
+        addComparables(comparables, property.getComparablePropertiesForRent(), "for rent", keyed);
+        addComparables(comparables, property.getComparablePropertiesSold(), "sold", keyed);
+
+        ArrayNode schools = document.putArray("schools");
+
+        for (School school : property.getNearbySchools()) {
+            ObjectNode node = schools.addObject();
+
+            put(node, "name", school.getName());
+            put(node, "website", school.getWebsite());
+            put(node, "type", school.getType());
+            put(node, "sector", school.getSector());
+            put(node, "street", school.getStreet());
+            put(node, "state", school.getState());
+            put(node, "post_code", school.getPostCode());
+            put(node, "locality", school.getLocality());
+            put(node, "distance_desc", school.getDistance());
+        }
+
+        ArrayNode history = document.putArray("history");
+
+        for (Event event : property.getHistory()) {
+            ObjectNode node = history.addObject();
+
+            node.put("event_year", event.getYear());
+            node.put("event_month", event.getMonth());
+            put(node, "event_type", PropertyJdbcDao.convertEventTypeText(event.getType()));
+            put(node, "price_desc", event.getPriceDesc());
+        }
+
+        return document;
+    }
+
+    /**
+     * Convert the given property details into a JSON document.
+     *
+     * @param property the property details to convert
+     * @param keyed {@code true} to include the staging key of the property
+     * @return the JSON document
+     */
+    static ObjectNode toDocument(final Property property, final boolean keyed) {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+
+        if (keyed) {
+            node.put("prop_key", StagingJdbcDao.propertyKey(property));
+        }
+
+        put(node, "gnaf_addr_dtl_pid", property.getAddressPID());
+        put(node, "address", property.getAddress());
+        put(node, "state", property.getState());
+        put(node, "post_code", property.getPostCode());
+        put(node, "locality", property.getLocality());
+        put(node, "property_type", property.getPropertyType());
+        put(node, "bedrooms", property.getBedrooms());
+        put(node, "bathrooms", property.getBathrooms());
+        put(node, "car_spots", property.getCarSpots());
+        put(node, "land_size_desc", property.getLandSizeDesc());
+        put(node, "bldg_size_desc", property.getBuildingSizeDesc());
+        put(node, "council_area", property.getCouncilArea());
+        put(node, "price_desc", property.getPriceDesc());
+        put(node, "price_estimate_from", property.getPriceEstimateFrom());
+        put(node, "price_estimate_to", property.getPriceEstimateTo());
+        put(node, "price_estimate_confidence", property.getPriceEstimateConfidence());
+        put(node, "sale_method", property.getSaleMethod());
+        put(node, "sold_date", property.getSoldDate());
+        put(node, "avail_for_lease", property.getAvailableForLeaseDate());
+        put(node, "year_built", property.getYearBuilt());
+        put(node, "block_code", property.getBlockCode());
+
+        return node;
+    }
+
+    private static void addComparables(final ArrayNode comparables, final List<Property> properties, final String comparisonType, final boolean keyed) {
+        for (Property property : properties) {
+            ObjectNode node = comparables.addObject();
+
+            node.put("comparison_type", comparisonType);
+            node.set("property", toDocument(property, keyed));
+        }
+    }
+
+    private static void put(final ObjectNode node, final String fieldName, final String value) {
+        if (value != null) {
+            node.put(fieldName, value);
+        }
+    }
+
+    private static void put(final ObjectNode node, final String fieldName, final Integer value) {
+        if (value != null) {
+            node.put(fieldName, value);
+        }
+    }
+
+    private static void put(final ObjectNode node, final String fieldName, final LocalDate value) {
+        if (value != null) {
+            node.put(fieldName, value.toString());
+        }
+    }
+
+}
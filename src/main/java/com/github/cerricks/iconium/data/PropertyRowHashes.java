@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.github.cerricks.iconium.util.Clearable;
+import com.github.cerricks.iconium.util.Hashing;
+import com.github.cerricks.iconium.util.LongLongHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds a hash of the updatable column values last written for each
+ * {@link Property}, by property ID, so that updates that would not change a
+ * property row can be skipped.
+ *
+ * <p>
+ * Hashes are held in a {@link LongLongHashMap}. When the number of properties
+ * exceeds {@link #setMaxEntries(int) setMaxEntries(int)} the hashes are
+ * cleared, bounding the memory used on very large loads. The hashes are also
+ * cleared on rollback, as those recorded since the last commit may refer to
+ * values that were not saved.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class PropertyRowHashes implements Clearable {
+
+    private final LongLongHashMap hashes = new LongLongHashMap();
+
+    private boolean enabled = false;
+    private int maxEntries = 5000000;
+
+    public PropertyRowHashes() {
+    }
+
+    /**
+     * Configure whether hashes are held. When disabled, no property is ever
+     * reported as unchanged.
+     *
+     * @param enabled {@code true} to hold hashes, {@code false} otherwise.
+     */
+    @Value("${property.update.dirty.check.enabled:false}")
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Set the maximum number of hashes held before they are cleared.
+     *
+     * @param maxEntries the maximum number of hashes held before they are
+     * cleared.
+     */
+    @Value("${property.update.dirty.check.max.entries:5000000}")
+    public void setMaxEntries(final int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Determine if the given hash was the last written for the given
+     * property.
+     *
+     * @param propertyId the ID of the property
+     * @param rowHash hash of the values to be written (see
+     * {@link #hash(Property)})
+     * @return {@code true} if the values are known to be unchanged,
+     * {@code false} otherwise.
+     */
+    public synchronized boolean isUnchanged(final long propertyId, final long rowHash) {
+        return enabled && hashes.containsEntry(propertyId, rowHash);
+    }
+
+    /**
+     * Record the given hash as the last written for the given property.
+     *
+     * @param propertyId the ID of the property
+     * @param rowHash hash of the values written (see {@link #hash(Property)})
+     */
+    public synchronized void put(final long propertyId, final long rowHash) {
+        if (!enabled) {
+            return;
+        }
+
+        if (hashes.size() >= maxEntries) {
+            hashes.clear();
+        }
+
+        hashes.put(propertyId, rowHash);
+    }
+
+    @Override
+    public synchronized void clear() {
+        hashes.clear();
+    }
+
+    /**
+     * Compute a hash of the property values written by
+     * {@link PropertyDao#updateProperty(Property)}.
+     *
+     * @param property property details
+     * @return hash of the updatable property values
+     */
+    public static long hash(final Property property) {
+        long hash = Hashing.SEED;
+
+        hash = Hashing.hash(hash, property.getPropertyType());
+        hash = Hashing.hash(hash, property.getBedrooms());
+        hash = Hashing.hash(hash, property.getBathrooms());
+        hash = Hashing.hash(hash, property.getCarSpots());
+        hash = Hashing.hash(hash, property.getLandSizeDesc());
+        hash = Hashing.hash(hash, property.getBuildingSizeDesc());
+        hash = Hashing.hash(hash, property.getCouncilArea());
+        hash = Hashing.hash(hash, property.getPriceEstimateFrom());
+        hash = Hashing.hash(hash, property.getPriceEstimateTo());
+        hash = Hashing.hash(hash, property.getPriceEstimateConfidence());
+        hash = Hashing.hash(hash, property.getYearBuilt());
+        hash = Hashing.hash(hash, property.getBlockCode());
+
+        return hash;
+    }
+
+}
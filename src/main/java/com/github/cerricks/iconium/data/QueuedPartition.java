@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+/**
+ * Contains details on a partition claimed from
+ * {@code rea.batch_partition_queue}.
+ *
+ * @author Clifford Errickson
+ */
+public class QueuedPartition {
+
+    private long jobExecutionId;
+    private long stepExecutionId;
+    private String stepName;
+    private String claimToken;
+
+    public QueuedPartition() {
+    }
+
+    public QueuedPartition(final long jobExecutionId, final long stepExecutionId, final String stepName, final String claimToken) {
+        this.jobExecutionId = jobExecutionId;
+        this.stepExecutionId = stepExecutionId;
+        this.stepName = stepName;
+        this.claimToken = claimToken;
+    }
+
+    /**
+     * Get the ID of the job execution the partition belongs to.
+     *
+     * @return the ID of the job execution the partition belongs to.
+     */
+    public long getJobExecutionId() {
+        return jobExecutionId;
+    }
+
+    public void setJobExecutionId(long jobExecutionId) {
+        this.jobExecutionId = jobExecutionId;
+    }
+
+    /**
+     * Get the ID of the step execution of the partition.
+     *
+     * @return the ID of the step execution of the partition.
+     */
+    public long getStepExecutionId() {
+        return stepExecutionId;
+    }
+
+    public void setStepExecutionId(long stepExecutionId) {
+        this.stepExecutionId = stepExecutionId;
+    }
+
+    /**
+     * Get the name of the step execution of the partition, e.g.
+     * {@code load:NSW}.
+     *
+     * @return the name of the step execution of the partition.
+     */
+    public String getStepName() {
+        return stepName;
+    }
+
+    public void setStepName(String stepName) {
+        this.stepName = stepName;
+    }
+
+    /**
+     * Get the token identifying the claim of the partition, used to renew
+     * and finish the claim.
+     *
+     * @return the token identifying the claim of the partition.
+     */
+    public String getClaimToken() {
+        return claimToken;
+    }
+
+    public void setClaimToken(String claimToken) {
+        this.claimToken = claimToken;
+    }
+
+}
@@ -28,7 +28,7 @@ public interface SchoolDao {
      * Add school details.
      *
      * @param school school details
-     * @return auto-generated school id number
+     * @return allocated or auto-generated school id number
      * @throws DataAccessException on data access error
      */
     Long addSchool(School school)
@@ -40,9 +40,10 @@ public interface SchoolDao {
      * @param propertyId property internal id number
      * @param schoolId school internal id number
      * @param distance relative distance
+     * @return the number of affected rows
      * @throws DataAccessException on data access error
      */
-    void addSchoolDistance(Long propertyId, Long schoolId, String distance)
+    int addSchoolDistance(Long propertyId, Long schoolId, String distance)
             throws DataAccessException;
 
     /**
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.github.cerricks.iconium.util.Clearable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the IDs of all schools in {@code rea.schools}, by name, type and
+ * sector, so that school lookups never reach the database.
+ *
+ * <p>
+ * The table is loaded in full the first time a school is looked up and kept
+ * current as schools are added. As the schools added since the last commit
+ * may not have been saved, the map is discarded on rollback and loaded again
+ * on the next lookup.
+ *
+ * <p>
+ * Keys are upper-cased and stripped of trailing spaces to match the
+ * case-insensitive comparison made by the database.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class SchoolIdPreload implements Clearable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchoolIdPreload.class);
+
+    /**
+     * SQL: Select all school ids.
+     */
+    private static final String SELECT_SCHOOL_IDS
+            = "SELECT "
+            + "  school_id, "
+            + "  name, "
+            + "  type, "
+            + "  sector "
+            + "FROM "
+            + "  rea.schools "
+            + "ORDER BY "
+            + "  school_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentMap<String, Long> schoolIds = new ConcurrentHashMap<>();
+
+    private boolean enabled = false;
+
+    private volatile boolean loaded = false;
+
+    /**
+     * Creates instance of a {@code SchoolIdPreload}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     */
+    @Autowired
+    public SchoolIdPreload(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Configure whether the schools are preloaded.
+     *
+     * @param enabled {@code true} to preload the schools, {@code false}
+     * otherwise.
+     */
+    @Value("${school.preload.enabled:false}")
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Determine if the schools are preloaded.
+     *
+     * @return {@code true} if the schools are preloaded, {@code false}
+     * otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Retrieve the ID of the school matching the given criteria, loading the
+     * schools if necessary.
+     *
+     * @param name school name
+     * @param type school type
+     * @param sector school sector
+     * @return the ID of the school or {@code null} if not found.
+     * @throws DataAccessException on data access error
+     */
+    public Long findSchoolId(final String name, final String type, final String sector)
+            throws DataAccessException {
+        if (name == null || type == null || sector == null) {
+            return null; // never matched by the database
+        }
+
+        load();
+
+        return schoolIds.get(key(name, type, sector));
+    }
+
+    /**
+     * Record the ID of an added school.
+     *
+     * @param school the school added
+     * @param schoolId the ID of the school
+     */
+    public void addSchool(final School school, final Long schoolId) {
+        if (!enabled || !loaded || schoolId == null
+                || school.getName() == null || school.getType() == null || school.getSector() == null) {
+            return;
+        }
+
+        schoolIds.putIfAbsent(key(school.getName(), school.getType(), school.getSector()), schoolId);
+    }
+
+    /**
+     * Discard the loaded schools, so that they are loaded again on the next
+     * lookup.
+     */
+    @Override
+    public void clear() {
+        synchronized (this) {
+            loaded = false;
+            schoolIds.clear();
+        }
+    }
+
+    private void load() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    jdbcTemplate.query(SELECT_SCHOOL_IDS, new RowCallbackHandler() {
+                        @Override
+                        public void processRow(final ResultSet rs) throws SQLException {
+                            String name = rs.getString(2);
+                            String type = rs.getString(3);
+                            String sector = rs.getString(4);
+
+                            if (name != null && type != null && sector != null) {
+                                schoolIds.putIfAbsent(key(name, type, sector), rs.getLong(1));
+                            }
+                        }
+                    });
+
+                    loaded = true;
+
+                    if (logger.isInfoEnabled()) {
+                        logger.info("Loaded [" + schoolIds.size() + "] schools");
+                    }
+                }
+            }
+        }
+    }
+
+    private static String key(final String name, final String type, final String sector) {
+        return normalize(name) + '\u0000' + normalize(type) + '\u0000' + normalize(sector);
+    }
+
+    private static String normalize(final String value) {
+        int end = value.length();
+
+        while (end > 0 && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+
+        return value.substring(0, end).toUpperCase(Locale.ROOT);
+    }
+
+}
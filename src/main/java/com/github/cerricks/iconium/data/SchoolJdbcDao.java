@@ -22,6 +22,7 @@ import java.sql.Statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataAccessException;
@@ -44,6 +45,11 @@ public class SchoolJdbcDao implements SchoolDao {
 
     private static final Logger logger = LoggerFactory.getLogger(SchoolJdbcDao.class);
 
+    /**
+     * Name of the cache of school IDs by name, type and sector.
+     */
+    public static final String SCHOOL_ID_CACHE = "school_id_cache";
+
     /**
      * SQL: Insert school details.
      */
@@ -61,6 +67,24 @@ public class SchoolJdbcDao implements SchoolDao {
             + "VALUES "
             + "  (?, ?, ?, ?, ?)";
 
+    /**
+     * SQL: Insert school details with a client-allocated ID.
+     */
+    private static final String INSERT_SCHOOL_WITH_ID
+            = "INSERT "
+            + "INTO "
+            + "  rea.schools "
+            + "  ( "
+            + "	   school_id, "
+            + "	   name, "
+            + "	   website, "
+            + "	   type, "
+            + "	   sector, "
+            + "	   gnaf_street_locality_pid "
+            + "  ) "
+            + "VALUES "
+            + "  (?, ?, ?, ?, ?, ?)";
+
     /**
      * SQL: Insert school distance relative to given property.
      */
@@ -75,6 +99,13 @@ public class SchoolJdbcDao implements SchoolDao {
             + "VALUES "
             + "  (?, ?, ?)";
 
+    /**
+     * SQL: Insert school distance relative to given property, ignoring
+     * duplicates.
+     */
+    private static final String INSERT_IGNORE_SCHOOL_DISTANCE
+            = "INSERT IGNORE " + INSERT_SCHOOL_DISTANCE.substring("INSERT ".length());
+
     /**
      * SQL: Select school id matching given criteria.
      */
@@ -90,6 +121,14 @@ public class SchoolJdbcDao implements SchoolDao {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private IdAllocator idAllocator;
+
+    private SchoolIdPreload schoolIdPreload;
+
+    private CacheStatistics cacheStatistics;
+
+    private boolean ignoreDuplicates = false;
+
     /**
      * Creates instance of a {@code SchoolJdbcDao}.
      *
@@ -100,14 +139,63 @@ public class SchoolJdbcDao implements SchoolDao {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    /**
+     * Configure whether school distance records are written using
+     * {@code INSERT IGNORE}. When enabled, a duplicate record is reported as
+     * zero affected rows rather than by throwing a
+     * {@code DuplicateKeyException}.
+     *
+     * @param ignoreDuplicates {@code true} to ignore duplicate records,
+     * {@code false} otherwise.
+     */
+    @Value("${batch.write.idempotent:false}")
+    public void setIgnoreDuplicates(final boolean ignoreDuplicates) {
+        this.ignoreDuplicates = ignoreDuplicates;
+    }
+
+    /**
+     * Configure the {@link IdAllocator} used to allocate school IDs on the
+     * client when enabled.
+     *
+     * @param idAllocator the {@link IdAllocator} used to allocate school IDs.
+     */
+    @Autowired
+    public void setIdAllocator(final IdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * Configure the {@link SchoolIdPreload} used to look up school IDs in
+     * memory when enabled.
+     *
+     * @param schoolIdPreload the {@link SchoolIdPreload} used to look up
+     * school IDs.
+     */
+    @Autowired
+    public void setSchoolIdPreload(final SchoolIdPreload schoolIdPreload) {
+        this.schoolIdPreload = schoolIdPreload;
+    }
+
+    /**
+     * Configure the {@link CacheStatistics} in which loads of cached values
+     * are recorded.
+     *
+     * @param cacheStatistics the {@link CacheStatistics} in which loads of
+     * cached values are recorded.
+     */
+    @Autowired
+    public void setCacheStatistics(final CacheStatistics cacheStatistics) {
+        this.cacheStatistics = cacheStatistics;
+    }
+
     /**
      * Add school details.
      *
      * @param school school details
-     * @return auto-generated school id number
+     * @return allocated or auto-generated school id number
      * @throws DataAccessException on data access error
      */
-    @CachePut(value = "school_id_cache", key = "{#school.name, #school.type, #school.sector}", unless = "#result == null")
+    @CachePut(value = SCHOOL_ID_CACHE, key = "{#school.name, #school.type, #school.sector}", unless = "#result == null")
     @Override
     public Long addSchool(final School school)
             throws DataAccessException {
@@ -121,6 +209,16 @@ public class SchoolJdbcDao implements SchoolDao {
             school.getStreetLocalityPID()
         };
 
+        if (idAllocator.isEnabled()) {
+            long schoolId = idAllocator.nextId(IdAllocator.SCHOOLS);
+
+            jdbcTemplate.update(INSERT_SCHOOL_WITH_ID, schoolId, school.getName(), school.getWebsite(), school.getType(), school.getSector(), school.getStreetLocalityPID());
+
+            schoolIdPreload.addSchool(school, schoolId);
+
+            return schoolId;
+        }
+
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(new PreparedStatementCreator() {
@@ -134,7 +232,11 @@ public class SchoolJdbcDao implements SchoolDao {
             }
         }, keyHolder);
 
-        return keyHolder.getKey().longValue();
+        Long schoolId = keyHolder.getKey().longValue();
+
+        schoolIdPreload.addSchool(school, schoolId);
+
+        return schoolId;
     }
 
     /**
@@ -143,10 +245,11 @@ public class SchoolJdbcDao implements SchoolDao {
      * @param propertyId property internal id number
      * @param schoolId school internal id number
      * @param distance relative distance
+     * @return the number of affected rows
      * @throws DataAccessException on data access error
      */
     @Override
-    public void addSchoolDistance(final Long propertyId, final Long schoolId, final String distance)
+    public int addSchoolDistance(final Long propertyId, final Long schoolId, final String distance)
             throws DataAccessException {
         Assert.notNull(propertyId);
         Assert.notNull(schoolId);
@@ -157,36 +260,50 @@ public class SchoolJdbcDao implements SchoolDao {
             distance
         };
 
-        jdbcTemplate.update(INSERT_SCHOOL_DISTANCE, parameters);
+        return jdbcTemplate.update(ignoreDuplicates ? INSERT_IGNORE_SCHOOL_DISTANCE : INSERT_SCHOOL_DISTANCE, parameters);
     }
 
     /**
      * Retrieve the id number of an existing school matching the given criteria.
      *
+     * <p>
+     * If schools are preloaded (see {@link SchoolIdPreload}), the school is
+     * looked up in memory only.
+     *
      * @param name school name
      * @param type school type
      * @param sector school sector
      * @return the id number of the school OR {@code NULL} if not found.
      * @throws DataAccessException on data access error
      */
-    @Cacheable(value = "school_id_cache", key = "{#name, #type, #sector}", unless = "#result == null")
+    @Cacheable(value = SCHOOL_ID_CACHE, key = "{#name, #type, #sector}", unless = "#result == null")
     @Override
     public Long findSchoolId(final String name, final String type, final String sector)
             throws DataAccessException {
-        Object[] parameters = new Object[]{
-            name,
-            type,
-            sector
-        };
+        long start = System.nanoTime();
 
         try {
-            return jdbcTemplate.queryForObject(SELECT_SCHOOL_ID, parameters, Long.class);
-        } catch (EmptyResultDataAccessException ex) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Unable to match school for: name [" + name + "], type [" + type + "], and sector [" + sector + "]");
+            if (schoolIdPreload.isEnabled()) {
+                return schoolIdPreload.findSchoolId(name, type, sector);
             }
 
-            return null;
+            Object[] parameters = new Object[]{
+                name,
+                type,
+                sector
+            };
+
+            try {
+                return jdbcTemplate.queryForObject(SELECT_SCHOOL_ID, parameters, Long.class);
+            } catch (EmptyResultDataAccessException ex) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Unable to match school for: name [" + name + "], type [" + type + "], and sector [" + sector + "]");
+                }
+
+                return null;
+            }
+        } finally {
+            cacheStatistics.recordLoad(SCHOOL_ID_CACHE, System.nanoTime() - start);
         }
     }
 
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import java.util.List;
+import java.util.Map;
+import org.springframework.dao.DataAccessException;
+
+/**
+ * A data access object interface for staging {@link PropertyListing} objects
+ * in unindexed staging tables and merging them into the {@code rea.*} tables
+ * with set-based SQL.
+ *
+ * @author Clifford Errickson
+ */
+public interface StagingDao {
+
+    /**
+     * Append the given listings, flattened, to the staging tables.
+     *
+     * @param loadId identifies the rows staged by a single load
+     * @param listings the listings to stage
+     * @throws DataAccessException on data access error
+     */
+    void stage(long loadId, List<? extends PropertyListing> listings)
+            throws DataAccessException;
+
+    /**
+     * Append the given listings to the staging tables by sending them as a
+     * single JSON array, shredded on the server with {@code JSON_TABLE}.
+     *
+     * @param loadId identifies the rows staged by a single load
+     * @param listings the listings to stage
+     * @throws DataAccessException on data access error
+     */
+    void stageDocuments(long loadId, List<? extends PropertyListing> listings)
+            throws DataAccessException;
+
+    /**
+     * Resolve address PIDs and IDs of the rows staged by the given load and
+     * merge them into the {@code rea.*} tables.
+     *
+     * @param loadId identifies the rows staged by a single load
+     * @return the number of rows inserted, by table name.
+     * @throws DataAccessException on data access error
+     */
+    Map<String, Integer> merge(long loadId)
+            throws DataAccessException;
+
+    /**
+     * Count the listings staged by the given load whose address PID could not
+     * be resolved. Their data acquisition details are not merged, as a data
+     * acquisition record requires an address PID.
+     *
+     * @param loadId identifies the rows staged by a single load
+     * @return the number of listings without an address PID.
+     * @throws DataAccessException on data access error
+     */
+    int countUnresolvedListings(long loadId)
+            throws DataAccessException;
+
+    /**
+     * Delete the rows staged by the given load.
+     *
+     * @param loadId identifies the rows staged by a single load
+     * @throws DataAccessException on data access error
+     */
+    void clear(long loadId)
+            throws DataAccessException;
+
+}
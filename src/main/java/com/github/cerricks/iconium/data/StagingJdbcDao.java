@@ -0,0 +1,1148 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.DigestUtils;
+
+/**
+ * A data access object JDBC implementation for staging
+ * {@link PropertyListing} objects and merging them into the {@code rea.*}
+ * tables.
+ *
+ * <p>
+ * Staged properties are identified by a key derived from their address PID,
+ * when known, or their raw address (see {@link #propertyKey(Property)}). The
+ * merge builds {@code rea.stg_property_ids}, holding one row per distinct key,
+ * resolves the address PID and property ID of each key with joins against the
+ * GNAF views and {@code rea.property_details}, and inserts properties that do
+ * not exist yet, one per address PID (or address) and date. Link rows are then
+ * inserted by joining the staging tables to the resolved IDs.
+ *
+ * <p>
+ * Listings are staged either with batched inserts or, on MySQL 8.0.4 or
+ * later, by sending a whole chunk as a single JSON array that is shredded into
+ * the staging tables with {@code JSON_TABLE}.
+ *
+ * @author Clifford Errickson
+ */
+@Repository
+public class StagingJdbcDao implements StagingDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(StagingJdbcDao.class);
+
+    /**
+     * SQL: Stage property details.
+     */
+    private static final String INSERT_STG_PROPERTY
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_properties "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    is_listing, "
+            + "    gnaf_addr_dtl_pid, "
+            + "    state, "
+            + "    post_code, "
+            + "    locality, "
+            + "    address, "
+            + "    property_type, "
+            + "    bedrooms, "
+            + "    bathrooms, "
+            + "    car_spots, "
+            + "    land_size_desc, "
+            + "    bldg_size_desc, "
+            + "    council_area, "
+            + "    price_desc, "
+            + "    price_estimate_from, "
+            + "    price_estimate_to, "
+            + "    price_estimate_confidence, "
+            + "    sale_method, "
+            + "    sold_date, "
+            + "    avail_for_lease, "
+            + "    year_built, "
+            + "    block_code "
+            + "  ) "
+            + "  VALUES "
+            + "  (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * SQL: Stage comparable property.
+     */
+    private static final String INSERT_STG_COMPARABLE_PROPERTY
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_comparable_properties "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    comparable_key, "
+            + "    comparison_type, "
+            + "    compared_on "
+            + "  ) "
+            + "  VALUES "
+            + "  (?, ?, ?, ?, ?)";
+
+    /**
+     * SQL: Stage property history.
+     */
+    private static final String INSERT_STG_EVENT
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_property_sale_rent_hist "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    event_year, "
+            + "    event_month, "
+            + "    event_type, "
+            + "    price_desc "
+            + "  ) "
+            + "  VALUES "
+            + "  (?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * SQL: Stage school details and distance.
+     */
+    private static final String INSERT_STG_SCHOOL_DISTANCE
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_schools_near_props "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    name, "
+            + "    website, "
+            + "    type, "
+            + "    sector, "
+            + "    street, "
+            + "    state, "
+            + "    post_code, "
+            + "    locality, "
+            + "    distance_desc "
+            + "  ) "
+            + "  VALUES "
+            + "  (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * SQL: Stage data acquisition details.
+     */
+    private static final String INSERT_STG_DATA_ACQUISITION
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_data_acquisition "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    url, "
+            + "    acquired_on "
+            + "  ) "
+            + "  VALUES "
+            + "  (?, ?, ?, ?, ?)";
+
+    /**
+     * SQL: Stage listed property details from a JSON array of listings.
+     */
+    private static final String INSERT_STG_PROPERTY_FROM_JSON
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_properties "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    is_listing, "
+            + "    gnaf_addr_dtl_pid, "
+            + "    state, "
+            + "    post_code, "
+            + "    locality, "
+            + "    address, "
+            + "    property_type, "
+            + "    bedrooms, "
+            + "    bathrooms, "
+            + "    car_spots, "
+            + "    land_size_desc, "
+            + "    bldg_size_desc, "
+            + "    council_area, "
+            + "    price_desc, "
+            + "    price_estimate_from, "
+            + "    price_estimate_to, "
+            + "    price_estimate_confidence, "
+            + "    sale_method, "
+            + "    sold_date, "
+            + "    avail_for_lease, "
+            + "    year_built, "
+            + "    block_code "
+            + "  ) "
+            + "SELECT "
+            + "  ?, "
+            + "  j.prop_key, "
+            + "  j.as_at, "
+            + "  1, "
+            + "  j.gnaf_addr_dtl_pid, "
+            + "  j.state, "
+            + "  j.post_code, "
+            + "  j.locality, "
+            + "  j.address, "
+            + "  j.property_type, "
+            + "  j.bedrooms, "
+            + "  j.bathrooms, "
+            + "  j.car_spots, "
+            + "  j.land_size_desc, "
+            + "  j.bldg_size_desc, "
+            + "  j.council_area, "
+            + "  j.price_desc, "
+            + "  j.price_estimate_from, "
+            + "  j.price_estimate_to, "
+            + "  j.price_estimate_confidence, "
+            + "  j.sale_method, "
+            + "  j.sold_date, "
+            + "  j.avail_for_lease, "
+            + "  j.year_built, "
+            + "  j.block_code "
+            + "FROM "
+            + "  JSON_TABLE( "
+            + "    ?, "
+            + "    '$[*]' COLUMNS ( "
+            + "      as_at                     DATE         PATH '$.crawl_date', "
+            + "      prop_key                  CHAR(32)     PATH '$.property.prop_key', "
+            + "      gnaf_addr_dtl_pid         VARCHAR(15)  PATH '$.property.gnaf_addr_dtl_pid', "
+            + "      state                     VARCHAR(3)   PATH '$.property.state', "
+            + "      post_code                 VARCHAR(4)   PATH '$.property.post_code', "
+            + "      locality                  VARCHAR(100) PATH '$.property.locality', "
+            + "      address                   VARCHAR(255) PATH '$.property.address', "
+            + "      property_type             VARCHAR(100) PATH '$.property.property_type', "
+            + "      bedrooms                  INT          PATH '$.property.bedrooms', "
+            + "      bathrooms                 INT          PATH '$.property.bathrooms', "
+            + "      car_spots                 INT          PATH '$.property.car_spots', "
+            + "      land_size_desc            VARCHAR(100) PATH '$.property.land_size_desc', "
+            + "      bldg_size_desc            VARCHAR(100) PATH '$.property.bldg_size_desc', "
+            + "      council_area              VARCHAR(100) PATH '$.property.council_area', "
+            + "      price_desc                VARCHAR(255) PATH '$.property.price_desc', "
+            + "      price_estimate_from       INT          PATH '$.property.price_estimate_from', "
+            + "      price_estimate_to         INT          PATH '$.property.price_estimate_to', "
+            + "      price_estimate_confidence VARCHAR(50)  PATH '$.property.price_estimate_confidence', "
+            + "      sale_method               VARCHAR(100) PATH '$.property.sale_method', "
+            + "      sold_date                 DATE         PATH '$.property.sold_date', "
+            + "      avail_for_lease           DATE         PATH '$.property.avail_for_lease', "
+            + "      year_built                VARCHAR(50)  PATH '$.property.year_built', "
+            + "      block_code                VARCHAR(100) PATH '$.property.block_code' "
+            + "    ) "
+            + "  ) j";
+
+    /**
+     * SQL: Stage comparable property details from a JSON array of listings.
+     */
+    private static final String INSERT_STG_COMPARABLE_PROPERTY_DETAILS_FROM_JSON
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_properties "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    is_listing, "
+            + "    gnaf_addr_dtl_pid, "
+            + "    state, "
+            + "    post_code, "
+            + "    locality, "
+            + "    address, "
+            + "    property_type, "
+            + "    bedrooms, "
+            + "    bathrooms, "
+            + "    car_spots, "
+            + "    land_size_desc, "
+            + "    bldg_size_desc, "
+            + "    council_area, "
+            + "    price_desc, "
+            + "    price_estimate_from, "
+            + "    price_estimate_to, "
+            + "    price_estimate_confidence, "
+            + "    sale_method, "
+            + "    sold_date, "
+            + "    avail_for_lease, "
+            + "    year_built, "
+            + "    block_code "
+            + "  ) "
+            + "SELECT "
+            + "  ?, "
+            + "  j.prop_key, "
+            + "  j.as_at, "
+            + "  0, "
+            + "  j.gnaf_addr_dtl_pid, "
+            + "  j.state, "
+            + "  j.post_code, "
+            + "  j.locality, "
+            + "  j.address, "
+            + "  j.property_type, "
+            + "  j.bedrooms, "
+            + "  j.bathrooms, "
+            + "  j.car_spots, "
+            + "  j.land_size_desc, "
+            + "  j.bldg_size_desc, "
+            + "  j.council_area, "
+            + "  j.price_desc, "
+            + "  j.price_estimate_from, "
+            + "  j.price_estimate_to, "
+            + "  j.price_estimate_confidence, "
+            + "  j.sale_method, "
+            + "  j.sold_date, "
+            + "  j.avail_for_lease, "
+            + "  j.year_built, "
+            + "  j.block_code "
+            + "FROM "
+            + "  JSON_TABLE( "
+            + "    ?, "
+            + "    '$[*]' COLUMNS ( "
+            + "      as_at DATE PATH '$.crawl_date', "
+            + "      NESTED PATH '$.comparables[*]' COLUMNS ( "
+            + "        prop_key                  CHAR(32)     PATH '$.property.prop_key', "
+            + "        gnaf_addr_dtl_pid         VARCHAR(15)  PATH '$.property.gnaf_addr_dtl_pid', "
+            + "        state                     VARCHAR(3)   PATH '$.property.state', "
+            + "        post_code                 VARCHAR(4)   PATH '$.property.post_code', "
+            + "        locality                  VARCHAR(100) PATH '$.property.locality', "
+            + "        address                   VARCHAR(255) PATH '$.property.address', "
+            + "        property_type             VARCHAR(100) PATH '$.property.property_type', "
+            + "        bedrooms                  INT          PATH '$.property.bedrooms', "
+            + "        bathrooms                 INT          PATH '$.property.bathrooms', "
+            + "        car_spots                 INT          PATH '$.property.car_spots', "
+            + "        land_size_desc            VARCHAR(100) PATH '$.property.land_size_desc', "
+            + "        bldg_size_desc            VARCHAR(100) PATH '$.property.bldg_size_desc', "
+            + "        council_area              VARCHAR(100) PATH '$.property.council_area', "
+            + "        price_desc                VARCHAR(255) PATH '$.property.price_desc', "
+            + "        price_estimate_from       INT          PATH '$.property.price_estimate_from', "
+            + "        price_estimate_to         INT          PATH '$.property.price_estimate_to', "
+            + "        price_estimate_confidence VARCHAR(50)  PATH '$.property.price_estimate_confidence', "
+            + "        sale_method               VARCHAR(100) PATH '$.property.sale_method', "
+            + "        sold_date                 DATE         PATH '$.property.sold_date', "
+            + "        avail_for_lease           DATE         PATH '$.property.avail_for_lease', "
+            + "        year_built                VARCHAR(50)  PATH '$.property.year_built', "
+            + "        block_code                VARCHAR(100) PATH '$.property.block_code' "
+            + "      ) "
+            + "    ) "
+            + "  ) j "
+            + "WHERE "
+            + "  j.prop_key IS NOT NULL";
+
+    /**
+     * SQL: Stage comparable properties from a JSON array of listings.
+     */
+    private static final String INSERT_STG_COMPARABLE_PROPERTY_FROM_JSON
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_comparable_properties "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    comparable_key, "
+            + "    comparison_type, "
+            + "    compared_on "
+            + "  ) "
+            + "SELECT "
+            + "  ?, "
+            + "  j.prop_key, "
+            + "  j.comparable_key, "
+            + "  j.comparison_type, "
+            + "  j.as_at "
+            + "FROM "
+            + "  JSON_TABLE( "
+            + "    ?, "
+            + "    '$[*]' COLUMNS ( "
+            + "      as_at    DATE     PATH '$.crawl_date', "
+            + "      prop_key CHAR(32) PATH '$.property.prop_key', "
+            + "      NESTED PATH '$.comparables[*]' COLUMNS ( "
+            + "        comparable_key  CHAR(32)    PATH '$.property.prop_key', "
+            + "        comparison_type VARCHAR(20) PATH '$.comparison_type' "
+            + "      ) "
+            + "    ) "
+            + "  ) j "
+            + "WHERE "
+            + "  j.comparable_key IS NOT NULL";
+
+    /**
+     * SQL: Stage property history from a JSON array of listings.
+     */
+    private static final String INSERT_STG_EVENT_FROM_JSON
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_property_sale_rent_hist "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    event_year, "
+            + "    event_month, "
+            + "    event_type, "
+            + "    price_desc "
+            + "  ) "
+            + "SELECT "
+            + "  ?, "
+            + "  j.prop_key, "
+            + "  j.as_at, "
+            + "  j.event_year, "
+            + "  j.event_month, "
+            + "  j.event_type, "
+            + "  j.price_desc "
+            + "FROM "
+            + "  JSON_TABLE( "
+            + "    ?, "
+            + "    '$[*]' COLUMNS ( "
+            + "      as_at    DATE     PATH '$.crawl_date', "
+            + "      prop_key CHAR(32) PATH '$.property.prop_key', "
+            + "      NESTED PATH '$.history[*]' COLUMNS ( "
+            + "        event_row   FOR ORDINALITY, "
+            + "        event_year  INT          PATH '$.event_year', "
+            + "        event_month INT          PATH '$.event_month', "
+            + "        event_type  VARCHAR(50)  PATH '$.event_type', "
+            + "        price_desc  VARCHAR(255) PATH '$.price_desc' "
+            + "      ) "
+            + "    ) "
+            + "  ) j "
+            + "WHERE "
+            + "  j.event_row IS NOT NULL";
+
+    /**
+     * SQL: Stage school details and distance from a JSON array of listings.
+     */
+    private static final String INSERT_STG_SCHOOL_DISTANCE_FROM_JSON
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_schools_near_props "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    name, "
+            + "    website, "
+            + "    type, "
+            + "    sector, "
+            + "    street, "
+            + "    state, "
+            + "    post_code, "
+            + "    locality, "
+            + "    distance_desc "
+            + "  ) "
+            + "SELECT "
+            + "  ?, "
+            + "  j.prop_key, "
+            + "  j.as_at, "
+            + "  j.name, "
+            + "  j.website, "
+            + "  j.type, "
+            + "  j.sector, "
+            + "  j.street, "
+            + "  j.state, "
+            + "  j.post_code, "
+            + "  j.locality, "
+            + "  j.distance_desc "
+            + "FROM "
+            + "  JSON_TABLE( "
+            + "    ?, "
+            + "    '$[*]' COLUMNS ( "
+            + "      as_at    DATE     PATH '$.crawl_date', "
+            + "      prop_key CHAR(32) PATH '$.property.prop_key', "
+            + "      NESTED PATH '$.schools[*]' COLUMNS ( "
+            + "        school_row    FOR ORDINALITY, "
+            + "        name          VARCHAR(255) PATH '$.name', "
+            + "        website       VARCHAR(255) PATH '$.website', "
+            + "        type          VARCHAR(100) PATH '$.type', "
+            + "        sector        VARCHAR(100) PATH '$.sector', "
+            + "        street        VARCHAR(255) PATH '$.street', "
+            + "        state         VARCHAR(3)   PATH '$.state', "
+            + "        post_code     VARCHAR(4)   PATH '$.post_code', "
+            + "        locality      VARCHAR(100) PATH '$.locality', "
+            + "        distance_desc VARCHAR(50)  PATH '$.distance_desc' "
+            + "      ) "
+            + "    ) "
+            + "  ) j "
+            + "WHERE "
+            + "  j.school_row IS NOT NULL";
+
+    /**
+     * SQL: Stage data acquisition details from a JSON array of listings.
+     */
+    private static final String INSERT_STG_DATA_ACQUISITION_FROM_JSON
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_data_acquisition "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    url, "
+            + "    acquired_on "
+            + "  ) "
+            + "SELECT "
+            + "  ?, "
+            + "  j.prop_key, "
+            + "  j.as_at, "
+            + "  j.url, "
+            + "  j.as_at "
+            + "FROM "
+            + "  JSON_TABLE( "
+            + "    ?, "
+            + "    '$[*]' COLUMNS ( "
+            + "      as_at    DATE          PATH '$.crawl_date', "
+            + "      prop_key CHAR(32)      PATH '$.property.prop_key', "
+            + "      url      VARCHAR(2048) PATH '$.url' "
+            + "    ) "
+            + "  ) j";
+
+    /**
+     * SQL: Collect one row per distinct staged property.
+     */
+    private static final String INSERT_PROPERTY_KEYS
+            = "INSERT "
+            + "INTO "
+            + "  rea.stg_property_ids "
+            + "  ( "
+            + "    load_id, "
+            + "    prop_key, "
+            + "    as_at, "
+            + "    gnaf_addr_dtl_pid, "
+            + "    state, "
+            + "    post_code, "
+            + "    locality, "
+            + "    address "
+            + "  ) "
+            + "SELECT "
+            + "  s.load_id, "
+            + "  s.prop_key, "
+            + "  s.as_at, "
+            + "  MAX(s.gnaf_addr_dtl_pid), "
+            + "  MAX(s.state), "
+            + "  MAX(s.post_code), "
+            + "  MAX(s.locality), "
+            + "  MAX(s.address) "
+            + "FROM "
+            + "  rea.stg_properties s "
+            + "WHERE "
+            + "  s.load_id = ? "
+            + "GROUP BY "
+            + "  s.load_id, "
+            + "  s.prop_key, "
+            + "  s.as_at";
+
+    /**
+     * SQL: Resolve address PIDs of staged properties in the GNAF database.
+     */
+    private static final String RESOLVE_ADDRESS_PIDS
+            = "UPDATE "
+            + "  rea.stg_property_ids k "
+            + "SET "
+            + "  k.gnaf_addr_dtl_pid = ( "
+            + "    SELECT "
+            + "      g.address_detail_pid "
+            + "    FROM "
+            + "      gnaf.addr_txt_to_id_v g "
+            + "    WHERE "
+            + "      g.address LIKE CONCAT(UPPER(k.address), '%') "
+            + "    AND g.state = k.state "
+            + "    AND (g.post_code IS NULL OR g.post_code = k.post_code) "
+            + "    AND g.locality = UPPER(k.locality) "
+            + "    LIMIT 1 "
+            + "  ) "
+            + "WHERE "
+            + "  k.load_id = ? "
+            + "AND k.gnaf_addr_dtl_pid IS NULL";
+
+    /**
+     * SQL: Resolve IDs of staged properties by address PID.
+     */
+    private static final String RESOLVE_PROPERTY_IDS_BY_ADDRESS_PID
+            = "UPDATE "
+            + "  rea.stg_property_ids k "
+            + "  JOIN rea.property_details p "
+            + "    ON p.gnaf_addr_dtl_pid = k.gnaf_addr_dtl_pid "
+            + "   AND p.as_at             = k.as_at "
+            + "SET "
+            + "  k.prop_dtls_id = p.prop_dtls_id "
+            + "WHERE "
+            + "  k.load_id = ? "
+            + "AND k.prop_dtls_id IS NULL";
+
+    /**
+     * SQL: Resolve IDs of staged properties without address PID by address.
+     */
+    private static final String RESOLVE_PROPERTY_IDS_BY_ADDRESS
+            = "UPDATE "
+            + "  rea.stg_property_ids k "
+            + "  JOIN rea.property_details p "
+            + "    ON p.address  = k.address "
+            + "   AND p.state    = k.state "
+            + "   AND (p.post_code IS NULL OR p.post_code = k.post_code) "
+            + "   AND p.locality = k.locality "
+            + "   AND p.as_at    = k.as_at "
+            + "SET "
+            + "  k.prop_dtls_id = p.prop_dtls_id "
+            + "WHERE "
+            + "  k.load_id = ? "
+            + "AND k.gnaf_addr_dtl_pid IS NULL "
+            + "AND k.prop_dtls_id IS NULL";
+
+    /**
+     * SQL: Insert properties not found, using the first staged row for each
+     * address PID (or address) and date.
+     */
+    private static final String INSERT_NEW_PROPERTIES
+            = "INSERT "
+            + "INTO "
+            + "  rea.property_details "
+            + "  ( "
+            + "    gnaf_addr_dtl_pid, "
+            + "    as_at, "
+            + "    state, "
+            + "    post_code, "
+            + "    locality, "
+            + "    address, "
+            + "    property_type, "
+            + "    bedrooms, "
+            + "    bathrooms, "
+            + "    car_spots, "
+            + "    land_size_desc, "
+            + "    bldg_size_desc, "
+            + "    council_area, "
+            + "    price_desc, "
+            + "    price_estimate_from, "
+            + "    price_estimate_to, "
+            + "    price_estimate_confidence, "
+            + "    sale_method, "
+            + "    sold_date, "
+            + "    avail_for_lease, "
+            + "    year_built, "
+            + "    block_code "
+            + "  ) "
+            + "SELECT "
+            + "  k.gnaf_addr_dtl_pid, "
+            + "  s.as_at, "
+            + "  IF(k.gnaf_addr_dtl_pid IS NULL, s.state, NULL), "
+            + "  IF(k.gnaf_addr_dtl_pid IS NULL, s.post_code, NULL), "
+            + "  IF(k.gnaf_addr_dtl_pid IS NULL, s.locality, NULL), "
+            + "  IF(k.gnaf_addr_dtl_pid IS NULL, s.address, NULL), "
+            + "  s.property_type, "
+            + "  s.bedrooms, "
+            + "  s.bathrooms, "
+            + "  s.car_spots, "
+            + "  s.land_size_desc, "
+            + "  s.bldg_size_desc, "
+            + "  s.council_area, "
+            + "  s.price_desc, "
+            + "  s.price_estimate_from, "
+            + "  s.price_estimate_to, "
+            + "  s.price_estimate_confidence, "
+            + "  s.sale_method, "
+            + "  s.sold_date, "
+            + "  s.avail_for_lease, "
+            + "  s.year_built, "
+            + "  s.block_code "
+            + "FROM "
+            + "  rea.stg_properties s "
+            + "  JOIN rea.stg_property_ids k "
+            + "    ON k.load_id  = s.load_id "
+            + "   AND k.prop_key = s.prop_key "
+            + "   AND k.as_at    = s.as_at "
+            + "  JOIN ( "
+            + "    SELECT "
+            + "      MIN(s2.stg_id) AS stg_id "
+            + "    FROM "
+            + "      rea.stg_properties s2 "
+            + "      JOIN rea.stg_property_ids k2 "
+            + "        ON k2.load_id  = s2.load_id "
+            + "       AND k2.prop_key = s2.prop_key "
+            + "       AND k2.as_at    = s2.as_at "
+            + "    WHERE "
+            + "      s2.load_id = ? "
+            + "    AND k2.prop_dtls_id IS NULL "
+            + "    GROUP BY "
+            + "      COALESCE(k2.gnaf_addr_dtl_pid, CONCAT_WS('|', k2.address, k2.state, k2.post_code, k2.locality)), "
+            + "      k2.as_at "
+            + "  ) f "
+            + "    ON f.stg_id = s.stg_id";
+
+    /**
+     * SQL: Update details of listed properties.
+     */
+    private static final String UPDATE_LISTED_PROPERTIES
+            = "UPDATE "
+            + "  rea.property_details p "
+            + "  JOIN rea.stg_property_ids k "
+            + "    ON k.prop_dtls_id = p.prop_dtls_id "
+            + "  JOIN rea.stg_properties s "
+            + "    ON s.load_id  = k.load_id "
+            + "   AND s.prop_key = k.prop_key "
+            + "   AND s.as_at    = k.as_at "
+            + "SET "
+            + "  p.property_type             = s.property_type, "
+            + "  p.bedrooms                  = s.bedrooms, "
+            + "  p.bathrooms                 = s.bathrooms, "
+            + "  p.car_spots                 = s.car_spots, "
+            + "  p.land_size_desc            = s.land_size_desc, "
+            + "  p.bldg_size_desc            = s.bldg_size_desc, "
+            + "  p.council_area              = s.council_area, "
+            + "  p.price_estimate_from       = s.price_estimate_from, "
+            + "  p.price_estimate_to         = s.price_estimate_to, "
+            + "  p.price_estimate_confidence = s.price_estimate_confidence, "
+            + "  p.year_built                = s.year_built, "
+            + "  p.block_code                = s.block_code "
+            + "WHERE "
+            + "  k.load_id = ? "
+            + "AND s.is_listing = 1";
+
+    /**
+     * SQL: Resolve street locality PIDs of staged schools not found.
+     */
+    private static final String RESOLVE_STREET_LOCALITY_PIDS
+            = "UPDATE "
+            + "  rea.stg_schools_near_props s "
+            + "SET "
+            + "  s.gnaf_street_locality_pid = ( "
+            + "    SELECT "
+            + "      l.street_locality_pid "
+            + "    FROM "
+            + "      gnaf.street_locality_v l "
+            + "    WHERE "
+            + "      l.state = s.state "
+            + "    AND (l.post_code IS NULL OR l.post_code = s.post_code) "
+            + "    AND l.locality = s.locality "
+            + "    AND l.street_desc = s.street "
+            + "    LIMIT 1 "
+            + "  ) "
+            + "WHERE "
+            + "  s.load_id = ? "
+            + "AND NOT EXISTS ( "
+            + "  SELECT "
+            + "    1 "
+            + "  FROM "
+            + "    rea.schools x "
+            + "  WHERE "
+            + "    x.name   = s.name "
+            + "  AND x.type   = s.type "
+            + "  AND x.sector = s.sector "
+            + ")";
+
+    /**
+     * SQL: Insert schools not found.
+     */
+    private static final String INSERT_NEW_SCHOOLS
+            = "INSERT "
+            + "INTO "
+            + "  rea.schools "
+            + "  ( "
+            + "    name, "
+            + "    website, "
+            + "    type, "
+            + "    sector, "
+            + "    gnaf_street_locality_pid "
+            + "  ) "
+            + "SELECT "
+            + "  s.name, "
+            + "  MAX(s.website), "
+            + "  s.type, "
+            + "  s.sector, "
+            + "  MAX(s.gnaf_street_locality_pid) "
+            + "FROM "
+            + "  rea.stg_schools_near_props s "
+            + "WHERE "
+            + "  s.load_id = ? "
+            + "AND NOT EXISTS ( "
+            + "  SELECT "
+            + "    1 "
+            + "  FROM "
+            + "    rea.schools x "
+            + "  WHERE "
+            + "    x.name   = s.name "
+            + "  AND x.type   = s.type "
+            + "  AND x.sector = s.sector "
+            + ") "
+            + "GROUP BY "
+            + "  s.name, "
+            + "  s.type, "
+            + "  s.sector";
+
+    /**
+     * SQL: Insert school distances, ignoring duplicates.
+     */
+    private static final String INSERT_SCHOOL_DISTANCES
+            = "INSERT IGNORE "
+            + "INTO "
+            + "  rea.schools_near_props "
+            + "  ( "
+            + "    prop_dtls_id, "
+            + "    school_id, "
+            + "    distance_desc "
+            + "  ) "
+            + "SELECT "
+            + "  k.prop_dtls_id, "
+            + "  x.school_id, "
+            + "  s.distance_desc "
+            + "FROM "
+            + "  rea.stg_schools_near_props s "
+            + "  JOIN rea.stg_property_ids k "
+            + "    ON k.load_id  = s.load_id "
+            + "   AND k.prop_key = s.prop_key "
+            + "   AND k.as_at    = s.as_at "
+            + "  JOIN rea.schools x "
+            + "    ON x.name   = s.name "
+            + "   AND x.type   = s.type "
+            + "   AND x.sector = s.sector "
+            + "WHERE "
+            + "  s.load_id = ?";
+
+    /**
+     * SQL: Insert property history, ignoring duplicates.
+     */
+    private static final String INSERT_EVENTS
+            = "INSERT IGNORE "
+            + "INTO "
+            + "  rea.property_sale_rent_hist "
+            + "  ( "
+            + "    prop_dtls_id, "
+            + "    event_year, "
+            + "    event_month, "
+            + "    event_type, "
+            + "    price_desc "
+            + "  ) "
+            + "SELECT "
+            + "  k.prop_dtls_id, "
+            + "  s.event_year, "
+            + "  s.event_month, "
+            + "  s.event_type, "
+            + "  s.price_desc "
+            + "FROM "
+            + "  rea.stg_property_sale_rent_hist s "
+            + "  JOIN rea.stg_property_ids k "
+            + "    ON k.load_id  = s.load_id "
+            + "   AND k.prop_key = s.prop_key "
+            + "   AND k.as_at    = s.as_at "
+            + "WHERE "
+            + "  s.load_id = ?";
+
+    /**
+     * SQL: Insert comparable properties, ignoring duplicates.
+     */
+    private static final String INSERT_COMPARABLE_PROPERTIES
+            = "INSERT IGNORE "
+            + "INTO "
+            + "  rea.comparable_properties "
+            + "  ( "
+            + "    prop_compared_id, "
+            + "    comparable_prop_id, "
+            + "    comparison_type, "
+            + "    compared_on "
+            + "  ) "
+            + "SELECT "
+            + "  k.prop_dtls_id, "
+            + "  c.prop_dtls_id, "
+            + "  s.comparison_type, "
+            + "  s.compared_on "
+            + "FROM "
+            + "  rea.stg_comparable_properties s "
+            + "  JOIN rea.stg_property_ids k "
+            + "    ON k.load_id  = s.load_id "
+            + "   AND k.prop_key = s.prop_key "
+            + "   AND k.as_at    = s.compared_on "
+            + "  JOIN rea.stg_property_ids c "
+            + "    ON c.load_id  = s.load_id "
+            + "   AND c.prop_key = s.comparable_key "
+            + "   AND c.as_at    = s.compared_on "
+            + "WHERE "
+            + "  s.load_id = ?";
+
+    /**
+     * SQL: Insert data acquisition details of listings with an address PID,
+     * ignoring duplicates.
+     */
+    private static final String INSERT_DATA_ACQUISITIONS
+            = "INSERT IGNORE "
+            + "INTO "
+            + "  rea.data_acquisition "
+            + "  ( "
+            + "    gnaf_addr_dtl_pid, "
+            + "    url, "
+            + "    acquired_on, "
+            + "    prop_dtls_id "
+            + "  ) "
+            + "SELECT "
+            + "  k.gnaf_addr_dtl_pid, "
+            + "  s.url, "
+            + "  s.acquired_on, "
+            + "  k.prop_dtls_id "
+            + "FROM "
+            + "  rea.stg_data_acquisition s "
+            + "  JOIN rea.stg_property_ids k "
+            + "    ON k.load_id  = s.load_id "
+            + "   AND k.prop_key = s.prop_key "
+            + "   AND k.as_at    = s.as_at "
+            + "WHERE "
+            + "  s.load_id = ? "
+            + "AND k.gnaf_addr_dtl_pid IS NOT NULL";
+
+    /**
+     * SQL: Count data acquisition details of listings without an address PID.
+     */
+    private static final String COUNT_UNRESOLVED_DATA_ACQUISITIONS
+            = "SELECT "
+            + "  COUNT(*) "
+            + "FROM "
+            + "  rea.stg_data_acquisition s "
+            + "  JOIN rea.stg_property_ids k "
+            + "    ON k.load_id  = s.load_id "
+            + "   AND k.prop_key = s.prop_key "
+            + "   AND k.as_at    = s.as_at "
+            + "WHERE "
+            + "  s.load_id = ? "
+            + "AND k.gnaf_addr_dtl_pid IS NULL";
+
+    /**
+     * Staging tables, in the order they are cleared.
+     */
+    private static final String[] STAGING_TABLES = {
+        "rea.stg_comparable_properties",
+        "rea.stg_property_sale_rent_hist",
+        "rea.stg_schools_near_props",
+        "rea.stg_data_acquisition",
+        "rea.stg_properties",
+        "rea.stg_property_ids"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates instance of a {@code StagingJdbcDao}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     */
+    @Autowired
+    public StagingJdbcDao(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void stage(final long loadId, final List<? extends PropertyListing> listings)
+            throws DataAccessException {
+        List<Object[]> properties = new ArrayList<>();
+        List<Object[]> comparableProperties = new ArrayList<>();
+        List<Object[]> events = new ArrayList<>();
+        List<Object[]> schoolDistances = new ArrayList<>();
+        List<Object[]> dataAcquisitions = new ArrayList<>();
+
+        for (PropertyListing listing : listings) {
+            Property property = listing.getPropertyDetails();
+            LocalDate recordDate = listing.getCrawlDate();
+            String propertyKey = propertyKey(property);
+
+            properties.add(toStagingParameters(loadId, propertyKey, property, recordDate, true));
+
+            stageComparableProperties(loadId, propertyKey, property.getComparablePropertiesForSale(), "for sale", recordDate, properties, comparableProperties);
+            stageComparableProperties(loadId, propertyKey, property.getComparablePropertiesForRent(), "for rent", recordDate, properties, comparableProperties);
+            stageComparableProperties(loadId, propertyKey, property.getComparablePropertiesSold(), "sold", recordDate, properties, comparableProperties);
+
+            for (School school : property.getNearbySchools()) {
+                schoolDistances.add(new Object[]{
+                    loadId,
+                    propertyKey,
+                    recordDate.toDate(),
+                    school.getName(),
+                    school.getWebsite(),
+                    school.getType(),
+                    school.getSector(),
+                    school.getStreet(),
+                    school.getState(),
+                    school.getPostCode(),
+                    school.getLocality(),
+                    school.getDistance()
+                });
+            }
+
+            for (Event event : property.getHistory()) {
+                events.add(new Object[]{
+                    loadId,
+                    propertyKey,
+                    recordDate.toDate(),
+                    event.getYear(),
+                    event.getMonth(),
+                    PropertyJdbcDao.convertEventTypeText(event.getType()),
+                    event.getPriceDesc()
+                });
+            }
+
+            dataAcquisitions.add(new Object[]{
+                loadId,
+                propertyKey,
+                recordDate.toDate(),
+                listing.getUrl(),
+                recordDate.toDate()
+            });
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_STG_PROPERTY, properties);
+        jdbcTemplate.batchUpdate(INSERT_STG_COMPARABLE_PROPERTY, comparableProperties);
+        jdbcTemplate.batchUpdate(INSERT_STG_EVENT, events);
+        jdbcTemplate.batchUpdate(INSERT_STG_SCHOOL_DISTANCE, schoolDistances);
+        jdbcTemplate.batchUpdate(INSERT_STG_DATA_ACQUISITION, dataAcquisitions);
+    }
+
+    @Override
+    public void stageDocuments(final long loadId, final List<? extends PropertyListing> listings)
+            throws DataAccessException {
+        ArrayNode documents = JsonNodeFactory.instance.arrayNode();
+
+        for (PropertyListing listing : listings) {
+            documents.add(PropertyListingDocuments.toDocument(listing, true));
+        }
+
+        String json = documents.toString();
+
+        jdbcTemplate.update(INSERT_STG_PROPERTY_FROM_JSON, loadId, json);
+        jdbcTemplate.update(INSERT_STG_COMPARABLE_PROPERTY_DETAILS_FROM_JSON, loadId, json);
+        jdbcTemplate.update(INSERT_STG_COMPARABLE_PROPERTY_FROM_JSON, loadId, json);
+        jdbcTemplate.update(INSERT_STG_EVENT_FROM_JSON, loadId, json);
+        jdbcTemplate.update(INSERT_STG_SCHOOL_DISTANCE_FROM_JSON, loadId, json);
+        jdbcTemplate.update(INSERT_STG_DATA_ACQUISITION_FROM_JSON, loadId, json);
+    }
+
+    @Override
+    public Map<String, Integer> merge(final long loadId)
+            throws DataAccessException {
+        Map<String, Integer> inserted = new LinkedHashMap<>();
+
+        execute("collect property keys", INSERT_PROPERTY_KEYS, loadId);
+        execute("resolve address PIDs", RESOLVE_ADDRESS_PIDS, loadId);
+        execute("resolve property IDs by address PID", RESOLVE_PROPERTY_IDS_BY_ADDRESS_PID, loadId);
+        execute("resolve property IDs by address", RESOLVE_PROPERTY_IDS_BY_ADDRESS, loadId);
+
+        inserted.put("property_details", execute("insert new properties", INSERT_NEW_PROPERTIES, loadId));
+
+        execute("resolve new property IDs by address PID", RESOLVE_PROPERTY_IDS_BY_ADDRESS_PID, loadId);
+        execute("resolve new property IDs by address", RESOLVE_PROPERTY_IDS_BY_ADDRESS, loadId);
+        execute("update listed properties", UPDATE_LISTED_PROPERTIES, loadId);
+        execute("resolve street locality PIDs", RESOLVE_STREET_LOCALITY_PIDS, loadId);
+
+        inserted.put("schools", execute("insert new schools", INSERT_NEW_SCHOOLS, loadId));
+        inserted.put("schools_near_props", execute("insert school distances", INSERT_SCHOOL_DISTANCES, loadId));
+        inserted.put("property_sale_rent_hist", execute("insert property history", INSERT_EVENTS, loadId));
+        inserted.put("comparable_properties", execute("insert comparable properties", INSERT_COMPARABLE_PROPERTIES, loadId));
+        inserted.put("data_acquisition", execute("insert data acquisition details", INSERT_DATA_ACQUISITIONS, loadId));
+
+        return inserted;
+    }
+
+    @Override
+    public int countUnresolvedListings(final long loadId)
+            throws DataAccessException {
+        return jdbcTemplate.queryForObject(COUNT_UNRESOLVED_DATA_ACQUISITIONS, Integer.class, loadId);
+    }
+
+    @Override
+    public void clear(final long loadId)
+            throws DataAccessException {
+        for (String table : STAGING_TABLES) {
+            execute("clear " + table, "DELETE FROM " + table + " WHERE load_id = ?", loadId);
+        }
+    }
+
+    /**
+     * Derive the key identifying a staged property: its address PID when
+     * known, otherwise its raw address.
+     *
+     * @param property property details
+     * @return the key identifying the staged property
+     */
+    static String propertyKey(final Property property) {
+        String key = property.getAddressPID() != null
+                ? "PID|" + property.getAddressPID()
+                : ("ADDRESS|" + property.getAddress() + "|" + property.getState() + "|" + property.getPostCode() + "|" + property.getLocality()).toUpperCase();
+
+        return DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void stageComparableProperties(final long loadId, final String propertyKey, final List<Property> comparableProperties, final String comparisonType, final LocalDate comparisonDate, final List<Object[]> properties, final List<Object[]> comparablePropertyLinks) {
+        for (Property comparableProperty : comparableProperties) {
+            String comparableKey = propertyKey(comparableProperty);
+
+            properties.add(toStagingParameters(loadId, comparableKey, comparableProperty, comparisonDate, false));
+
+            comparablePropertyLinks.add(new Object[]{
+                loadId,
+                propertyKey,
+                comparableKey,
+                comparisonType,
+                comparisonDate.toDate()
+            });
+        }
+    }
+
+    private static Object[] toStagingParameters(final long loadId, final String propertyKey, final Property property, final LocalDate recordDate, final boolean listing) {
+        return new Object[]{
+            loadId,
+            propertyKey,
+            recordDate.toDate(),
+            listing ? 1 : 0,
+            property.getAddressPID(),
+            property.getState(),
+            property.getPostCode(),
+            property.getLocality(),
+            property.getAddress(),
+            property.getPropertyType(),
+            property.getBedrooms(),
+            property.getBathrooms(),
+            property.getCarSpots(),
+            property.getLandSizeDesc(),
+            property.getBuildingSizeDesc(),
+            property.getCouncilArea(),
+            property.getPriceDesc(),
+            property.getPriceEstimateFrom(),
+            property.getPriceEstimateTo(),
+            property.getPriceEstimateConfidence(),
+            property.getSaleMethod(),
+            property.getSoldDate() != null ? property.getSoldDate().toDate() : null,
+            property.getAvailableForLeaseDate() != null ? property.getAvailableForLeaseDate().toDate() : null,
+            property.getYearBuilt(),
+            property.getBlockCode()
+        };
+    }
+
+    private int execute(final String description, final String sql, final long loadId) {
+        long start = System.currentTimeMillis();
+
+        int rows = jdbcTemplate.update(sql, loadId);
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Merge of load [" + loadId + "]: " + description + " affected [" + rows + "] rows in [" + (System.currentTimeMillis() - start) + "] ms");
+        }
+
+        return rows;
+    }
+
+}
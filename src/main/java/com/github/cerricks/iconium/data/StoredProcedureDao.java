@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * A data access object interface for saving {@link PropertyListing} objects
+ * using stored procedures on the database server.
+ *
+ * @author Clifford Errickson
+ */
+public interface StoredProcedureDao {
+
+    /**
+     * Save the given listing, with its comparable properties, nearby schools
+     * and history, in a single call.
+     *
+     * @param listing the listing to save
+     * @throws DataAccessException on data access error
+     */
+    void saveListing(PropertyListing listing)
+            throws DataAccessException;
+
+}
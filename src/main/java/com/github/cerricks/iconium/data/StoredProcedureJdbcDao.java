@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.data;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+/**
+ * A data access object JDBC implementation for saving {@link PropertyListing}
+ * objects using the {@code rea.save_property_listing} stored procedure.
+ *
+ * @author Clifford Errickson
+ */
+@Repository
+public class StoredProcedureJdbcDao implements StoredProcedureDao {
+
+    /**
+     * SQL: Save a listing passed as a JSON document (see
+     * {@link PropertyListingDocuments}).
+     */
+    private static final String CALL_SAVE_PROPERTY_LISTING
+            = "CALL rea.save_property_listing(?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates instance of a {@code StoredProcedureJdbcDao}.
+     *
+     * @param jdbcTemplate the {@link JdbcTemplate} to use for data access.
+     */
+    @Autowired
+    public StoredProcedureJdbcDao(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void saveListing(final PropertyListing listing)
+            throws DataAccessException {
+        Assert.notNull(listing);
+        Assert.notNull(listing.getCrawlDate());
+
+        jdbcTemplate.update(CALL_SAVE_PROPERTY_LISTING, PropertyListingDocuments.toDocument(listing, false).toString());
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.service;
+
+import com.github.cerricks.iconium.data.AddressDao;
+import com.github.cerricks.iconium.data.BulkLoadBatch;
+import com.github.cerricks.iconium.data.BulkLoadDao;
+import com.github.cerricks.iconium.data.Event;
+import com.github.cerricks.iconium.data.IdAllocator;
+import com.github.cerricks.iconium.data.Property;
+import com.github.cerricks.iconium.data.PropertyDao;
+import com.github.cerricks.iconium.data.PropertyKeyFilter;
+import com.github.cerricks.iconium.data.PropertyListing;
+import com.github.cerricks.iconium.data.School;
+import com.github.cerricks.iconium.data.SchoolDao;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Saves {@link PropertyListing} objects a chunk at a time by staging new
+ * records in delimited files and loading them with
+ * {@code LOAD DATA LOCAL INFILE} (see {@link BulkLoadBatch}).
+ *
+ * <p>
+ * IDs of new properties and schools are allocated on the client using the
+ * {@link IdAllocator}, so that the rows referencing them can be staged in the
+ * same batch. Records that already exist are looked up as usual, and existing
+ * property details are updated with statements.
+ *
+ * @author Clifford Errickson
+ */
+@Service
+public class BulkLoadPropertyListingService {
+
+    @Autowired
+    private AddressDao addressDao;
+
+    @Autowired
+    private PropertyDao propertyDao;
+
+    @Autowired
+    private SchoolDao schoolDao;
+
+    @Autowired
+    private BulkLoadDao bulkLoadDao;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    @Autowired
+    private PropertyKeyFilter propertyKeyFilter;
+
+    @Autowired
+    private WriteStatistics writeStatistics;
+
+    @Autowired
+    private KnownLinkFilter knownLinkFilter;
+
+    /**
+     * Save the given listings, loading all new records in one batch.
+     *
+     * @param listings the listings to save
+     * @throws DataAccessException on data access error
+     */
+    public void saveAll(final List<? extends PropertyListing> listings)
+            throws DataAccessException {
+        try (BulkLoadBatch batch = bulkLoadDao.createBatch()) {
+            ChunkState state = new ChunkState(batch);
+
+            for (PropertyListing listing : listings) {
+                stage(listing, state);
+            }
+
+            Map<String, Integer> loaded = batch.load();
+
+            for (Map.Entry<String, Integer> entry : loaded.entrySet()) {
+                int rows = entry.getValue();
+
+                if (rows > 0) {
+                    writeStatistics.recordInsert(entry.getKey(), rows);
+                }
+
+                // only link tables may load fewer rows than were staged
+                writeStatistics.recordDuplicates(entry.getKey(), batch.getRowCount(entry.getKey()) - rows);
+            }
+        }
+    }
+
+    private void stage(final PropertyListing listing, final ChunkState state)
+            throws DataAccessException {
+        Property property = listing.getPropertyDetails();
+
+        // lookup address PID if missing
+        if (property.getAddressPID() == null) {
+            property.setAddressPID(addressDao.findAddressDetailPID(property.getAddress(), property.getState(), property.getPostCode(), property.getLocality()));
+        }
+
+        // update (existing) or stage (new) property details
+        property.setId(findPropertyId(property, listing.getCrawlDate(), state));
+
+        if (property.getId() != null) {
+            if (propertyDao.updateProperty(property) == 0) {
+                writeStatistics.recordFiltered(BulkLoadBatch.PROPERTY_DETAILS_TABLE);
+            }
+        } else {
+            property.setId(stageProperty(property, listing.getCrawlDate(), state));
+        }
+
+        // process comparable properties
+        stageComparableProperties(property.getId(), property.getComparablePropertiesForSale(), "for sale", listing.getCrawlDate(), state);
+        stageComparableProperties(property.getId(), property.getComparablePropertiesForRent(), "for rent", listing.getCrawlDate(), state);
+        stageComparableProperties(property.getId(), property.getComparablePropertiesSold(), "sold", listing.getCrawlDate(), state);
+
+        // process nearby schools
+        for (School school : property.getNearbySchools()) {
+            Long schoolId = findSchoolId(school, state);
+
+            if (schoolId == null) {
+                school.setStreetLocalityPID(addressDao.findStreetLocalityPID(school.getStreet(), school.getState(), school.getPostCode(), school.getLocality()));
+
+                schoolId = idAllocator.nextId(IdAllocator.SCHOOLS);
+
+                state.batch.addSchool(schoolId, school);
+                state.schoolIds.put(schoolKey(school), schoolId);
+            }
+
+            if (knownLinkFilter.isKnownSchoolDistance(property.getId(), schoolId)) {
+                writeStatistics.recordFiltered(BulkLoadBatch.SCHOOL_DISTANCE_TABLE);
+
+                continue;
+            }
+
+            state.batch.addSchoolDistance(property.getId(), schoolId, school.getDistance());
+
+            knownLinkFilter.addSchoolDistance(property.getId(), schoolId);
+        }
+
+        // process property events
+        for (Event event : property.getHistory()) {
+            if (knownLinkFilter.isKnownEvent(property.getId(), event)) {
+                writeStatistics.recordFiltered(BulkLoadBatch.HISTORY_TABLE);
+
+                continue;
+            }
+
+            state.batch.addEvent(property.getId(), event);
+
+            knownLinkFilter.addEvent(property.getId(), event);
+        }
+
+        // process data acquisition
+        state.batch.addDataAcquisition(property.getAddressPID(), listing.getUrl(), listing.getCrawlDate(), property.getId());
+    }
+
+    private void stageComparableProperties(final Long propertyId, final List<Property> comparableProperties, final String comparisonType, final LocalDate comparisonDate, final ChunkState state)
+            throws DataAccessException {
+        for (Property comparableProperty : comparableProperties) {
+            comparableProperty.setAddressPID(addressDao.findAddressDetailPID(comparableProperty.getAddress(), comparableProperty.getState(), comparableProperty.getPostCode(), comparableProperty.getLocality()));
+
+            comparableProperty.setId(findPropertyId(comparableProperty, comparisonDate, state));
+
+            // stage comparable property details if necessary
+            if (comparableProperty.getId() == null) {
+                comparableProperty.setId(stageProperty(comparableProperty, comparisonDate, state));
+            }
+
+            // associate comparable property with listing property
+            if (knownLinkFilter.isKnownComparableProperty(propertyId, comparableProperty.getId(), comparisonType, comparisonDate)) {
+                writeStatistics.recordFiltered(BulkLoadBatch.COMPARABLE_PROPERTIES_TABLE);
+
+                continue;
+            }
+
+            state.batch.addComparableProperty(propertyId, comparableProperty.getId(), comparisonType, comparisonDate);
+
+            knownLinkFilter.addComparableProperty(propertyId, comparableProperty.getId(), comparisonType, comparisonDate);
+        }
+    }
+
+    /**
+     * Find the ID of the given property, first among properties staged in
+     * this chunk and then in the database.
+     */
+    private Long findPropertyId(final Property property, final LocalDate recordDate, final ChunkState state)
+            throws DataAccessException {
+        Long propertyId = state.propertyIds.get(propertyKey(property, recordDate));
+
+        if (propertyId != null) {
+            return propertyId;
+        }
+
+        if (property.getAddressPID() != null) {
+            return propertyDao.findPropertyIdByAddressPID(property.getAddressPID(), recordDate);
+        } else {
+            return propertyDao.findPropertyIdByAddress(property.getAddress(), property.getState(), property.getPostCode(), property.getLocality(), recordDate);
+        }
+    }
+
+    private Long stageProperty(final Property property, final LocalDate recordDate, final ChunkState state)
+            throws DataAccessException {
+        long propertyId = idAllocator.nextId(IdAllocator.PROPERTY_DETAILS);
+
+        state.batch.addProperty(propertyId, property, recordDate);
+        state.propertyIds.put(propertyKey(property, recordDate), propertyId);
+
+        propertyKeyFilter.add(property, recordDate);
+
+        return propertyId;
+    }
+
+    private Long findSchoolId(final School school, final ChunkState state)
+            throws DataAccessException {
+        Long schoolId = state.schoolIds.get(schoolKey(school));
+
+        if (schoolId != null) {
+            return schoolId;
+        }
+
+        return schoolDao.findSchoolId(school.getName(), school.getType(), school.getSector());
+    }
+
+    private static String propertyKey(final Property property, final LocalDate recordDate) {
+        if (property.getAddressPID() != null) {
+            return property.getAddressPID() + "|" + recordDate;
+        }
+
+        return (property.getAddress() + "|" + property.getState() + "|" + property.getLocality()).toUpperCase() + "|" + recordDate;
+    }
+
+    private static String schoolKey(final School school) {
+        return school.getName() + "|" + school.getType() + "|" + school.getSector();
+    }
+
+    /**
+     * Records staged while saving a single chunk.
+     */
+    private static class ChunkState {
+
+        private final BulkLoadBatch batch;
+        private final Map<String, Long> propertyIds = new HashMap<>();
+        private final Map<String, Long> schoolIds = new HashMap<>();
+
+        ChunkState(final BulkLoadBatch batch) {
+            this.batch = batch;
+        }
+
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.service;
+
+import com.github.cerricks.iconium.data.Property;
+import com.github.cerricks.iconium.data.School;
+import com.github.cerricks.iconium.util.Clearable;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the properties and schools resolved while writing the current chunk,
+ * so that an entity referenced by several listings of a chunk is resolved and
+ * inserted once, with its ID shared by all references.
+ *
+ * <p>
+ * Properties are identified by GNAF address PID, or by normalized address
+ * when the PID is unknown, together with the record date. Schools are
+ * identified by name, type and sector. The map is cleared at the end of each
+ * chunk and on rollback, as the IDs recorded since the last commit may refer
+ * to records that were not saved.
+ *
+ * <p>
+ * Each thread writing chunks has its own map, as a chunk is written by a
+ * single thread and the IDs it records are not visible to other
+ * transactions until it commits.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class ChunkIdentityMap implements Clearable {
+
+    private final ThreadLocal<Map<String, Property>> properties = new ThreadLocal<Map<String, Property>>() {
+        @Override
+        protected Map<String, Property> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private final ThreadLocal<Map<String, Long>> schools = new ThreadLocal<Map<String, Long>>() {
+        @Override
+        protected Map<String, Long> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private boolean enabled = false;
+
+    public ChunkIdentityMap() {
+    }
+
+    /**
+     * Configure whether this map is enabled. When disabled, no entity is ever
+     * found.
+     *
+     * @param enabled {@code true} to enable this map, {@code false}
+     * otherwise.
+     */
+    @Value("${chunk.identity.map.enabled:false}")
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Find a property resolved earlier in the chunk with the same address PID
+     * or, if the PID of the given property is unknown, the same address.
+     *
+     * @param property the property to find
+     * @param recordDate the date for the record
+     * @return the resolved property, holding its ID and address PID, or
+     * {@code null} if not found.
+     */
+    public Property findProperty(final Property property, final LocalDate recordDate) {
+        if (!enabled) {
+            return null;
+        }
+
+        if (property.getAddressPID() != null) {
+            return properties.get().get(addressPIDKey(property.getAddressPID(), recordDate));
+        }
+
+        return property.getAddress() != null
+                ? properties.get().get(addressKey(property, recordDate))
+                : null;
+    }
+
+    /**
+     * Record a resolved property under both its address PID, if known, and
+     * its address.
+     *
+     * @param property the resolved property, holding its ID
+     * @param recordDate the date for the record
+     */
+    public void addProperty(final Property property, final LocalDate recordDate) {
+        if (!enabled || property.getId() == null) {
+            return;
+        }
+
+        if (property.getAddressPID() != null) {
+            properties.get().put(addressPIDKey(property.getAddressPID(), recordDate), property);
+        }
+
+        if (property.getAddress() != null) {
+            properties.get().put(addressKey(property, recordDate), property);
+        }
+    }
+
+    /**
+     * Find the ID of a school resolved earlier in the chunk.
+     *
+     * @param school the school to find
+     * @return the ID of the school, or {@code null} if not found.
+     */
+    public Long findSchoolId(final School school) {
+        if (!enabled) {
+            return null;
+        }
+
+        return schools.get().get(schoolKey(school));
+    }
+
+    /**
+     * Record the ID of a resolved school.
+     *
+     * @param school the school
+     * @param schoolId the ID of the school
+     */
+    public void addSchool(final School school, final Long schoolId) {
+        if (!enabled || schoolId == null) {
+            return;
+        }
+
+        schools.get().put(schoolKey(school), schoolId);
+    }
+
+    /**
+     * Remove all entities from the map of the calling thread.
+     */
+    @Override
+    public void clear() {
+        properties.get().clear();
+        schools.get().clear();
+    }
+
+    private static String addressPIDKey(final String addressPID, final LocalDate recordDate) {
+        return "PID|" + normalize(addressPID) + "|" + recordDate;
+    }
+
+    private static String addressKey(final Property property, final LocalDate recordDate) {
+        return "ADDRESS|" + normalize(property.getAddress())
+                + "|" + normalize(property.getState())
+                + "|" + normalize(property.getPostCode())
+                + "|" + normalize(property.getLocality())
+                + "|" + recordDate;
+    }
+
+    private static String schoolKey(final School school) {
+        return school.getName() + "|" + school.getType() + "|" + school.getSector();
+    }
+
+    private static String normalize(final String value) {
+        return value != null
+                ? value.trim().toUpperCase(Locale.ROOT)
+                : null;
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.service;
+
+import com.github.cerricks.iconium.data.AddressDao;
+import com.github.cerricks.iconium.data.Property;
+import com.github.cerricks.iconium.data.School;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Looks up the GNAF PIDs of the properties and schools of a listing
+ * concurrently on a bounded pool of threads, so that the time taken is close
+ * to that of the slowest lookup rather than the sum of all of them.
+ *
+ * <p>
+ * Only GNAF lookups are made concurrently. The GNAF tables are not written
+ * by this application, so they may be read outside of the chunk transaction,
+ * whereas property and school IDs must be looked up within it to find rows
+ * inserted earlier in the chunk. Each thread uses a database connection
+ * while it runs.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class ConcurrentAddressLookup {
+
+    private AddressDao addressDao;
+
+    private int threads = 0;
+
+    private ExecutorService executor;
+
+    public ConcurrentAddressLookup() {
+    }
+
+    @PostConstruct
+    public void init() {
+        Assert.notNull(addressDao, "[Assertion failed] - AddressDao must not be null");
+
+        if (threads > 0) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "lookup-" + count.incrementAndGet());
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Configure the {@link AddressDao} used to look up GNAF PIDs.
+     *
+     * @param addressDao the {@link AddressDao} used to look up GNAF PIDs.
+     */
+    @Autowired
+    public void setAddressDao(final AddressDao addressDao) {
+        this.addressDao = addressDao;
+    }
+
+    /**
+     * Set the maximum number of lookups made concurrently. Zero disables
+     * concurrent lookups.
+     *
+     * @param threads the maximum number of lookups made concurrently.
+     */
+    @Value("${lookup.concurrent.threads:0}")
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Determine if lookups are made concurrently.
+     *
+     * @return {@code true} if lookups are made concurrently, {@code false}
+     * otherwise.
+     */
+    public boolean isEnabled() {
+        return threads > 0;
+    }
+
+    /**
+     * Look up the GNAF address PIDs of the given properties and the GNAF
+     * street locality PIDs of the given schools, returning once all are
+     * found.
+     *
+     * @param properties the properties to look up the address PIDs of
+     * @param schools the schools to look up the street locality PIDs of
+     * @return the PIDs found.
+     * @throws DataAccessException on error looking up a PID
+     */
+    public Results lookup(final List<Property> properties, final List<School> schools)
+            throws DataAccessException {
+        Map<Property, Future<String>> addressDetailPIDs = new IdentityHashMap<>();
+        Map<School, Future<String>> streetLocalityPIDs = new IdentityHashMap<>();
+
+        for (final Property property : properties) {
+            if (!addressDetailPIDs.containsKey(property)) {
+                addressDetailPIDs.put(property, executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return addressDao.findAddressDetailPID(property.getAddress(), property.getState(), property.getPostCode(), property.getLocality());
+                    }
+                }));
+            }
+        }
+
+        for (final School school : schools) {
+            if (!streetLocalityPIDs.containsKey(school)) {
+                streetLocalityPIDs.put(school, executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return addressDao.findStreetLocalityPID(school.getStreet(), school.getState(), school.getPostCode(), school.getLocality());
+                    }
+                }));
+            }
+        }
+
+        try {
+            return new Results(join(addressDetailPIDs), join(streetLocalityPIDs));
+        } finally {
+            // stop lookups no longer needed following an error
+            cancel(addressDetailPIDs);
+            cancel(streetLocalityPIDs);
+        }
+    }
+
+    private static <K> Map<K, String> join(final Map<K, Future<String>> futures) {
+        Map<K, String> results = new IdentityHashMap<>(futures.size());
+
+        for (Map.Entry<K, Future<String>> entry : futures.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+
+                throw new IllegalStateException("Interrupted waiting for GNAF lookup", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+
+                if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+
+                throw new IllegalStateException("GNAF lookup failed", ex.getCause());
+            }
+        }
+
+        return results;
+    }
+
+    private static <K> void cancel(final Map<K, Future<String>> futures) {
+        for (Future<String> future : futures.values()) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * The GNAF PIDs found by {@link #lookup(List, List)}.
+     */
+    public static class Results {
+
+        private final Map<Property, String> addressDetailPIDs;
+        private final Map<School, String> streetLocalityPIDs;
+
+        Results(final Map<Property, String> addressDetailPIDs, final Map<School, String> streetLocalityPIDs) {
+            this.addressDetailPIDs = addressDetailPIDs;
+            this.streetLocalityPIDs = streetLocalityPIDs;
+        }
+
+        /**
+         * Determine if the address PID of the given property was looked up.
+         *
+         * @param property the property
+         * @return {@code true} if the address PID was looked up,
+         * {@code false} otherwise.
+         */
+        public boolean hasAddressDetailPID(final Property property) {
+            return addressDetailPIDs.containsKey(property);
+        }
+
+        /**
+         * Get the address PID found for the given property.
+         *
+         * @param property the property
+         * @return the address PID, or {@code null} if not found.
+         */
+        public String getAddressDetailPID(final Property property) {
+            return addressDetailPIDs.get(property);
+        }
+
+        /**
+         * Determine if the street locality PID of the given school was looked
+         * up.
+         *
+         * @param school the school
+         * @return {@code true} if the street locality PID was looked up,
+         * {@code false} otherwise.
+         */
+        public boolean hasStreetLocalityPID(final School school) {
+            return streetLocalityPIDs.containsKey(school);
+        }
+
+        /**
+         * Get the street locality PID found for the given school.
+         *
+         * @param school the school
+         * @return the street locality PID, or {@code null} if not found.
+         */
+        public String getStreetLocalityPID(final School school) {
+            return streetLocalityPIDs.get(school);
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.service;
+
+import com.github.cerricks.iconium.data.IdAllocator;
+import com.github.cerricks.iconium.data.PropertyListing;
+import com.github.cerricks.iconium.data.StagingDao;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+/**
+ * Saves {@link PropertyListing} objects a chunk at a time by sending the chunk
+ * to the database as a single JSON array, shredding it into the staging tables
+ * with {@code JSON_TABLE} and merging the staged rows into the {@code rea.*}
+ * tables with set-based SQL, all in the chunk transaction.
+ *
+ * @author Clifford Errickson
+ */
+@Service
+public class JsonTablePropertyListingService {
+
+    @Autowired
+    private StagingDao stagingDao;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    @Autowired
+    private WriteStatistics writeStatistics;
+
+    /**
+     * Save the given listings.
+     *
+     * @param loadId identifies the rows staged for these listings
+     * @param listings the listings to save
+     * @throws DataAccessException on data access error
+     * @throws IllegalStateException if client-side ID allocation is enabled
+     */
+    public void saveAll(final long loadId, final List<? extends PropertyListing> listings)
+            throws DataAccessException {
+        Assert.state(!idAllocator.isEnabled(), "JSON write mode cannot be used with client-side ID allocation (id.allocator.enabled=true)");
+
+        stagingDao.stageDocuments(loadId, listings);
+
+        Map<String, Integer> inserted = stagingDao.merge(loadId);
+
+        for (Map.Entry<String, Integer> entry : inserted.entrySet()) {
+            if (entry.getValue() > 0) {
+                writeStatistics.recordInsert(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // as in statement mode, listings without an address PID are not recorded as acquired
+        writeStatistics.recordSkipped("data_acquisition", stagingDao.countUnresolvedListings(loadId));
+
+        stagingDao.clear(loadId);
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.service;
+
+import com.github.cerricks.iconium.data.Event;
+import com.github.cerricks.iconium.util.Clearable;
+import com.github.cerricks.iconium.util.Hashing;
+import com.github.cerricks.iconium.util.LongHashSet;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the link records (history, comparable properties and school
+ * distances) already written during the current job so that redundant
+ * inserts can be dropped before they reach the database.
+ *
+ * <p>
+ * Keys are held as 64-bit hashes in a {@link LongHashSet}. When the number of
+ * keys exceeds {@link #setMaxEntries(int) setMaxEntries(int)} the filter is
+ * cleared and starts again, bounding the memory used on very large loads. The
+ * filter is also cleared on rollback, as the keys recorded since the last
+ * commit may refer to records that were not saved.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class KnownLinkFilter implements Clearable {
+
+    private static final long EVENT_SEED = Hashing.hash(Hashing.SEED, "event");
+    private static final long COMPARABLE_SEED = Hashing.hash(Hashing.SEED, "comparable");
+    private static final long SCHOOL_DISTANCE_SEED = Hashing.hash(Hashing.SEED, "school_distance");
+
+    private final LongHashSet keys = new LongHashSet();
+
+    private boolean enabled = false;
+    private int maxEntries = 5000000;
+
+    public KnownLinkFilter() {
+    }
+
+    /**
+     * Configure whether this filter is enabled. When disabled, no link is ever
+     * reported as known.
+     *
+     * @param enabled {@code true} to enable this filter, {@code false}
+     * otherwise.
+     */
+    @Value("${batch.link.filter.enabled:false}")
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Set the maximum number of keys held before the filter is cleared.
+     *
+     * @param maxEntries the maximum number of keys held before the filter is
+     * cleared.
+     */
+    @Value("${batch.link.filter.max.entries:5000000}")
+    public void setMaxEntries(final int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Determine if the given history event has already been written for the
+     * given property.
+     *
+     * @param propertyId the ID of the property to which the history applies
+     * @param event event details
+     * @return {@code true} if already written, {@code false} otherwise.
+     */
+    public synchronized boolean isKnownEvent(final Long propertyId, final Event event) {
+        return enabled && keys.contains(eventKey(propertyId, event));
+    }
+
+    /**
+     * Record the given history event as written for the given property.
+     *
+     * @param propertyId the ID of the property to which the history applies
+     * @param event event details
+     */
+    public synchronized void addEvent(final Long propertyId, final Event event) {
+        add(eventKey(propertyId, event));
+    }
+
+    /**
+     * Determine if the given comparable property link has already been
+     * written.
+     *
+     * @param propertyId the ID of the property compared
+     * @param comparablePropertyId the ID of the comparable property
+     * @param type the type of comparison
+     * @param date the date the comparison was made
+     * @return {@code true} if already written, {@code false} otherwise.
+     */
+    public synchronized boolean isKnownComparableProperty(final Long propertyId, final Long comparablePropertyId, final String type, final LocalDate date) {
+        return enabled && keys.contains(comparableKey(propertyId, comparablePropertyId, type, date));
+    }
+
+    /**
+     * Record the given comparable property link as written.
+     *
+     * @param propertyId the ID of the property compared
+     * @param comparablePropertyId the ID of the comparable property
+     * @param type the type of comparison
+     * @param date the date the comparison was made
+     */
+    public synchronized void addComparableProperty(final Long propertyId, final Long comparablePropertyId, final String type, final LocalDate date) {
+        add(comparableKey(propertyId, comparablePropertyId, type, date));
+    }
+
+    /**
+     * Determine if the distance between the given property and school has
+     * already been written.
+     *
+     * @param propertyId the ID of the property
+     * @param schoolId the ID of the school
+     * @return {@code true} if already written, {@code false} otherwise.
+     */
+    public synchronized boolean isKnownSchoolDistance(final Long propertyId, final Long schoolId) {
+        return enabled && keys.contains(schoolDistanceKey(propertyId, schoolId));
+    }
+
+    /**
+     * Record the distance between the given property and school as written.
+     *
+     * @param propertyId the ID of the property
+     * @param schoolId the ID of the school
+     */
+    public synchronized void addSchoolDistance(final Long propertyId, final Long schoolId) {
+        add(schoolDistanceKey(propertyId, schoolId));
+    }
+
+    /**
+     * Remove all keys from this filter.
+     */
+    @Override
+    public synchronized void clear() {
+        keys.clear();
+    }
+
+    private void add(final long key) {
+        if (!enabled) {
+            return;
+        }
+
+        if (keys.size() >= maxEntries) {
+            keys.clear();
+        }
+
+        keys.add(key);
+    }
+
+    private static long eventKey(final Long propertyId, final Event event) {
+        long hash = Hashing.hash(EVENT_SEED, propertyId);
+        hash = Hashing.hash(hash, event.getYear());
+        hash = Hashing.hash(hash, event.getMonth());
+
+        return Hashing.hash(hash, event.getType());
+    }
+
+    private static long comparableKey(final Long propertyId, final Long comparablePropertyId, final String type, final LocalDate date) {
+        long hash = Hashing.hash(COMPARABLE_SEED, propertyId);
+        hash = Hashing.hash(hash, comparablePropertyId);
+        hash = Hashing.hash(hash, type);
+
+        return Hashing.hash(hash, date != null ? date.getYear() * 10000L + date.getMonthOfYear() * 100L + date.getDayOfMonth() : 0);
+    }
+
+    private static long schoolDistanceKey(final Long propertyId, final Long schoolId) {
+        return Hashing.hash(Hashing.hash(SCHOOL_DISTANCE_SEED, propertyId), schoolId);
+    }
+
+}
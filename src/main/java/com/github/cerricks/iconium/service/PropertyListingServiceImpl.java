@@ -22,6 +22,7 @@ import com.github.cerricks.iconium.data.PropertyDao;
 import com.github.cerricks.iconium.data.PropertyListing;
 import com.github.cerricks.iconium.data.School;
 import com.github.cerricks.iconium.data.SchoolDao;
+import java.util.ArrayList;
 import java.util.List;
 import org.joda.time.LocalDate;
 import org.slf4j.Logger;
@@ -42,6 +43,12 @@ public class PropertyListingServiceImpl implements PropertyListingService {
 
     private static final Logger logger = LoggerFactory.getLogger(PropertyListingServiceImpl.class);
 
+    private static final String COMPARABLE_PROPERTIES_TABLE = "comparable_properties";
+    private static final String DATA_ACQUISITION_TABLE = "data_acquisition";
+    private static final String HISTORY_TABLE = "property_sale_rent_hist";
+    private static final String PROPERTY_TABLE = "property_details";
+    private static final String SCHOOL_DISTANCE_TABLE = "schools_near_props";
+
     @Autowired
     private AddressDao addressDao;
 
@@ -51,95 +58,220 @@ public class PropertyListingServiceImpl implements PropertyListingService {
     @Autowired
     private SchoolDao schoolDao;
 
+    @Autowired
+    private WriteStatistics writeStatistics;
+
+    @Autowired
+    private KnownLinkFilter knownLinkFilter;
+
+    @Autowired
+    private ChunkIdentityMap chunkIdentityMap;
+
+    @Autowired
+    private ConcurrentAddressLookup concurrentAddressLookup;
+
     @Override
     public void save(final PropertyListing listing) {
         Property property = listing.getPropertyDetails();
 
-        // lookup address PID if missing
-        if (property.getAddressPID() == null) {
-            property.setAddressPID(addressDao.findAddressDetailPID(property.getAddress(), property.getState(), property.getPostCode(), property.getLocality()));
-        }
+        ConcurrentAddressLookup.Results lookups = concurrentAddressLookup.isEnabled()
+                ? lookupConcurrently(property, listing.getCrawlDate())
+                : null;
 
-        // check for existing record for this property
-        if (property.getAddressPID() != null) {
-            property.setId(propertyDao.findPropertyIdByAddressPID(property.getAddressPID(), listing.getCrawlDate()));
+        // reuse property resolved earlier in the chunk
+        Property resolved = chunkIdentityMap.findProperty(property, listing.getCrawlDate());
+
+        if (resolved != null) {
+            property.setAddressPID(resolved.getAddressPID());
+            property.setId(resolved.getId());
         } else {
-            property.setId(propertyDao.findPropertyIdByAddress(property.getAddress(), property.getState(), property.getPostCode(), property.getLocality(), listing.getCrawlDate()));
+            // lookup address PID if missing
+            if (property.getAddressPID() == null) {
+                property.setAddressPID(findAddressDetailPID(property, lookups));
+            }
+
+            // check for existing record for this property
+            if (property.getAddressPID() != null) {
+                property.setId(propertyDao.findPropertyIdByAddressPID(property.getAddressPID(), listing.getCrawlDate()));
+            } else {
+                property.setId(propertyDao.findPropertyIdByAddress(property.getAddress(), property.getState(), property.getPostCode(), property.getLocality(), listing.getCrawlDate()));
+            }
         }
 
         // update (existing) or add (new) property details
         if (property.getId() != null) {
-            propertyDao.updateProperty(property);
+            if (propertyDao.updateProperty(property) == 0) {
+                writeStatistics.recordFiltered(PROPERTY_TABLE);
+            }
         } else {
             Long propertyId = propertyDao.addProperty(property, listing.getCrawlDate());
 
             property.setId(propertyId);
         }
 
+        chunkIdentityMap.addProperty(property, listing.getCrawlDate());
+
         // process comparable properties
-        processComparableProperties(property.getId(), property.getComparablePropertiesForSale(), "for sale", listing.getCrawlDate());
-        processComparableProperties(property.getId(), property.getComparablePropertiesForRent(), "for rent", listing.getCrawlDate());
-        processComparableProperties(property.getId(), property.getComparablePropertiesSold(), "sold", listing.getCrawlDate());
+        processComparableProperties(property.getId(), property.getComparablePropertiesForSale(), "for sale", listing.getCrawlDate(), lookups);
+        processComparableProperties(property.getId(), property.getComparablePropertiesForRent(), "for rent", listing.getCrawlDate(), lookups);
+        processComparableProperties(property.getId(), property.getComparablePropertiesSold(), "sold", listing.getCrawlDate(), lookups);
 
         // process nearby schools
         for (School school : property.getNearbySchools()) {
-            Long schoolId = schoolDao.findSchoolId(school.getName(), school.getType(), school.getSector());
+            Long schoolId = chunkIdentityMap.findSchoolId(school);
 
             if (schoolId == null) {
-                school.setStreetLocalityPID(addressDao.findStreetLocalityPID(school.getStreet(), school.getState(), school.getPostCode(), school.getLocality()));
+                schoolId = schoolDao.findSchoolId(school.getName(), school.getType(), school.getSector());
+
+                if (schoolId == null) {
+                    school.setStreetLocalityPID(lookups != null && lookups.hasStreetLocalityPID(school)
+                            ? lookups.getStreetLocalityPID(school)
+                            : addressDao.findStreetLocalityPID(school.getStreet(), school.getState(), school.getPostCode(), school.getLocality()));
 
-                schoolId = schoolDao.addSchool(school);
+                    schoolId = schoolDao.addSchool(school);
+                }
+
+                chunkIdentityMap.addSchool(school, schoolId);
             }
 
             if (schoolId != null) {
+                if (knownLinkFilter.isKnownSchoolDistance(property.getId(), schoolId)) {
+                    writeStatistics.recordFiltered(SCHOOL_DISTANCE_TABLE);
+
+                    continue;
+                }
+
                 try {
-                    schoolDao.addSchoolDistance(property.getId(), schoolId, school.getDistance());
+                    writeStatistics.recordInsert(SCHOOL_DISTANCE_TABLE, schoolDao.addSchoolDistance(property.getId(), schoolId, school.getDistance()));
                 } catch (DuplicateKeyException ex) {
+                    writeStatistics.recordDuplicate(SCHOOL_DISTANCE_TABLE);
                     logger.warn(ex.getMessage());
                 }
+
+                knownLinkFilter.addSchoolDistance(property.getId(), schoolId);
             }
         }
 
         // process property events
         for (Event event : property.getHistory()) {
+            if (knownLinkFilter.isKnownEvent(property.getId(), event)) {
+                writeStatistics.recordFiltered(HISTORY_TABLE);
+
+                continue;
+            }
+
             try {
-                propertyDao.addEvent(property.getId(), event);
+                writeStatistics.recordInsert(HISTORY_TABLE, propertyDao.addEvent(property.getId(), event));
             } catch (DuplicateKeyException ex) {
+                writeStatistics.recordDuplicate(HISTORY_TABLE);
                 logger.warn(ex.getMessage());
             }
+
+            knownLinkFilter.addEvent(property.getId(), event);
         }
 
         // process data acquisition
         try {
-            propertyDao.addDataAcquisition(property.getAddressPID(), listing.getUrl(), listing.getCrawlDate(), property.getId());
+            writeStatistics.recordInsert(DATA_ACQUISITION_TABLE, propertyDao.addDataAcquisition(property.getAddressPID(), listing.getUrl(), listing.getCrawlDate(), property.getId()));
         } catch (DuplicateKeyException ex) {
+            writeStatistics.recordDuplicate(DATA_ACQUISITION_TABLE);
             logger.warn(ex.getMessage());
         }
     }
 
-    private void processComparableProperties(final Long propertyId, final List<Property> comparableProperties, final String comparisonType, final LocalDate comparisonDate)
+    /**
+     * Look up concurrently the GNAF PIDs that the given property, its
+     * comparable properties and its new schools may need.
+     *
+     * <p>
+     * School IDs are looked up here, in the chunk transaction, to find the
+     * new schools. Those found are cached, so they are not queried again when
+     * the schools are processed.
+     *
+     * @param property the property of the listing
+     * @param recordDate the date for the record
+     * @return the GNAF PIDs found.
+     */
+    private ConcurrentAddressLookup.Results lookupConcurrently(final Property property, final LocalDate recordDate) {
+        List<Property> properties = new ArrayList<>();
+        List<School> schools = new ArrayList<>();
+
+        if (property.getAddressPID() == null && chunkIdentityMap.findProperty(property, recordDate) == null) {
+            properties.add(property);
+        }
+
+        addUnresolved(properties, property.getComparablePropertiesForSale(), recordDate);
+        addUnresolved(properties, property.getComparablePropertiesForRent(), recordDate);
+        addUnresolved(properties, property.getComparablePropertiesSold(), recordDate);
+
+        for (School school : property.getNearbySchools()) {
+            if (chunkIdentityMap.findSchoolId(school) == null
+                    && schoolDao.findSchoolId(school.getName(), school.getType(), school.getSector()) == null) {
+                schools.add(school);
+            }
+        }
+
+        return concurrentAddressLookup.lookup(properties, schools);
+    }
+
+    private void addUnresolved(final List<Property> properties, final List<Property> comparableProperties, final LocalDate recordDate) {
+        for (Property comparableProperty : comparableProperties) {
+            if (chunkIdentityMap.findProperty(comparableProperty, recordDate) == null) {
+                properties.add(comparableProperty);
+            }
+        }
+    }
+
+    private String findAddressDetailPID(final Property property, final ConcurrentAddressLookup.Results lookups) {
+        if (lookups != null && lookups.hasAddressDetailPID(property)) {
+            return lookups.getAddressDetailPID(property);
+        }
+
+        return addressDao.findAddressDetailPID(property.getAddress(), property.getState(), property.getPostCode(), property.getLocality());
+    }
+
+    private void processComparableProperties(final Long propertyId, final List<Property> comparableProperties, final String comparisonType, final LocalDate comparisonDate, final ConcurrentAddressLookup.Results lookups)
             throws DataAccessException {
         for (Property comparableProperty : comparableProperties) {
-            comparableProperty.setAddressPID(addressDao.findAddressDetailPID(comparableProperty.getAddress(), comparableProperty.getState(), comparableProperty.getPostCode(), comparableProperty.getLocality()));
+            // reuse property resolved earlier in the chunk
+            Property resolved = chunkIdentityMap.findProperty(comparableProperty, comparisonDate);
 
-            // check for existing record for this property
-            if (comparableProperty.getAddressPID() != null) {
-                comparableProperty.setId(propertyDao.findPropertyIdByAddressPID(comparableProperty.getAddressPID(), comparisonDate));
+            if (resolved != null) {
+                comparableProperty.setAddressPID(resolved.getAddressPID());
+                comparableProperty.setId(resolved.getId());
             } else {
-                comparableProperty.setId(propertyDao.findPropertyIdByAddress(comparableProperty.getAddress(), comparableProperty.getState(), comparableProperty.getPostCode(), comparableProperty.getLocality(), comparisonDate));
-            }
+                comparableProperty.setAddressPID(findAddressDetailPID(comparableProperty, lookups));
+
+                // check for existing record for this property
+                if (comparableProperty.getAddressPID() != null) {
+                    comparableProperty.setId(propertyDao.findPropertyIdByAddressPID(comparableProperty.getAddressPID(), comparisonDate));
+                } else {
+                    comparableProperty.setId(propertyDao.findPropertyIdByAddress(comparableProperty.getAddress(), comparableProperty.getState(), comparableProperty.getPostCode(), comparableProperty.getLocality(), comparisonDate));
+                }
+
+                // add comparable property details if necessary
+                if (comparableProperty.getId() == null) {
+                    comparableProperty.setId(propertyDao.addProperty(comparableProperty, comparisonDate));
+                }
 
-            // add comparable property details if necessary
-            if (comparableProperty.getId() == null) {
-                comparableProperty.setId(propertyDao.addProperty(comparableProperty, comparisonDate));
+                chunkIdentityMap.addProperty(comparableProperty, comparisonDate);
             }
 
             // associate comparable property with listing property
+            if (knownLinkFilter.isKnownComparableProperty(propertyId, comparableProperty.getId(), comparisonType, comparisonDate)) {
+                writeStatistics.recordFiltered(COMPARABLE_PROPERTIES_TABLE);
+
+                continue;
+            }
+
             try {
-                propertyDao.addComparableProperty(propertyId, comparableProperty.getId(), comparisonType, comparisonDate);
+                writeStatistics.recordInsert(COMPARABLE_PROPERTIES_TABLE, propertyDao.addComparableProperty(propertyId, comparableProperty.getId(), comparisonType, comparisonDate));
             } catch (DuplicateKeyException ex) {
+                writeStatistics.recordDuplicate(COMPARABLE_PROPERTIES_TABLE);
                 logger.warn(ex.getMessage());
             }
+
+            knownLinkFilter.addComparableProperty(propertyId, comparableProperty.getId(), comparisonType, comparisonDate);
         }
     }
 
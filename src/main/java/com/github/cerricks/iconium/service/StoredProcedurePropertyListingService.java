@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.service;
+
+import com.github.cerricks.iconium.data.PropertyListing;
+import com.github.cerricks.iconium.data.StoredProcedureDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Saves each {@link PropertyListing}, with its comparable properties, nearby
+ * schools and history, in a single round trip to the
+ * {@code rea.save_property_listing} stored procedure, which performs the
+ * lookups and inserts on the server.
+ *
+ * @author Clifford Errickson
+ */
+@Service
+public class StoredProcedurePropertyListingService {
+
+    @Autowired
+    private StoredProcedureDao storedProcedureDao;
+
+    /**
+     * Save the given listing.
+     *
+     * @param listing the listing to save
+     * @throws DataAccessException on data access error, or if no address PID
+     * is found for the listing
+     */
+    public void save(final PropertyListing listing)
+            throws DataAccessException {
+        storedProcedureDao.saveListing(listing);
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.service;
+
+import com.github.cerricks.iconium.util.Clearable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects the number of rows inserted, the number of duplicate rows
+ * encountered, the number of redundant rows filtered before reaching the
+ * database and the number of rows skipped as invalid for each table written
+ * by a {@link PropertyListingService}.
+ *
+ * <p>
+ * Counts are recorded against the chunk being written by the calling thread
+ * and only added to the totals once the chunk is committed (see
+ * {@link #afterChunk(ChunkContext)}). The counts of a chunk that is rolled
+ * back are discarded, so that items rewritten one at a time after a failed
+ * chunk are not counted twice.
+ *
+ * @author Clifford Errickson
+ */
+@Component
+public class WriteStatistics implements ChunkListener, Clearable {
+
+    private final ConcurrentMap<String, AtomicLong> inserted = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> duplicates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> filtered = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> skipped = new ConcurrentHashMap<>();
+    private final ThreadLocal<PendingCounts> pending = new ThreadLocal<PendingCounts>() {
+        @Override
+        protected PendingCounts initialValue() {
+            return new PendingCounts();
+        }
+    };
+
+    public WriteStatistics() {
+    }
+
+    /**
+     * Record the outcome of an insert into the given table. An insert
+     * affecting zero rows is counted as a duplicate.
+     *
+     * @param table name of the table written to
+     * @param affectedRows number of rows affected by the insert
+     */
+    public void recordInsert(final String table, final int affectedRows) {
+        if (affectedRows > 0) {
+            add(pending.get().inserted, table, affectedRows);
+        } else {
+            recordDuplicate(table);
+        }
+    }
+
+    /**
+     * Record a duplicate row encountered while inserting into the given table.
+     *
+     * @param table name of the table written to
+     */
+    public void recordDuplicate(final String table) {
+        add(pending.get().duplicates, table, 1);
+    }
+
+    /**
+     * Record a number of duplicate rows encountered while inserting into the
+     * given table.
+     *
+     * @param table name of the table written to
+     * @param count number of duplicate rows
+     */
+    public void recordDuplicates(final String table, final long count) {
+        if (count > 0) {
+            add(pending.get().duplicates, table, count);
+        }
+    }
+
+    /**
+     * Record a redundant row dropped before being written to the given table.
+     *
+     * @param table name of the table that would have been written to
+     */
+    public void recordFiltered(final String table) {
+        add(pending.get().filtered, table, 1);
+    }
+
+    /**
+     * Record a number of invalid rows skipped rather than written to the
+     * given table.
+     *
+     * @param table name of the table that would have been written to
+     * @param count number of rows skipped
+     */
+    public void recordSkipped(final String table, final long count) {
+        if (count > 0) {
+            add(pending.get().skipped, table, count);
+        }
+    }
+
+    @Override
+    public void beforeChunk(final ChunkContext context) {
+        // do nothing
+    }
+
+    /**
+     * Add the counts recorded during the committed chunk to the totals.
+     *
+     * @param context the chunk context
+     */
+    @Override
+    public void afterChunk(final ChunkContext context) {
+        PendingCounts counts = pending.get();
+
+        merge(counts.inserted, inserted);
+        merge(counts.duplicates, duplicates);
+        merge(counts.filtered, filtered);
+        merge(counts.skipped, skipped);
+
+        counts.clear();
+    }
+
+    @Override
+    public void afterChunkError(final ChunkContext context) {
+        clear();
+    }
+
+    /**
+     * Discard the counts recorded by the calling thread since its last
+     * commit.
+     */
+    @Override
+    public void clear() {
+        pending.get().clear();
+    }
+
+    /**
+     * Get the number of rows inserted, by table name.
+     *
+     * @return the number of rows inserted, by table name.
+     */
+    public Map<String, Long> getInserted() {
+        return snapshot(inserted);
+    }
+
+    /**
+     * Get the number of duplicate rows encountered, by table name.
+     *
+     * @return the number of duplicate rows encountered, by table name.
+     */
+    public Map<String, Long> getDuplicates() {
+        return snapshot(duplicates);
+    }
+
+    /**
+     * Get the number of redundant rows filtered, by table name.
+     *
+     * @return the number of redundant rows filtered, by table name.
+     */
+    public Map<String, Long> getFiltered() {
+        return snapshot(filtered);
+    }
+
+    /**
+     * Get the number of invalid rows skipped, by table name.
+     *
+     * @return the number of invalid rows skipped, by table name.
+     */
+    public Map<String, Long> getSkipped() {
+        return snapshot(skipped);
+    }
+
+    /**
+     * Reset all counts to zero.
+     */
+    public void reset() {
+        pending.get().clear();
+        inserted.clear();
+        duplicates.clear();
+        filtered.clear();
+        skipped.clear();
+    }
+
+    private static void add(final Map<String, Long> counts, final String table, final long count) {
+        Long current = counts.get(table);
+
+        counts.put(table, current != null ? current + count : count);
+    }
+
+    private static void merge(final Map<String, Long> counts, final ConcurrentMap<String, AtomicLong> counters) {
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            counter(counters, entry.getKey()).addAndGet(entry.getValue());
+        }
+    }
+
+    private static AtomicLong counter(final ConcurrentMap<String, AtomicLong> counters, final String table) {
+        AtomicLong counter = counters.get(table);
+
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+
+            counter = counters.putIfAbsent(table, newCounter);
+
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+
+        return counter;
+    }
+
+    private static Map<String, Long> snapshot(final ConcurrentMap<String, AtomicLong> counters) {
+        Map<String, Long> snapshot = new TreeMap<>();
+
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Counts recorded by a single thread during its current chunk.
+     */
+    private static class PendingCounts {
+
+        private final Map<String, Long> inserted = new HashMap<>();
+        private final Map<String, Long> duplicates = new HashMap<>();
+        private final Map<String, Long> filtered = new HashMap<>();
+        private final Map<String, Long> skipped = new HashMap<>();
+
+        private void clear() {
+            inserted.clear();
+            duplicates.clear();
+            filtered.clear();
+            skipped.clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A utility for converting free text street addresses to a canonical form, so
+ * that different renderings of the same address (e.g. "Unit 3, 12 Smith St"
+ * and "3/12 SMITH STREET") produce the same lookup key.
+ *
+ * <p>
+ * The canonical form is upper case, with punctuation other than {@code /},
+ * {@code -} and {@code '} removed (GNAF keeps apostrophes in names such as
+ * {@code O'CONNELL STREET}), whitespace collapsed, units written as
+ * {@code <unit>/<number>} and the street type written in full (as in the GNAF
+ * {@code STREET_TYPE_AUT} table), e.g. {@code 3/12 SMITH STREET}.
+ *
+ * @author Clifford Errickson
+ */
+public final class AddressNormalizer {
+
+    private static final Pattern PUNCTUATION = Pattern.compile("[.,;:\"()]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SLASH = Pattern.compile("\\s*/\\s*");
+    private static final Pattern UNIT_PREFIX = Pattern.compile("^(?:UNIT|U|FLAT|APARTMENT|APT|SUITE|VILLA|TOWNHOUSE|SHOP)\\s*([0-9]+[A-Z]?)\\s*(?:/\\s*)?(?=[0-9])");
+
+    private static final Map<String, String> STREET_TYPES = new HashMap<>();
+    private static final Set<String> STREET_SUFFIXES = new HashSet<>();
+
+    static {
+        addStreetType("ALLEY", "ALLY");
+        addStreetType("ARCADE", "ARC");
+        addStreetType("AVENUE", "AV", "AVE");
+        addStreetType("BOULEVARD", "BVD", "BLVD");
+        addStreetType("CAUSEWAY", "CSWY");
+        addStreetType("CIRCLE", "CIR");
+        addStreetType("CIRCUIT", "CCT");
+        addStreetType("CLOSE", "CL");
+        addStreetType("COURT", "CT", "CRT");
+        addStreetType("CRESCENT", "CR", "CRES", "CRS");
+        addStreetType("DRIVE", "DR", "DRV");
+        addStreetType("ESPLANADE", "ESP");
+        addStreetType("FREEWAY", "FWY");
+        addStreetType("GARDENS", "GDNS");
+        addStreetType("GLADE", "GLD");
+        addStreetType("GREEN", "GRN");
+        addStreetType("GROVE", "GR", "GRV");
+        addStreetType("HEIGHTS", "HTS");
+        addStreetType("HIGHWAY", "HWY");
+        addStreetType("LANE", "LN");
+        addStreetType("MOTORWAY", "MWY");
+        addStreetType("PARADE", "PDE");
+        addStreetType("PARKWAY", "PKWY", "PWY");
+        addStreetType("PLACE", "PL");
+        addStreetType("PROMENADE", "PROM");
+        addStreetType("QUAY", "QY");
+        addStreetType("RIDGE", "RDGE");
+        addStreetType("ROAD", "RD");
+        addStreetType("SQUARE", "SQ");
+        addStreetType("STREET", "ST");
+        addStreetType("TERRACE", "TCE");
+        addStreetType("TRAIL", "TRL");
+        addStreetType("VIEW", "VW");
+        addStreetType("WALK", "WK");
+        addStreetType("WAY", "WY");
+
+        STREET_SUFFIXES.add("NORTH");
+        STREET_SUFFIXES.add("SOUTH");
+        STREET_SUFFIXES.add("EAST");
+        STREET_SUFFIXES.add("WEST");
+        STREET_SUFFIXES.add("EXTENSION");
+        STREET_SUFFIXES.add("UPPER");
+        STREET_SUFFIXES.add("LOWER");
+    }
+
+    private AddressNormalizer() {
+    }
+
+    /**
+     * Convert the given street address to its canonical form.
+     *
+     * @param address street address
+     * @return the canonical form of the address, or {@code null} if the
+     * address is {@code null}
+     */
+    public static String normalize(final String address) {
+        if (address == null) {
+            return null;
+        }
+
+        String value = address.toUpperCase(Locale.ROOT);
+
+        value = PUNCTUATION.matcher(value).replaceAll(" ");
+        value = WHITESPACE.matcher(value).replaceAll(" ").trim();
+        value = SLASH.matcher(value).replaceAll("/");
+        value = UNIT_PREFIX.matcher(value).replaceFirst("$1/");
+
+        String[] tokens = value.split(" ");
+
+        if (tokens.length > 1) {
+            int last = tokens.length - 1;
+
+            // the street type precedes any suffix (e.g. "SMITH ST NORTH")
+            if (STREET_SUFFIXES.contains(tokens[last]) && tokens.length > 2) {
+                last--;
+            }
+
+            String streetType = STREET_TYPES.get(tokens[last]);
+
+            if (streetType != null) {
+                tokens[last] = streetType;
+
+                value = join(tokens);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Convert the given state, locality or post code to its canonical form,
+     * i.e. upper case with whitespace collapsed.
+     *
+     * @param value the value to convert
+     * @return the canonical form of the value, or {@code null} if the value
+     * is {@code null}
+     */
+    public static String normalizeName(final String value) {
+        if (value == null) {
+            return null;
+        }
+
+        return WHITESPACE.matcher(value.toUpperCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static void addStreetType(final String name, final String... abbreviations) {
+        STREET_TYPES.put(name, name);
+
+        for (String abbreviation : abbreviations) {
+            STREET_TYPES.put(abbreviation, name);
+        }
+    }
+
+    private static String join(final String[] tokens) {
+        StringBuilder result = new StringBuilder();
+
+        for (String token : tokens) {
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+
+            result.append(token);
+        }
+
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter of 64-bit key hashes (see {@link Hashing}). A
+ * Bloom filter may report that a key is present when it is not (a false
+ * positive), but never reports that a key is absent when it was added.
+ *
+ * @author Clifford Errickson
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates instance of a {@code BloomFilter} sized for the expected number
+     * of keys and the desired false positive probability.
+     *
+     * @param expectedEntries the expected number of keys
+     * @param falsePositiveProbability the desired false positive probability
+     * e.g. {@code 0.01}
+     */
+    public BloomFilter(final long expectedEntries, final double falsePositiveProbability) {
+        long entries = Math.max(1, expectedEntries);
+        long optimalBits = (long) Math.ceil(-entries * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+
+        this.bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, (optimalBits + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * Math.log(2)));
+    }
+
+    /**
+     * Add the given key hash to this filter.
+     *
+     * @param hash the key hash to add
+     */
+    public void put(final long hash) {
+        long h1 = hash;
+        long h2 = Hashing.mix(hash);
+
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+
+            long current;
+
+            do {
+                current = bits.get(word);
+
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * Determine if the given key hash may have been added to this filter.
+     *
+     * @param hash the key hash to check for
+     * @return {@code false} if the key was definitely not added, {@code true}
+     * if it may have been added.
+     */
+    public boolean mightContain(final long hash) {
+        long h1 = hash;
+        long h2 = Hashing.mix(hash);
+
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A utility for computing fingerprints of the leading bytes of large files
+ * without reading them in full.
+ *
+ * <p>
+ * The fingerprint of a range {@code [0, length)} is an MD5 digest of the
+ * length and of up to {@value #SAMPLE_COUNT} blocks of {@value #BLOCK_SIZE}
+ * bytes sampled at evenly spaced positions across the range, always including
+ * the first and last blocks. Two files sharing the same leading bytes
+ * therefore have the same fingerprint for any range within the shared prefix.
+ *
+ * @author Clifford Errickson
+ */
+public final class FileFingerprint {
+
+    /**
+     * The number of bytes read per sampled block.
+     */
+    public static final int BLOCK_SIZE = 16384;
+
+    /**
+     * The maximum number of blocks sampled per range.
+     */
+    public static final int SAMPLE_COUNT = 16;
+
+    private FileFingerprint() {
+    }
+
+    /**
+     * Compute the fingerprint of the first block of the given file, used to
+     * find candidate ranges sharing the same prefix.
+     *
+     * @param file the file to fingerprint
+     * @return hex encoded fingerprint of the first block
+     * @throws IOException on IO error
+     */
+    public static String head(final File file) throws IOException {
+        return range(file, Math.min(file.length(), BLOCK_SIZE));
+    }
+
+    /**
+     * Compute the fingerprint of the range {@code [0, length)} of the given
+     * file.
+     *
+     * @param file the file to fingerprint
+     * @param length the length of the range
+     * @return hex encoded fingerprint of the range
+     * @throws IOException on IO error, or if the file is shorter than the
+     * range
+     */
+    public static String range(final File file, final long length) throws IOException {
+        MessageDigest digest = md5();
+
+        for (int i = 0; i < 8; i++) {
+            digest.update((byte) (length >>> (56 - 8 * i)));
+        }
+
+        if (length > 0) {
+            int blocks = (int) Math.min(SAMPLE_COUNT, (length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            byte[] buffer = new byte[(int) Math.min(BLOCK_SIZE, length)];
+
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                if (in.length() < length) {
+                    throw new IOException("File [" + file + "] is shorter than [" + length + "] bytes");
+                }
+
+                for (int i = 0; i < blocks; i++) {
+                    long position = blocks > 1
+                            ? (length - buffer.length) * i / (blocks - 1)
+                            : 0;
+
+                    in.seek(position);
+                    in.readFully(buffer);
+                    digest.update(buffer);
+                }
+            }
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(final byte[] digest) {
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return hex.toString();
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.util;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+/**
+ * A utility for resolving the {@code input.file} job parameter, which names
+ * either a single file, a directory or an Ant-style pattern of files (e.g.
+ * {@code data/shards/*.json} or {@code data/**&#47;listing-*.json}).
+ *
+ * <p>
+ * A directory resolves to the regular files it directly contains, other than
+ * hidden files. Multiple files are returned in order of path, so that they
+ * are partitioned the same way on every run.
+ *
+ * @author Clifford Errickson
+ */
+public final class InputFiles {
+
+    private InputFiles() {
+    }
+
+    /**
+     * Check whether the given input names a directory or a pattern of files,
+     * rather than a single file.
+     *
+     * @param input the {@code input.file} job parameter
+     * @return {@code true} if the input names a directory or a pattern.
+     */
+    public static boolean isMultiple(final String input) {
+        return input != null && (isPattern(input) || new File(input).isDirectory());
+    }
+
+    /**
+     * Resolve the given input to the files it names.
+     *
+     * @param input the {@code input.file} job parameter
+     * @return the files named by the input, in order of path.
+     * @throws IOException if the directory cannot be listed or the pattern
+     * cannot be resolved.
+     */
+    public static List<File> resolve(final String input) throws IOException {
+        if (isPattern(input)) {
+            String pattern = new File(input).getAbsolutePath().replace(File.separatorChar, '/');
+            List<File> files = new ArrayList<>();
+
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources("file:" + pattern)) {
+                File file = resource.getFile();
+
+                if (file.isFile() && !file.isHidden()) {
+                    files.add(file);
+                }
+            }
+
+            Collections.sort(files);
+
+            return files;
+        }
+
+        File file = new File(input);
+
+        if (!file.isDirectory()) {
+            return Collections.singletonList(file);
+        }
+
+        File[] files = file.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && !file.isHidden();
+            }
+        });
+
+        if (files == null) {
+            throw new IOException("Failed to list input directory [" + file + "]");
+        }
+
+        Arrays.sort(files);
+
+        return Arrays.asList(files);
+    }
+
+    private static boolean isPattern(final String input) {
+        return input.indexOf('*') >= 0 || input.indexOf('?') >= 0;
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.util;
+
+import java.util.Arrays;
+
+/**
+ * A thread-safe set of primitive {@code long} values using open addressing
+ * with linear probing. Values are stored without boxing, making the set
+ * suitable for holding millions of 64-bit key hashes.
+ *
+ * <p>
+ * The value {@code 0} is used internally to mark an empty slot and is stored
+ * as {@code 1}.
+ *
+ * @author Clifford Errickson
+ */
+public class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] slots;
+    private int size;
+
+    /**
+     * Creates instance of an empty {@code LongHashSet}.
+     */
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates instance of an empty {@code LongHashSet} able to hold the
+     * expected number of values without resizing.
+     *
+     * @param expectedSize the expected number of values
+     */
+    public LongHashSet(final int expectedSize) {
+        this.slots = new long[capacityFor(expectedSize)];
+    }
+
+    /**
+     * Add the given value to this set.
+     *
+     * @param value value to add
+     * @return {@code true} if the value was added, {@code false} if already
+     * present.
+     */
+    public synchronized boolean add(final long value) {
+        long key = value == 0 ? 1 : value;
+        int mask = slots.length - 1;
+        int index = (int) Hashing.mix(key) & mask;
+
+        while (slots[index] != 0) {
+            if (slots[index] == key) {
+                return false;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        slots[index] = key;
+        size++;
+
+        if (size > slots.length * 3 / 4) {
+            resize(slots.length * 2);
+        }
+
+        return true;
+    }
+
+    /**
+     * Determine if the given value is in this set.
+     *
+     * @param value value to check for
+     * @return {@code true} if present, {@code false} otherwise.
+     */
+    public synchronized boolean contains(final long value) {
+        long key = value == 0 ? 1 : value;
+        int mask = slots.length - 1;
+        int index = (int) Hashing.mix(key) & mask;
+
+        while (slots[index] != 0) {
+            if (slots[index] == key) {
+                return true;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Remove the given value from this set. Values following it in the same
+     * probe sequence are shifted back to fill its slot.
+     *
+     * @param value value to remove
+     * @return {@code true} if the value was removed, {@code false} if not
+     * present.
+     */
+    public synchronized boolean remove(final long value) {
+        long key = value == 0 ? 1 : value;
+        int mask = slots.length - 1;
+        int index = (int) Hashing.mix(key) & mask;
+
+        while (slots[index] != key) {
+            if (slots[index] == 0) {
+                return false;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        int gap = index;
+        int next = (gap + 1) & mask;
+
+        while (slots[next] != 0) {
+            int home = (int) Hashing.mix(slots[next]) & mask;
+
+            // move the value back unless its home slot lies after the gap
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                slots[gap] = slots[next];
+                gap = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        slots[gap] = 0;
+        size--;
+
+        return true;
+    }
+
+    /**
+     * Get the number of values in this set.
+     *
+     * @return the number of values in this set.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Remove all values from this set, releasing the memory used by large
+     * sets.
+     */
+    public synchronized void clear() {
+        if (slots.length > MIN_CAPACITY) {
+            slots = new long[MIN_CAPACITY];
+        } else {
+            Arrays.fill(slots, 0);
+        }
+
+        size = 0;
+    }
+
+    private void resize(final int capacity) {
+        long[] oldSlots = slots;
+        int mask = capacity - 1;
+
+        slots = new long[capacity];
+
+        for (long key : oldSlots) {
+            if (key != 0) {
+                int index = (int) Hashing.mix(key) & mask;
+
+                while (slots[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+
+                slots[index] = key;
+            }
+        }
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity *= 2;
+        }
+
+        return capacity;
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.util;
+
+import java.util.Arrays;
+
+/**
+ * A thread-safe map of primitive {@code long} keys to primitive {@code long}
+ * values using open addressing with linear probing. Keys and values are
+ * stored without boxing in parallel arrays.
+ *
+ * <p>
+ * The key {@code 0} is used internally to mark an empty slot and is held
+ * separately.
+ *
+ * @author Clifford Errickson
+ */
+public class LongLongHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /**
+     * Creates instance of an empty {@code LongLongHashMap}.
+     */
+    public LongLongHashMap() {
+        this.keys = new long[MIN_CAPACITY];
+        this.values = new long[MIN_CAPACITY];
+    }
+
+    /**
+     * Associate the given value with the given key.
+     *
+     * @param key key with which the value is to be associated
+     * @param value value to associate with the key
+     */
+    public synchronized void put(final long key, final long value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+
+            zeroValue = value;
+
+            return;
+        }
+
+        int mask = keys.length - 1;
+        int index = (int) Hashing.mix(key) & mask;
+
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                values[index] = value;
+
+                return;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        size++;
+
+        if (size > keys.length * 3 / 4) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Determine if the given key is associated with the given value.
+     *
+     * @param key key to check
+     * @param value value to compare with
+     * @return {@code true} if the key is present and associated with the
+     * value, {@code false} otherwise.
+     */
+    public synchronized boolean containsEntry(final long key, final long value) {
+        if (key == 0) {
+            return hasZeroKey && zeroValue == value;
+        }
+
+        int mask = keys.length - 1;
+        int index = (int) Hashing.mix(key) & mask;
+
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return values[index] == value;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the value associated with the given key.
+     *
+     * @param key key to look up
+     * @param defaultValue value to return if the key is not present
+     * @return the value associated with the key, or {@code defaultValue} if
+     * the key is not present.
+     */
+    public synchronized long get(final long key, final long defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+
+        int mask = keys.length - 1;
+        int index = (int) Hashing.mix(key) & mask;
+
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Get the number of entries in this map.
+     *
+     * @return the number of entries in this map.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Remove all entries from this map, releasing the memory used by large
+     * maps.
+     */
+    public synchronized void clear() {
+        if (keys.length > MIN_CAPACITY) {
+            keys = new long[MIN_CAPACITY];
+            values = new long[MIN_CAPACITY];
+        } else {
+            Arrays.fill(keys, 0);
+        }
+
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    private void resize(final int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        int mask = capacity - 1;
+
+        keys = new long[capacity];
+        values = new long[capacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int index = (int) Hashing.mix(oldKeys[i]) & mask;
+
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+}
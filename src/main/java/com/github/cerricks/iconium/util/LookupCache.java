@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.util;
+
+import java.util.Arrays;
+
+/**
+ * A thread-safe, bounded cache of values by 64-bit key hash (see
+ * {@link Hashing}) using open addressing with linear probing. Lookups
+ * allocate nothing.
+ *
+ * <p>
+ * When the cache holds its maximum number of entries, it is emptied before
+ * the next new entry is added. Lookup keys in this application are mostly
+ * accessed in runs (see {@code batch.sort.enabled}), so this simple policy
+ * loses little compared to LRU eviction.
+ *
+ * <p>
+ * The key {@code 0} is used internally to mark an empty slot and is held
+ * separately.
+ *
+ * @author Clifford Errickson
+ * @param <V> value type
+ */
+public class LookupCache<V> {
+
+    private int maxEntries;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    private Object zeroValue;
+
+    /**
+     * Creates instance of an empty {@code LookupCache}.
+     *
+     * @param maxEntries the maximum number of entries held
+     */
+    public LookupCache(final int maxEntries) {
+        resize(maxEntries);
+    }
+
+    /**
+     * Change the maximum number of entries held, discarding all entries.
+     *
+     * @param maxEntries the maximum number of entries held
+     */
+    public final synchronized void resize(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(16, maxEntries + maxEntries / 3) - 1) << 1;
+
+        this.maxEntries = maxEntries;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.zeroValue = null;
+        this.size = 0;
+    }
+
+    /**
+     * Get the value cached for the given key.
+     *
+     * @param key the key hash
+     * @return the cached value or {@code null} if not cached.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V get(final long key) {
+        if (key == 0) {
+            return (V) zeroValue;
+        }
+
+        int mask = keys.length - 1;
+        int index = (int) Hashing.mix(key) & mask;
+
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return (V) values[index];
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Cache the given value for the given key.
+     *
+     * @param key the key hash
+     * @param value the value to cache, must not be {@code null}
+     * @return the number of entries evicted to make room for the value
+     */
+    public synchronized int put(final long key, final V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+
+        int evicted = 0;
+
+        if (key == 0) {
+            if (zeroValue == null) {
+                evicted = makeRoom();
+
+                size++;
+            }
+
+            zeroValue = value;
+
+            return evicted;
+        }
+
+        int mask = keys.length - 1;
+        int index = (int) Hashing.mix(key) & mask;
+
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                values[index] = value;
+
+                return 0;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        evicted = makeRoom();
+
+        if (evicted > 0) {
+            index = (int) Hashing.mix(key) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        size++;
+
+        return evicted;
+    }
+
+    /**
+     * Get the number of entries in this cache.
+     *
+     * @return the number of entries in this cache.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Remove all entries from this cache.
+     */
+    public synchronized void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+
+        zeroValue = null;
+        size = 0;
+    }
+
+    /**
+     * Empty the cache if it holds its maximum number of entries.
+     *
+     * @return the number of entries evicted.
+     */
+    private int makeRoom() {
+        if (size < maxEntries) {
+            return 0;
+        }
+
+        int evicted = size;
+
+        clear();
+
+        return evicted;
+    }
+
+}
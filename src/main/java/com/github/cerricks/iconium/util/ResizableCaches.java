@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.util;
+
+/**
+ * An interface identifying an object holding lookup caches whose maximum
+ * number of entries can be changed at runtime.
+ *
+ * @author Clifford Errickson
+ */
+public interface ResizableCaches {
+
+    /**
+     * Set the maximum number of entries of the named cache, if held by this
+     * instance. Entries may be discarded.
+     *
+     * @param cacheName name of the cache
+     * @param maxEntries the maximum number of entries
+     * @return {@code true} if the cache is held by this instance,
+     * {@code false} otherwise.
+     */
+    boolean resize(String cacheName, int maxEntries);
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cerricks.iconium.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Coalesces concurrent loads of the same key, so that threads missing on the
+ * same key at the same time wait for a single load rather than each
+ * performing their own. The result, or exception, of the load is returned to
+ * all waiting threads. Loads are not cached once complete.
+ *
+ * <p>
+ * When disabled, each load is performed by the calling thread.
+ *
+ * @author Clifford Errickson
+ * @param <K> key type, which must implement {@code equals} and
+ * {@code hashCode}
+ * @param <V> value type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled = true;
+
+    /**
+     * Creates instance of a {@code SingleFlight}.
+     */
+    public SingleFlight() {
+    }
+
+    /**
+     * Configure whether concurrent loads are coalesced.
+     *
+     * @param enabled {@code true} to coalesce concurrent loads, {@code false}
+     * otherwise.
+     */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Load the value of the given key, waiting for a load of the same key
+     * already in progress in another thread if there is one.
+     *
+     * @param key the key to load
+     * @param loader loads the value of the key
+     * @return the loaded value
+     * @throws RuntimeException thrown by the loader
+     */
+    public V load(final K key, final Callable<V> loader) {
+        if (!enabled) {
+            return call(loader);
+        }
+
+        FutureTask<V> task = new FutureTask<>(loader);
+        FutureTask<V> existing = inFlight.putIfAbsent(key, task);
+
+        if (existing != null) {
+            return get(existing);
+        }
+
+        try {
+            task.run();
+        } finally {
+            inFlight.remove(key, task);
+        }
+
+        return get(task);
+    }
+
+    private static <V> V call(final Callable<V> loader) {
+        try {
+            return loader.call();
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static <V> V get(final FutureTask<V> task) {
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true; // the load is short, wait for it and restore the interrupt
+                }
+            }
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
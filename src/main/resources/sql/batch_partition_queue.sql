@@ -0,0 +1,25 @@
+-- Work queue of load step partitions for remote workers (see
+-- batch.partition.mode). The coordinator queues a row for each partition step
+-- execution in BATCH_STEP_EXECUTION; workers claim rows one at a time with a
+-- locking update, run the partition and record whether it completed. A worker
+-- renews heartbeat_at while it runs a partition, and the coordinator re-queues
+-- claims whose heartbeat is older than batch.partition.lease seconds.
+
+CREATE TABLE IF NOT EXISTS rea.batch_partition_queue (
+  queue_id                  BIGINT       NOT NULL AUTO_INCREMENT,
+  job_execution_id          BIGINT       NOT NULL,
+  step_execution_id         BIGINT       NOT NULL,
+  step_name                 VARCHAR(100) NOT NULL,
+  status                    VARCHAR(10)  NOT NULL,
+  worker                    VARCHAR(255) NULL,
+  claim_token               CHAR(36)     NULL,
+  created_at                TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  claimed_at                TIMESTAMP    NULL,
+  heartbeat_at              TIMESTAMP    NULL,
+  finished_at               TIMESTAMP    NULL,
+  PRIMARY KEY (queue_id),
+  UNIQUE KEY ux_batch_partition_queue_step (step_execution_id),
+  UNIQUE KEY ux_batch_partition_queue_claim (claim_token),
+  KEY ix_batch_partition_queue_status (status, queue_id),
+  KEY ix_batch_partition_queue_job (job_execution_id, status)
+) ENGINE = InnoDB;
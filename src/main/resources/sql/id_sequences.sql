@@ -0,0 +1,17 @@
+-- Sequence table used to allocate property_details and schools IDs on the
+-- client (see id.allocator.enabled). Each sequence holds the next unallocated
+-- ID and must be initialised above the highest existing ID.
+
+CREATE TABLE IF NOT EXISTS rea.id_sequences (
+  sequence_name VARCHAR(64) NOT NULL,
+  next_id       BIGINT      NOT NULL,
+  PRIMARY KEY (sequence_name)
+) ENGINE = InnoDB;
+
+INSERT INTO rea.id_sequences (sequence_name, next_id)
+SELECT 'property_details', COALESCE(MAX(prop_dtls_id), 0) + 1 FROM rea.property_details
+ON DUPLICATE KEY UPDATE next_id = GREATEST(next_id, VALUES(next_id));
+
+INSERT INTO rea.id_sequences (sequence_name, next_id)
+SELECT 'schools', COALESCE(MAX(school_id), 0) + 1 FROM rea.schools
+ON DUPLICATE KEY UPDATE next_id = GREATEST(next_id, VALUES(next_id));
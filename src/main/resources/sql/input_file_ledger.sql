@@ -0,0 +1,20 @@
+-- Ledger of the leading range of each input file fully committed by a job
+-- (see input.ledger.enabled). Files are identified by fingerprints of sampled
+-- blocks rather than by name, so a file passed again, or a larger file sharing
+-- the same leading bytes, resumes after the committed range without parsing
+-- it.
+
+CREATE TABLE IF NOT EXISTS rea.input_file_ledger (
+  ledger_id                 BIGINT       NOT NULL AUTO_INCREMENT,
+  job_instance_id           BIGINT       NOT NULL,
+  file_name                 VARCHAR(767) NOT NULL,
+  file_size                 BIGINT       NOT NULL,
+  head_fingerprint          CHAR(32)     NOT NULL,
+  committed_offset          BIGINT       NOT NULL,
+  committed_items           BIGINT       NOT NULL,
+  committed_fingerprint     CHAR(32)     NOT NULL,
+  updated_at                TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (ledger_id),
+  UNIQUE KEY ux_input_file_ledger_job_file (job_instance_id, file_name(255)),
+  KEY ix_input_file_ledger_head (head_fingerprint, committed_offset)
+) ENGINE = InnoDB;
@@ -0,0 +1,39 @@
+-- Change marker for rea.property_details used by the persistent lookup store
+-- (see lookup.store.enabled). Every delete of a property row, and every update
+-- of its ID, address PID or as_at, increments change_count, which tags the
+-- property ID tier of the store. The tier is discarded when the count differs
+-- from the one it was saved with, however many rows have since been inserted.
+-- Without this table, the property ID tier is not used. TRUNCATE does not fire
+-- triggers, so delete the store directory after truncating the table.
+
+DELIMITER $$
+
+CREATE TABLE IF NOT EXISTS rea.property_details_changes (
+  marker_id    TINYINT NOT NULL,
+  change_count BIGINT  NOT NULL,
+  PRIMARY KEY (marker_id)
+) $$
+
+INSERT IGNORE INTO rea.property_details_changes (marker_id, change_count) VALUES (1, 0) $$
+
+DROP TRIGGER IF EXISTS rea.property_details_after_delete $$
+
+CREATE TRIGGER rea.property_details_after_delete
+AFTER DELETE ON rea.property_details
+FOR EACH ROW
+  UPDATE rea.property_details_changes SET change_count = change_count + 1 WHERE marker_id = 1 $$
+
+DROP TRIGGER IF EXISTS rea.property_details_after_update $$
+
+CREATE TRIGGER rea.property_details_after_update
+AFTER UPDATE ON rea.property_details
+FOR EACH ROW
+BEGIN
+  IF NOT (OLD.prop_dtls_id <=> NEW.prop_dtls_id)
+     OR NOT (OLD.gnaf_addr_dtl_pid <=> NEW.gnaf_addr_dtl_pid)
+     OR NOT (OLD.as_at <=> NEW.as_at) THEN
+    UPDATE rea.property_details_changes SET change_count = change_count + 1 WHERE marker_id = 1;
+  END IF;
+END $$
+
+DELIMITER ;
@@ -0,0 +1,7 @@
+-- Optional column holding a hash of the updatable property_details values last
+-- written (see property.update.hash.column). An update whose values hash to
+-- the stored value is not applied, leaving the row and its index entries
+-- untouched. Rows inserted before the column was added, or by other means,
+-- hold NULL and are always updated.
+
+ALTER TABLE rea.property_details ADD COLUMN row_hash BIGINT NULL;
@@ -0,0 +1,217 @@
+-- Stored procedures used by the procedure write mode (see batch.write.mode).
+-- rea.save_property_listing saves one listing, passed as a JSON document (see
+-- PropertyListingDocuments), with its comparable properties, nearby schools
+-- and history in a single round trip. Absent values are omitted from the
+-- document, so JSON_UNQUOTE(JSON_EXTRACT(...)) yields NULL for them. Values
+-- are copied into typed local variables before being compared with indexed
+-- columns. Requires MySQL 5.7.8 or later.
+
+DELIMITER $$
+
+DROP PROCEDURE IF EXISTS rea.save_property $$
+
+-- Find the property matching the given details and date, adding it if not
+-- found. Details of an existing listed property are updated.
+CREATE PROCEDURE rea.save_property(
+  IN  p_property     JSON,
+  IN  p_as_at        DATE,
+  IN  p_listing      BOOLEAN,
+  OUT p_prop_dtls_id BIGINT,
+  OUT p_addr_pid     VARCHAR(15))
+BEGIN
+  DECLARE v_address        VARCHAR(255) DEFAULT JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.address'));
+  DECLARE v_state          VARCHAR(3)   DEFAULT JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.state'));
+  DECLARE v_postcode       VARCHAR(4)   DEFAULT JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.post_code'));
+  DECLARE v_locality       VARCHAR(100) DEFAULT JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.locality'));
+
+  SET p_prop_dtls_id = NULL;
+  SET p_addr_pid = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.gnaf_addr_dtl_pid'));
+
+  -- lookup address PID if missing
+  IF p_addr_pid IS NULL THEN
+    SELECT address_detail_pid INTO p_addr_pid
+      FROM gnaf.addr_txt_to_id_v
+     WHERE address LIKE CONCAT(UPPER(v_address), '%')
+       AND state = v_state
+       AND (post_code IS NULL OR post_code = v_postcode)
+       AND locality = UPPER(v_locality)
+     LIMIT 1;
+  END IF;
+
+  -- check for existing record for this property
+  IF p_addr_pid IS NOT NULL THEN
+    SELECT prop_dtls_id INTO p_prop_dtls_id
+      FROM rea.property_details
+     WHERE gnaf_addr_dtl_pid = p_addr_pid
+       AND as_at = p_as_at
+     LIMIT 1;
+  ELSE
+    SELECT prop_dtls_id INTO p_prop_dtls_id
+      FROM rea.property_details
+     WHERE address = v_address
+       AND state = v_state
+       AND (post_code IS NULL OR post_code = v_postcode)
+       AND locality = v_locality
+       AND as_at = p_as_at
+     LIMIT 1;
+  END IF;
+
+  -- update (existing) or add (new) property details
+  IF p_prop_dtls_id IS NOT NULL THEN
+    IF p_listing THEN
+      UPDATE rea.property_details
+         SET property_type             = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.property_type')),
+             bedrooms                  = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.bedrooms')),
+             bathrooms                 = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.bathrooms')),
+             car_spots                 = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.car_spots')),
+             land_size_desc            = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.land_size_desc')),
+             bldg_size_desc            = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.bldg_size_desc')),
+             council_area              = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.council_area')),
+             price_estimate_from       = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.price_estimate_from')),
+             price_estimate_to         = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.price_estimate_to')),
+             price_estimate_confidence = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.price_estimate_confidence')),
+             year_built                = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.year_built')),
+             block_code                = JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.block_code'))
+       WHERE prop_dtls_id = p_prop_dtls_id;
+    END IF;
+  ELSE
+    INSERT INTO rea.property_details (
+      gnaf_addr_dtl_pid, as_at, state, post_code, locality, address,
+      property_type, bedrooms, bathrooms, car_spots, land_size_desc,
+      bldg_size_desc, council_area, price_desc, price_estimate_from,
+      price_estimate_to, price_estimate_confidence, sale_method, sold_date,
+      avail_for_lease, year_built, block_code)
+    VALUES (
+      p_addr_pid,
+      p_as_at,
+      IF(p_addr_pid IS NULL, v_state, NULL),
+      IF(p_addr_pid IS NULL, v_postcode, NULL),
+      IF(p_addr_pid IS NULL, v_locality, NULL),
+      IF(p_addr_pid IS NULL, v_address, NULL),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.property_type')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.bedrooms')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.bathrooms')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.car_spots')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.land_size_desc')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.bldg_size_desc')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.council_area')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.price_desc')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.price_estimate_from')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.price_estimate_to')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.price_estimate_confidence')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.sale_method')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.sold_date')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.avail_for_lease')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.year_built')),
+      JSON_UNQUOTE(JSON_EXTRACT(p_property, '$.block_code')));
+
+    SET p_prop_dtls_id = LAST_INSERT_ID();
+  END IF;
+END $$
+
+DROP PROCEDURE IF EXISTS rea.save_property_listing $$
+
+-- Save a listing with its comparable properties, nearby schools and history.
+-- Link rows that already exist are ignored.
+CREATE PROCEDURE rea.save_property_listing(IN p_listing JSON)
+BEGIN
+  DECLARE v_as_at          DATE          DEFAULT JSON_UNQUOTE(JSON_EXTRACT(p_listing, '$.crawl_date'));
+  DECLARE v_url            VARCHAR(2048) DEFAULT JSON_UNQUOTE(JSON_EXTRACT(p_listing, '$.url'));
+  DECLARE v_prop_dtls_id   BIGINT;
+  DECLARE v_addr_pid       VARCHAR(15);
+  DECLARE v_comparable_id  BIGINT;
+  DECLARE v_comparable_pid VARCHAR(15);
+  DECLARE v_school_id      BIGINT;
+  DECLARE v_street_pid     VARCHAR(15);
+  DECLARE v_name           VARCHAR(255);
+  DECLARE v_type           VARCHAR(100);
+  DECLARE v_sector         VARCHAR(100);
+  DECLARE v_item           JSON;
+  DECLARE v_i              INT;
+
+  CALL rea.save_property(JSON_EXTRACT(p_listing, '$.property'), v_as_at, TRUE, v_prop_dtls_id, v_addr_pid);
+
+  -- a data acquisition record requires an address PID, so reject the listing
+  -- (rolling back the chunk) as the statement write mode does
+  IF v_addr_pid IS NULL THEN
+    SIGNAL SQLSTATE '45000'
+      SET MESSAGE_TEXT = 'No address PID found for listing';
+  END IF;
+
+  -- process comparable properties
+  SET v_i = 0;
+
+  WHILE v_i < JSON_LENGTH(p_listing, '$.comparables') DO
+    SET v_item = JSON_EXTRACT(p_listing, CONCAT('$.comparables[', v_i, ']'));
+
+    CALL rea.save_property(JSON_EXTRACT(v_item, '$.property'), v_as_at, FALSE, v_comparable_id, v_comparable_pid);
+
+    INSERT IGNORE INTO rea.comparable_properties (prop_compared_id, comparable_prop_id, comparison_type, compared_on)
+    VALUES (v_prop_dtls_id, v_comparable_id, JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.comparison_type')), v_as_at);
+
+    SET v_i = v_i + 1;
+  END WHILE;
+
+  -- process nearby schools
+  SET v_i = 0;
+
+  WHILE v_i < JSON_LENGTH(p_listing, '$.schools') DO
+    SET v_item = JSON_EXTRACT(p_listing, CONCAT('$.schools[', v_i, ']'));
+    SET v_name = JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.name'));
+    SET v_type = JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.type'));
+    SET v_sector = JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.sector'));
+    SET v_school_id = NULL;
+
+    SELECT school_id INTO v_school_id
+      FROM rea.schools
+     WHERE name = v_name
+       AND type = v_type
+       AND sector = v_sector
+     LIMIT 1;
+
+    IF v_school_id IS NULL THEN
+      SET v_street_pid = NULL;
+
+      SELECT street_locality_pid INTO v_street_pid
+        FROM gnaf.street_locality_v
+       WHERE state = JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.state'))
+         AND (post_code IS NULL OR post_code = JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.post_code')))
+         AND locality = JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.locality'))
+         AND street_desc = JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.street'))
+       LIMIT 1;
+
+      INSERT INTO rea.schools (name, website, type, sector, gnaf_street_locality_pid)
+      VALUES (v_name, JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.website')), v_type, v_sector, v_street_pid);
+
+      SET v_school_id = LAST_INSERT_ID();
+    END IF;
+
+    INSERT IGNORE INTO rea.schools_near_props (prop_dtls_id, school_id, distance_desc)
+    VALUES (v_prop_dtls_id, v_school_id, JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.distance_desc')));
+
+    SET v_i = v_i + 1;
+  END WHILE;
+
+  -- process property events
+  SET v_i = 0;
+
+  WHILE v_i < JSON_LENGTH(p_listing, '$.history') DO
+    SET v_item = JSON_EXTRACT(p_listing, CONCAT('$.history[', v_i, ']'));
+
+    INSERT IGNORE INTO rea.property_sale_rent_hist (prop_dtls_id, event_year, event_month, event_type, price_desc)
+    VALUES (
+      v_prop_dtls_id,
+      JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.event_year')),
+      JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.event_month')),
+      JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.event_type')),
+      JSON_UNQUOTE(JSON_EXTRACT(v_item, '$.price_desc')));
+
+    SET v_i = v_i + 1;
+  END WHILE;
+
+  -- process data acquisition
+  INSERT IGNORE INTO rea.data_acquisition (gnaf_addr_dtl_pid, url, acquired_on, prop_dtls_id)
+  VALUES (v_addr_pid, v_url, v_as_at, v_prop_dtls_id);
+END $$
+
+DELIMITER ;
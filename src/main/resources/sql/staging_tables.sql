@@ -0,0 +1,101 @@
+-- Staging tables used by the staging write mode (see batch.write.mode). The
+-- load step appends flattened listing rows keyed by load_id (the job instance
+-- ID) and prop_key (an MD5 digest of the raw address of the property), and
+-- the merge step resolves and merges them into the rea.* tables with set-based
+-- SQL before deleting them. Apart from the surrogate primary key the staging
+-- tables are deliberately unindexed so that appends are cheap.
+
+CREATE TABLE IF NOT EXISTS rea.stg_properties (
+  stg_id                    BIGINT       NOT NULL AUTO_INCREMENT,
+  load_id                   BIGINT       NOT NULL,
+  prop_key                  CHAR(32)     NOT NULL,
+  as_at                     DATE         NOT NULL,
+  is_listing                TINYINT      NOT NULL,
+  gnaf_addr_dtl_pid         VARCHAR(15),
+  state                     VARCHAR(3),
+  post_code                 VARCHAR(4),
+  locality                  VARCHAR(100),
+  address                   VARCHAR(255),
+  property_type             VARCHAR(100),
+  bedrooms                  INT,
+  bathrooms                 INT,
+  car_spots                 INT,
+  land_size_desc            VARCHAR(100),
+  bldg_size_desc            VARCHAR(100),
+  council_area              VARCHAR(100),
+  price_desc                VARCHAR(255),
+  price_estimate_from       INT,
+  price_estimate_to         INT,
+  price_estimate_confidence VARCHAR(50),
+  sale_method               VARCHAR(100),
+  sold_date                 DATE,
+  avail_for_lease           DATE,
+  year_built                VARCHAR(50),
+  block_code                VARCHAR(100),
+  PRIMARY KEY (stg_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS rea.stg_comparable_properties (
+  stg_id          BIGINT       NOT NULL AUTO_INCREMENT,
+  load_id         BIGINT       NOT NULL,
+  prop_key        CHAR(32)     NOT NULL,
+  comparable_key  CHAR(32)     NOT NULL,
+  comparison_type VARCHAR(20)  NOT NULL,
+  compared_on     DATE         NOT NULL,
+  PRIMARY KEY (stg_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS rea.stg_property_sale_rent_hist (
+  stg_id      BIGINT       NOT NULL AUTO_INCREMENT,
+  load_id     BIGINT       NOT NULL,
+  prop_key    CHAR(32)     NOT NULL,
+  as_at       DATE         NOT NULL,
+  event_year  INT,
+  event_month INT,
+  event_type  VARCHAR(50),
+  price_desc  VARCHAR(255),
+  PRIMARY KEY (stg_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS rea.stg_schools_near_props (
+  stg_id                   BIGINT       NOT NULL AUTO_INCREMENT,
+  load_id                  BIGINT       NOT NULL,
+  prop_key                 CHAR(32)     NOT NULL,
+  as_at                    DATE         NOT NULL,
+  name                     VARCHAR(255),
+  website                  VARCHAR(255),
+  type                     VARCHAR(100),
+  sector                   VARCHAR(100),
+  street                   VARCHAR(255),
+  state                    VARCHAR(3),
+  post_code                VARCHAR(4),
+  locality                 VARCHAR(100),
+  gnaf_street_locality_pid VARCHAR(15),
+  distance_desc            VARCHAR(50),
+  PRIMARY KEY (stg_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS rea.stg_data_acquisition (
+  stg_id      BIGINT       NOT NULL AUTO_INCREMENT,
+  load_id     BIGINT       NOT NULL,
+  prop_key    CHAR(32)     NOT NULL,
+  as_at       DATE         NOT NULL,
+  url         VARCHAR(2048),
+  acquired_on DATE         NOT NULL,
+  PRIMARY KEY (stg_id)
+) ENGINE = InnoDB;
+
+-- Built by the merge step: one row per distinct staged property, holding its
+-- resolved address PID and property ID.
+CREATE TABLE IF NOT EXISTS rea.stg_property_ids (
+  load_id           BIGINT       NOT NULL,
+  prop_key          CHAR(32)     NOT NULL,
+  as_at             DATE         NOT NULL,
+  gnaf_addr_dtl_pid VARCHAR(15),
+  state             VARCHAR(3),
+  post_code         VARCHAR(4),
+  locality          VARCHAR(100),
+  address           VARCHAR(255),
+  prop_dtls_id      BIGINT,
+  PRIMARY KEY (load_id, prop_key, as_at)
+) ENGINE = InnoDB;